@@ -596,6 +596,7 @@ public class JGrapher extends PApplet {
 
         JNode.add(parent);
 
+        Compiler.enableCache(64); // function definitions are re-compiled on every keystroke
         Unary.define("~", Compiler.compile("x*x"));
         Binary.define("%", 2, (a, b) -> a % b);
         Constants.define("$C", () -> 1);
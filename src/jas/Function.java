@@ -2,8 +2,11 @@ package jas;
 
 import jas.core.Evaluable;
 import jas.core.Nameable;
+import jas.core.Node;
+import jas.core.Program;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Created by Jiachen on 3/2/18.
@@ -35,6 +38,13 @@ public class Function implements Evaluable, Nameable {
         return evaluable.eval(val);
     }
 
+    @Override
+    public void evalBatch(double[] xs, double[] out, int from, int to) {
+        Evaluable compiled = compiled();
+        if (compiled == this) Evaluable.super.evalBatch(xs, out, from, to);
+        else compiled.evalBatch(xs, out, from, to);
+    }
+
     public boolean equals(Function other) {
         return this.getName().equals(other.getName());
     }
@@ -53,6 +63,10 @@ public class Function implements Evaluable, Nameable {
     }
 
     protected ArrayList<Double> numericalSolve(double y, double lowerBound, double upperBound, double accuracy, int steps) {
+        return numericalSolve(compiled(), y, lowerBound, upperBound, accuracy, steps);
+    }
+
+    private static ArrayList<Double> numericalSolve(Evaluable f, double y, double lowerBound, double upperBound, double accuracy, int steps) {
         if (Math.abs(upperBound - lowerBound) <= accuracy) {
             ArrayList<Double> results = new ArrayList<>();
             double solution = (lowerBound + upperBound) / 2;
@@ -61,17 +75,32 @@ public class Function implements Evaluable, Nameable {
         }
         ArrayList<Double> solutions = new ArrayList<>();
         double stepVal = (upperBound - lowerBound) / steps;
-        boolean isAbove = this.eval(lowerBound) > y;
+        double[] xs = new double[steps + 2];
+        int n = 0;
+        xs[n++] = lowerBound;
         for (double i = lowerBound + stepVal; i <= upperBound; i += stepVal) {
-            double cur = this.eval(i);
-            if (cur > y ^ isAbove) {
-                isAbove = cur > y;
-                solutions.addAll(numericalSolve(y, i - stepVal, i, accuracy, steps));
+            if (n == xs.length) xs = Arrays.copyOf(xs, n * 2);
+            xs[n++] = i;
+        }
+        double[] ys = new double[n];
+        f.evalBatch(xs, ys, 0, n);
+        boolean isAbove = ys[0] > y;
+        for (int i = 1; i < n; i++) {
+            if (ys[i] > y ^ isAbove) {
+                isAbove = ys[i] > y;
+                solutions.addAll(numericalSolve(f, y, xs[i] - stepVal, xs[i], accuracy, steps));
             }
         }
         return solutions;
     }
 
+    /**
+     * @return an Evaluable equivalent to this function for repeated evaluation; Nodes are lowered to a Program.
+     */
+    protected Evaluable compiled() {
+        return evaluable instanceof Node ? Program.compile((Node) evaluable) : this;
+    }
+
     public Evaluable getEvaluable() {
         return evaluable;
     }
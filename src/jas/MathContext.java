@@ -32,6 +32,28 @@ public class MathContext {
         else return gcd(a, b.mod(a));
     }
 
+    /**
+     * Find Greatest Common Divisor using the binary (Stein's) algorithm, which only shifts and subtracts
+     *
+     * @param a,b the integers in which a gcd is going to be derived, neither of them negative
+     * @return the greatest common divisor, 0 if both are 0
+     */
+    public static long gcd(long a, long b) {
+        if (a == 0 || b == 0) return a == 0 ? b : a;
+        int shift = Long.numberOfTrailingZeros(a | b);
+        a >>= Long.numberOfTrailingZeros(a);
+        do {
+            b >>= Long.numberOfTrailingZeros(b);
+            if (a > b) {
+                long t = a;
+                a = b;
+                b = t;
+            }
+            b -= a;
+        } while (b != 0);
+        return a << shift;
+    }
+
     public static BigInteger factorial(BigInteger a) {
         if (a.equals(ONE) || a.equals(ZERO)) return a;
         else return a.multiply(factorial(a.subtract(ONE)));
@@ -41,6 +63,27 @@ public class MathContext {
         return factorial(new BigInteger(Long.toString(a))).longValue();
     }
 
+    /**
+     * Multinomial coefficient, (k1+k2+...+km)!/(k1!*k2!*...*km!), computed as a product of binomial coefficients
+     * without the factorials; every division is exact.
+     * e.g. multinomial(2, 1, 1) returns 12
+     *
+     * @param k the exponents, none of them negative
+     * @return the number of ways to order k1 + k2 + ... + km items of m kinds
+     */
+    public static BigInteger multinomial(int... k) {
+        BigInteger coefficient = ONE;
+        int n = 0;
+        for (int ki : k) {
+            if (ki < 0) throw new JASException("multinomial coefficient of negative " + ki);
+            for (int i = 1; i <= ki; i++) {
+                n++;
+                coefficient = coefficient.multiply(BigInteger.valueOf(n)).divide(BigInteger.valueOf(i));
+            }
+        }
+        return coefficient;
+    }
+
     /**
      * The least common multiple of a and b is the product divided by the greatest common divisor. I.e. lcm(a, b) = ab/gcd(a, b).
      * --source: http://stackoverflow.com/questions/3154454
@@ -1,14 +1,9 @@
 package jas.core;
 
 
-import jas.Function;
 import jas.core.operations.Binary;
-import jas.core.operations.Custom;
-import jas.core.operations.Manipulation;
-import jas.core.operations.Unary;
 
 import java.util.ArrayList;
-import java.util.stream.Collectors;
 
 /**
  * Created by Jiachen on 3/2/18.
@@ -28,7 +23,7 @@ public interface Assets {
     }
 
     static boolean isSymbol(char c) {
-        return symbols().contains(Character.toString(c));
+        return ",()<>'".indexOf(c) != -1 || operators().indexOf(c) != -1;
     }
 
     static boolean isValidVarName(String s) {
@@ -46,15 +41,10 @@ public interface Assets {
         return true;
     }
 
+    /**
+     * @return names of the unary and custom operations of the current context; must not be modified.
+     */
     static ArrayList<String> reservedNames() {
-        ArrayList<String> names = new ArrayList<>();
-        names.addAll(Unary.registeredOperations().stream()
-                .map(Function::getName)
-                .collect(Collectors.toCollection(ArrayList::new)));
-        names.addAll(Custom.registeredManipulations().stream()
-                .map(Manipulation::getName)
-                .collect(Collectors.toCollection(ArrayList::new)));
-        names.add("list");
-        return names;
+        return ReservedNames.current().list();
     }
 }
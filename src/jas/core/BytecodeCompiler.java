@@ -0,0 +1,387 @@
+package jas.core;
+
+import jas.core.components.Constants;
+import jas.core.components.RawValue;
+import jas.core.components.Variable;
+import jas.core.operations.Binary;
+import jas.core.operations.Nary;
+import jas.core.operations.Sum;
+import jas.core.operations.Unary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Translates a Node into a JVM class implementing Evaluable, so that the expression could be inlined
+ * and optimized by the JIT just like hand written Java. Built-in binary operators become arithmetic
+ * instructions, built-in unary operations become direct calls to java.lang.Math, and numbers are loaded
+ * from the constant pool. Everything else - user defined operations, constants (which could be redefined),
+ * custom operations and so on - is called back through the Evaluable/BinEvaluable interfaces.
+ * <p>
+ * The generated code is a snapshot of the Node: modifying the Node afterwards does not affect it.
+ * Each class is defined by its own class loader so that it is unloaded as soon as it becomes unreachable.
+ */
+public class BytecodeCompiler {
+    /**
+     * methods larger than this are never compiled by HotSpot, in which case the interpreter is faster.
+     */
+    private static final int MAX_CODE_LENGTH = 8000;
+    private static final String EVALUABLE = "jas/core/Evaluable";
+    private static final String BIN_EVALUABLE = "jas/core/operations/Binary$BinEvaluable";
+    private static final AtomicInteger counter = new AtomicInteger();
+    private static final Map<String, String> mathMethods = new HashMap<>();
+    private static final Map<String, String> reciprocals = new HashMap<>();
+
+    static {
+        mathMethods.put("cos", "cos");
+        mathMethods.put("sin", "sin");
+        mathMethods.put("tan", "tan");
+        mathMethods.put("log", "log10");
+        mathMethods.put("int", "floor");
+        mathMethods.put("atan", "atan");
+        mathMethods.put("asin", "asin");
+        mathMethods.put("acos", "acos");
+        mathMethods.put("abs", "abs");
+        mathMethods.put("cosh", "cosh");
+        mathMethods.put("sinh", "sinh");
+        mathMethods.put("tanh", "tanh");
+        reciprocals.put("sec", "cos");
+        reciprocals.put("csc", "sin");
+        reciprocals.put("cot", "tan");
+    }
+
+    private String className = "jas/core/generated/Expression" + counter.incrementAndGet();
+    private ConstantPool pool = new ConstantPool();
+    private Code code = new Code();
+    private ArrayList<Object> callbacks = new ArrayList<>();
+    private ArrayList<String> callbackTypes = new ArrayList<>();
+
+    private BytecodeCompiler() {
+
+    }
+
+    /**
+     * @param node the Node to be compiled, preferably simplified.
+     * @return an Evaluable equivalent to node.eval(x); the node itself if it could not be compiled.
+     */
+    public static Evaluable compile(Node node) {
+        try {
+            return new BytecodeCompiler().generate(node);
+        } catch (ReflectiveOperationException | LinkageError | IllegalStateException | IOException e) {
+            if (JasContext.current().isDebug()) System.out.println("# bytecode compilation failed, falling back to interpreter: " + e);
+            return node;
+        }
+    }
+
+    private Evaluable generate(Node node) throws ReflectiveOperationException, IOException {
+        emit(node);
+        code.op(0xaf, -2); // dreturn
+        if (code.length() > MAX_CODE_LENGTH)
+            throw new IllegalStateException("expression too large");
+        byte[] bytes = assemble();
+        Class<?> cls = new Loader(Evaluable.class.getClassLoader()).define(className.replace('/', '.'), bytes);
+        return (Evaluable) cls.getConstructor(Object[].class).newInstance((Object) callbacks.toArray());
+    }
+
+    /**
+     * emits instructions that leave the value of the node on the operand stack.
+     * Local variable 1 holds x.
+     */
+    private void emit(Node node) {
+        if (node instanceof RawValue) {
+            double value = ((RawValue) node).doubleValue();
+            if (Double.doubleToRawLongBits(value) == 0L) code.op(0x0e, 2); // dconst_0
+            else if (value == 1) code.op(0x0f, 2); // dconst_1
+            else code.op(0x14, 2).u2(pool.doubleConst(value)); // ldc2_w
+        } else if (node.getClass() == Variable.class) {
+            code.op(0x27, 2); // dload_1
+        } else if (node instanceof Binary) {
+            emit((Binary) node);
+        } else if (node instanceof Nary && !((Nary) node).getOperands().isEmpty()) {
+            ArrayList<Node> operands = ((Nary) node).getOperands();
+            emit(operands.get(0));
+            for (int i = 1; i < operands.size(); i++) {
+                emit(operands.get(i));
+                code.op(node instanceof Sum ? 0x63 : 0x6b, -2); // dadd, dmul
+            }
+        } else if (node instanceof Unary) {
+            emit((Unary) node);
+        } else {
+            callback(node, EVALUABLE);
+            code.op(0x27, 2); // dload_1
+            invokeEvaluable();
+        }
+    }
+
+    private void emit(Binary binary) {
+        Binary.Operator operator = binary.getOperator();
+        if (!operator.isBuiltIn() || operator.getName().equals(",")) {
+            callback(operator, BIN_EVALUABLE);
+            emit(binary.getLeft());
+            emit(binary.getRight());
+            code.op(0xb9, -3).u2(pool.interfaceMethodRef(BIN_EVALUABLE, "eval", "(DD)D")).u1(5).u1(0);
+            return;
+        }
+        emit(binary.getLeft());
+        emit(binary.getRight());
+        switch (operator.getName()) {
+            case "+":
+                code.op(0x63, -2); // dadd
+                break;
+            case "-":
+                code.op(0x67, -2); // dsub
+                break;
+            case "*":
+                code.op(0x6b, -2); // dmul
+                break;
+            case "/":
+                code.op(0x6f, -2); // ddiv
+                break;
+            case "^":
+                invokeMath("pow", "(DD)D", -2);
+                break;
+        }
+    }
+
+    private void emit(Unary unary) {
+        String function = unary.getFunction().getName();
+        if (!unary.isBuiltIn() || !(mathMethods.containsKey(function) || reciprocals.containsKey(function) || function.equals("ln"))) {
+            callback(unary.getFunction(), EVALUABLE);
+            emit(unary.getOperand());
+            invokeEvaluable();
+            return;
+        }
+        switch (function) {
+            case "ln":
+                emit(unary.getOperand());
+                invokeMath("log", "(D)D", 0);
+                double base = Math.log(Constants.E.val());
+                if (base != 1) {
+                    code.op(0x14, 2).u2(pool.doubleConst(base));
+                    code.op(0x6f, -2); // ddiv
+                }
+                break;
+            case "sec":
+            case "csc":
+            case "cot":
+                code.op(0x0f, 2); // dconst_1
+                emit(unary.getOperand());
+                invokeMath(reciprocals.get(function), "(D)D", 0);
+                code.op(0x6f, -2); // ddiv
+                break;
+            default:
+                emit(unary.getOperand());
+                invokeMath(mathMethods.get(function), "(D)D", 0);
+        }
+    }
+
+    /**
+     * pushes the field holding the callback onto the operand stack.
+     */
+    private void callback(Object callback, String type) {
+        int idx = callbacks.size();
+        callbacks.add(callback);
+        callbackTypes.add(type);
+        code.op(0x2a, 1); // aload_0
+        code.op(0xb4, 0).u2(pool.fieldRef(className, "f" + idx, "L" + type + ";")); // getfield
+    }
+
+    private void invokeEvaluable() {
+        code.op(0xb9, -1).u2(pool.interfaceMethodRef(EVALUABLE, "eval", "(D)D")).u1(3).u1(0);
+    }
+
+    private void invokeMath(String method, String descriptor, int stackChange) {
+        code.op(0xb8, stackChange).u2(pool.methodRef("java/lang/Math", method, descriptor)); // invokestatic
+    }
+
+    private byte[] assemble() throws IOException {
+        Code init = new Code();
+        init.op(0x2a, 1); // aload_0
+        init.op(0xb7, -1).u2(pool.methodRef("java/lang/Object", "<init>", "()V")); // invokespecial
+        for (int i = 0; i < callbacks.size(); i++) {
+            init.op(0x2a, 1); // aload_0
+            init.op(0x2b, 1); // aload_1
+            init.op(0x11, 1).u2(i); // sipush
+            init.op(0x32, -1); // aaload
+            init.op(0xc0, 0).u2(pool.classRef(callbackTypes.get(i))); // checkcast
+            init.op(0xb5, -2).u2(pool.fieldRef(className, "f" + i, "L" + callbackTypes.get(i) + ";")); // putfield
+        }
+        init.op(0xb1, 0); // return
+
+        int thisClass = pool.classRef(className);
+        int superClass = pool.classRef("java/lang/Object");
+        int evaluable = pool.classRef(EVALUABLE);
+        int codeAttribute = pool.utf8("Code");
+        int[] fieldNames = new int[callbacks.size()], fieldTypes = new int[callbacks.size()];
+        for (int i = 0; i < callbacks.size(); i++) {
+            fieldNames[i] = pool.utf8("f" + i);
+            fieldTypes[i] = pool.utf8("L" + callbackTypes.get(i) + ";");
+        }
+        int initName = pool.utf8("<init>"), initType = pool.utf8("([Ljava/lang/Object;)V");
+        int evalName = pool.utf8("eval"), evalType = pool.utf8("(D)D");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(52); // Java 8; straight-line code does not need stack map frames
+        pool.writeTo(out);
+        out.writeShort(0x0001 | 0x0010 | 0x0020); // public final super
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(1);
+        out.writeShort(evaluable);
+        out.writeShort(callbacks.size());
+        for (int i = 0; i < callbacks.size(); i++) {
+            out.writeShort(0x0002 | 0x0010); // private final
+            out.writeShort(fieldNames[i]);
+            out.writeShort(fieldTypes[i]);
+            out.writeShort(0);
+        }
+        out.writeShort(2);
+        writeMethod(out, initName, initType, codeAttribute, init, 2);
+        writeMethod(out, evalName, evalType, codeAttribute, code, 3);
+        out.writeShort(0);
+        return bytes.toByteArray();
+    }
+
+    private void writeMethod(DataOutputStream out, int name, int type, int codeAttribute, Code code, int maxLocals) throws IOException {
+        out.writeShort(0x0001); // public
+        out.writeShort(name);
+        out.writeShort(type);
+        out.writeShort(1);
+        out.writeShort(codeAttribute);
+        out.writeInt(12 + code.length());
+        out.writeShort(code.maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length());
+        code.bytes.writeTo(out);
+        out.writeShort(0); // exception table
+        out.writeShort(0); // attributes
+    }
+
+    /**
+     * instructions of a method, keeping track of the depth of the operand stack.
+     */
+    private static class Code {
+        private ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private int stack;
+        private int maxStack;
+
+        /**
+         * @param opcode      the instruction
+         * @param stackChange change in the depth of the operand stack, in slots (doubles take two)
+         */
+        private Code op(int opcode, int stackChange) {
+            bytes.write(opcode);
+            stack += stackChange;
+            maxStack = Math.max(maxStack, stack);
+            return this;
+        }
+
+        private Code u1(int b) {
+            bytes.write(b);
+            return this;
+        }
+
+        private Code u2(int s) {
+            bytes.write(s >> 8);
+            bytes.write(s);
+            return this;
+        }
+
+        private int length() {
+            return bytes.size();
+        }
+    }
+
+    private static class ConstantPool {
+        private ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private DataOutputStream out = new DataOutputStream(bytes);
+        private Map<String, Integer> indices = new HashMap<>();
+        private int count = 1;
+
+        private int utf8(String s) {
+            return entry("U" + s, 1, () -> out.writeUTF(s));
+        }
+
+        private int classRef(String name) {
+            int utf8 = utf8(name);
+            return entry("C" + name, 7, () -> out.writeShort(utf8));
+        }
+
+        private int nameAndType(String name, String descriptor) {
+            int n = utf8(name), d = utf8(descriptor);
+            return entry("N" + name + ":" + descriptor, 12, () -> {
+                out.writeShort(n);
+                out.writeShort(d);
+            });
+        }
+
+        private int fieldRef(String owner, String name, String descriptor) {
+            return memberRef(9, owner, name, descriptor);
+        }
+
+        private int methodRef(String owner, String name, String descriptor) {
+            return memberRef(10, owner, name, descriptor);
+        }
+
+        private int interfaceMethodRef(String owner, String name, String descriptor) {
+            return memberRef(11, owner, name, descriptor);
+        }
+
+        private int memberRef(int tag, String owner, String name, String descriptor) {
+            int c = classRef(owner), nt = nameAndType(name, descriptor);
+            return entry(tag + owner + "." + name + ":" + descriptor, tag, () -> {
+                out.writeShort(c);
+                out.writeShort(nt);
+            });
+        }
+
+        private int doubleConst(double d) {
+            String key = "D" + Double.doubleToRawLongBits(d);
+            if (indices.containsKey(key)) return indices.get(key);
+            int idx = entry(key, 6, () -> out.writeDouble(d));
+            count++; // doubles take up two entries
+            return idx;
+        }
+
+        private int entry(String key, int tag, Writer writer) {
+            Integer idx = indices.get(key);
+            if (idx != null) return idx;
+            try {
+                out.writeByte(tag);
+                writer.write();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            indices.put(key, count);
+            return count++;
+        }
+
+        private void writeTo(DataOutputStream dest) throws IOException {
+            if (count > 0xffff) throw new IllegalStateException("too many constants");
+            dest.writeShort(count);
+            bytes.writeTo(dest);
+        }
+
+        private interface Writer {
+            void write() throws IOException;
+        }
+    }
+
+    private static class Loader extends ClassLoader {
+        private Loader(ClassLoader parent) {
+            super(parent);
+        }
+
+        private Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
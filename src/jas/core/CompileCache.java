@@ -0,0 +1,128 @@
+package jas.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size bounded, least recently used cache of compiled Nodes keyed on the normalized source text.
+ * Cached Nodes are never handed out directly; callers always receive a copy() so that the operations
+ * that modify self (simplify, expand, etc.) cannot corrupt the cached entries.
+ */
+public class CompileCache {
+    private final int capacity;
+    private final LinkedHashMap<String, Node> entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+    private long generation;
+
+    public CompileCache(int capacity) {
+        if (capacity <= 0) throw new JASException("capacity of compile cache must be positive");
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<String, Node>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Node> eldest) {
+                if (size() <= CompileCache.this.capacity) return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @param exp the expression, e.g. "2x + 1" and "2x+1" are the same expression.
+     * @return the key under which the compiled expression is stored
+     */
+    static String normalize(String exp) {
+        return exp.replace(" ", "");
+    }
+
+    /**
+     * @param exp normalized expression
+     * @return a copy of the cached Node; null if the expression is not cached.
+     */
+    synchronized Node get(String exp) {
+        Node node = entries.get(exp);
+        if (node == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return node.copy();
+    }
+
+    /**
+     * @param exp        normalized expression
+     * @param node       compiled Node, a copy of which is stored.
+     * @param generation generation of the cache at the time when compilation began; if the cache has been
+     *                   invalidated since, the Node might have been compiled with an outdated grammar and is discarded.
+     */
+    synchronized void put(String exp, Node node, long generation) {
+        if (generation != this.generation) return;
+        entries.put(exp, node.copy());
+    }
+
+    /**
+     * @return number of times the cache has been invalidated since its creation
+     */
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * discards all of the entries; invoked whenever the grammar changes, i.e. when unary, binary or custom
+     * operations and constants are defined or unregistered.
+     */
+    public synchronized void invalidate() {
+        generation++;
+        if (entries.isEmpty()) return;
+        entries.clear();
+        invalidations++;
+    }
+
+    public synchronized void resetStatistics() {
+        hits = misses = evictions = invalidations = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * @return hits / (hits + misses); 0 if the cache has never been queried.
+     */
+    public synchronized double hitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "CompileCache{size=" + entries.size() + "/" + capacity
+                + ", hits=" + hits
+                + ", misses=" + misses
+                + ", evictions=" + evictions
+                + ", invalidations=" + invalidations + "}";
+    }
+}
@@ -18,21 +18,91 @@ import static jas.utils.ColorFormatter.*;
 public class Compiler {
 
     /**
+     * Compiles the expression with a single pass lexer and precedence climbing parser, linear in the
+     * length of the input. Builds exactly the same trees as {@link #legacyCompile(String)}.
+     * If the compile cache is enabled, previously compiled expressions are copied from the cache instead.
+     *
+     * @param exp the string representation of an expression to be incorporated into JMC.
+     * @return the Function instance derived from the String representation
+     */
+    public static Node compile(String exp) {
+        if (exp.toLowerCase().contains("undef")) return RawValue.UNDEF;
+        CompileCache cache = JasContext.current().getCompileCache();
+        if (cache == null) return parse(exp);
+        String key = CompileCache.normalize(exp);
+        Node node = cache.get(key);
+        if (node != null) return node;
+        long generation = cache.generation();
+        node = parse(exp);
+        cache.put(key, node, generation);
+        return node;
+    }
+
+    /**
+     * Opt-in: caches up to [capacity] compiled expressions, discarding the least recently used ones.
+     * The cache is invalidated whenever unary, binary, custom operations or constants are (re)defined.
+     *
+     * @param capacity maximum number of cached expressions
+     * @return the newly created cache, for inspecting hit/miss/eviction counts
+     */
+    public static CompileCache enableCache(int capacity) {
+        CompileCache cache = new CompileCache(capacity);
+        JasContext.current().setCompileCache(cache);
+        return cache;
+    }
+
+    public static void disableCache() {
+        JasContext.current().setCompileCache(null);
+    }
+
+    /**
+     * @return the compile cache of the current context; null if caching is disabled.
+     */
+    public static CompileCache getCache() {
+        return JasContext.current().getCompileCache();
+    }
+
+    /**
+     * discards cached compilations of the current context, should be invoked whenever the grammar changes.
+     */
+    public static void invalidateCache() {
+        CompileCache cache = getCache();
+        if (cache != null) cache.invalidate();
+    }
+
+    /**
+     * compiles a built-in expression, e.g. the pattern of a built-in rule, in the default context. It does not go
+     * through the compile cache, so that it neither evicts nor counts towards the expressions of the user.
+     *
+     * @param exp the built-in expression
+     * @return a new tree
+     */
+    public static Node compileBuiltIn(String exp) {
+        return JasContext.getDefault().call(() -> parse(exp));
+    }
+
+    private static Node parse(String exp) {
+        exp = validate(exp);
+        Node node = Parser.parse(exp);
+        if (node instanceof Binary) ((Binary) node).setOmitParenthesis(true);
+        if (JasContext.current().isDebug()) log(lightRed("output:\t") + colorMathSymbols(node.toString()));
+        return node;
+    }
+
+    /**
+     * The original string-rewriting compiler. The expression is formatted several times over and the innermost
+     * parenthesis are then repeatedly substituted with "&n" and "#n" placeholders, which makes it roughly quadratic
+     * in the length of the input. Kept around as a reference for the single pass {@link Parser}.
+     *
      * @param exp the string representation of an expression to be incorporated into JMC.
      * @return the Function instance derived from the String representation
      * @since May 19th. This method is the core of JMC. Took Jiachen tremendous effort. This system of
      * method represents his life's work
      */
-    public static Node compile(String exp) {
+    @Deprecated
+    public static Node legacyCompile(String exp) {
         if (exp.toLowerCase().contains("undef")) return RawValue.UNDEF;
-        if ((exp = exp.replace(" ", "")).equals("")) throw new JASException("cannot compile an empty string");
-        if (exp.contains(">") || exp.contains("<")) throw new JASException("angle brackets '<>' no longer supported");
-        if (numOccurrence(exp, '(') != numOccurrence(exp, ')'))
-            throw new JASException("'()' mismatch in " + "\"" + exp + "\"");
-        if (exp.contains("&") || exp.contains("#")) throw new JASException("syntax: remove illegal character(s) &, #");
-        if (numOccurrence(exp, '{') != numOccurrence(exp, '}'))
-            throw new JASException("'{}' mismatch in " + "\"" + exp + "\"");
-        if (numOccurrence(exp, '\'') % 2 != 0) throw new JASException("'' mismatch in " + "\"" + exp + "\"");
+        exp = validate(exp);
         exp = formatList(exp); // this has to happen before formatOperation()
         exp = formatOperations(exp.replace("(-", "(0-").replace(",-", ",0-"));
         exp = formatCoefficients(exp);
@@ -58,6 +128,23 @@ public class Compiler {
         return node;
     }
 
+    /**
+     * @param exp raw input
+     * @return input with white spaces removed
+     * @throws JASException if the input is empty or the brackets are mismatched.
+     */
+    private static String validate(String exp) {
+        if ((exp = exp.replace(" ", "")).equals("")) throw new JASException("cannot compile an empty string");
+        if (exp.contains(">") || exp.contains("<")) throw new JASException("angle brackets '<>' no longer supported");
+        if (numOccurrence(exp, '(') != numOccurrence(exp, ')'))
+            throw new JASException("'()' mismatch in " + "\"" + exp + "\"");
+        if (exp.contains("&") || exp.contains("#")) throw new JASException("syntax: remove illegal character(s) &, #");
+        if (numOccurrence(exp, '{') != numOccurrence(exp, '}'))
+            throw new JASException("'{}' mismatch in " + "\"" + exp + "\"");
+        if (numOccurrence(exp, '\'') % 2 != 0) throw new JASException("'' mismatch in " + "\"" + exp + "\"");
+        return exp;
+    }
+
     private static String formatLiteral(String exp) {
         exp = exp.replace("'", "''");
         int i = 0;
@@ -93,15 +180,9 @@ public class Compiler {
 
 
     private static String formatOperations(String exp) {
-        while (isUnformatted(exp)) {
-            int idx1 = -1;
-            for (String name : Assets.reservedNames()) {
-                String prefix = name + "(";
-                if (exp.contains(prefix)) {
-                    idx1 = exp.indexOf(prefix) + prefix.length() - 1;
-                    break;
-                }
-            }
+        ReservedNames names = ReservedNames.current();
+        int idx1;
+        while ((idx1 = names.indexOfCall(exp)) != -1) {
             int idx2 = findMatchingIndex(exp, idx1, ')');
             exp = replaceAt(replaceAt(exp, idx1, "<("), idx2 + 1, ")>");
         }
@@ -112,14 +193,6 @@ public class Compiler {
         return s.substring(0, idx) + c + s.substring(idx + 1);
     }
 
-    private static boolean isUnformatted(String exp) {
-        for (String s : Assets.reservedNames()) {
-            if (exp.contains(s + "("))
-                return true;
-        }
-        return false;
-    }
-
     public static String colorMathSymbols(String exp) {
         String colored = coloredLine("[36;1m", exp, "<", ">");
         colored = coloredLine("[1;m", colored, "+", "-", "*", "/", "^");
@@ -186,21 +259,7 @@ public class Compiler {
                     break;
                 }
             }
-            if (operationName.equals("list")) {
-                ArrayList<Node> list = new ArrayList<>();
-                if (!isList(operand)) {
-                    if (!operand.equals(RawValue.UNDEF))
-                        list.add(operand);
-                } else list = toList(operand);
-                pending.add(new List(list));
-            } else if (isList(operand)) {
-                pending.add(new Custom(operationName, toList(operand)));
-            } else {
-                ensureValidity(operand);
-                if (Unary.isDefined(operationName)) {
-                    pending.add(new Unary(operand, operationName));
-                } else pending.add(new Custom(operationName, operand));
-            }
+            pending.add(invoke(operationName, operand));
             String left = startIndex == 0 ? "" : segment.substring(0, startIndex + 1);
             log(lightBlue("unary:\t") + colorMathSymbols(segment));
             segment = left + "#" + nodeHashId + segment.substring(indices[1] + 1);
@@ -230,6 +289,27 @@ public class Compiler {
         return pending.get(pending.size() - 1);
     }
 
+    /**
+     * @param name    name of the operation, i.e. "list", a unary operation or a custom operation.
+     * @param operand the operand, or a list of operands in the form of a binary tree -> (a,b),c...
+     * @return List, Unary or Custom operation applied to the operand(s)
+     */
+    static Node invoke(String name, Node operand) {
+        if (name.equals("list")) {
+            ArrayList<Node> list = new ArrayList<>();
+            if (!isList(operand)) {
+                if (!operand.equals(RawValue.UNDEF))
+                    list.add(operand);
+            } else list = toList(operand);
+            return new List(list);
+        } else if (isList(operand)) {
+            return new Custom(name, toList(operand));
+        }
+        ensureValidity(operand);
+        if (Unary.isDefined(name)) return new Unary(operand, name);
+        return new Custom(name, operand);
+    }
+
     /**
      * @param operand a list in the form of a binary tree -> (a,b),c...
      * @return list converted from the binary tree.
@@ -259,24 +339,31 @@ public class Compiler {
                 operands.add(pending.get(Integer.valueOf(operand.substring(componentIndex + 1))));
             else if (bundleIndex != -1)
                 operands.add(nodes.get(Integer.valueOf(operand.substring(bundleIndex + 1))));
-            else if (Constants.contains(operand)) {
-                operands.add(Constants.get(operand));
-            } else if (operand.charAt(0) == '\'') {
+            else if (operand.charAt(0) == '\'' && !Constants.contains(operand)) {
                 if (numOccurrence(operand, '\'') != 2)
                     throw new JASException("syntax error due to ' in \"" + operand + "\"");
                 else operands.add(new Literal(operand.substring(1, operand.length() - 1)));
-            } else if (RawValue.isNumeric(operand)) operands.add(new RawValue(Double.valueOf(operand)));
-            else if (isValidVarName(operand)) operands.add(new Variable(operand.toLowerCase()));
-            else throw new JASException("unresolved symbol \"" + operand + "\"");
+            } else operands.add(resolve(operand));
         }
         return operands;
     }
 
+    /**
+     * @param operand a constant, a number or a variable name, e.g. "pi", "2.5", "x"
+     * @return the leaf node that operand represents
+     */
+    static Node resolve(String operand) {
+        if (Constants.contains(operand)) return Constants.get(operand);
+        else if (RawValue.isNumeric(operand)) return new RawValue(Double.valueOf(operand));
+        else if (isValidVarName(operand)) return new Variable(operand.toLowerCase());
+        throw new JASException("unresolved symbol \"" + operand + "\"");
+    }
+
     private static void ensureValidity(ArrayList<Node> operands) {
         operands.forEach(Compiler::ensureValidity);
     }
 
-    private static void ensureValidity(Node node) {
+    static void ensureValidity(Node node) {
         if (node.equals(RawValue.UNDEF))
             throw new JASException("missing operand(s)");
     }
@@ -319,8 +406,7 @@ public class Compiler {
      */
     private static int numOccurrence(String s, char c) {
         int count = 0;
-        while (s.indexOf(c) != -1) {
-            s = s.substring(s.indexOf(c) + 1);
+        for (int i = s.indexOf(c); i != -1; i = s.indexOf(c, i + 1)) {
             count++;
         }
         return count;
@@ -357,8 +443,17 @@ public class Compiler {
     }
 
     private static boolean startsWithConstant(String exp) {
+        return startsWithConstant(exp, 0);
+    }
+
+    /**
+     * @param exp    the expression
+     * @param offset index to start looking from
+     * @return whether the name of a constant appears in exp at index offset
+     */
+    static boolean startsWithConstant(String exp, int offset) {
         for (Constants.Constant constant : Constants.list()) {
-            if (exp.startsWith(constant.toString()))
+            if (exp.startsWith(constant.toString(), offset))
                 return true;
         }
         return false;
@@ -398,7 +493,7 @@ public class Compiler {
     }
 
     private static void log(Object o) {
-        if (Mode.DEBUG) System.out.println(o);
+        if (JasContext.current().isDebug()) System.out.println(o);
     }
 
 }
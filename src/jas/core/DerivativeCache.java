@@ -0,0 +1,218 @@
+package jas.core;
+
+import jas.core.components.Variable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Size bounded, least recently used memo of derivatives, owned by a JasContext. It keeps two kinds of entries:
+ * <p>
+ * chains: every order of derivative(v, n) computed so far for an expression and a variable, so that asking for a
+ * higher order later picks up at the highest order that is known instead of starting over.
+ * <p>
+ * first derivatives: the unsimplified firstDerivative(v) of every operand that the product, quotient, chain and
+ * power rules differentiate, so that a subexpression that occurs in many terms or in several orders is only
+ * differentiated once, e.g. cos(x) within all of the terms of a 10th derivative. Every occurrence gets a copy rather
+ * than the entry itself: simplify() works in place, and freezing the shared subtrees instead slows it down more than
+ * the copies cost.
+ * <p>
+ * Keys compare the exact structure of the expression, together with the variable and the modes that affect the
+ * result. The memo empties itself as soon as anything is stored or (re)defined in its context. derivative(v, n,
+ * SimplifyOptions) bypasses the chains, since its orders could be cut short by the budget.
+ */
+public class DerivativeCache {
+    private final int capacity;
+    private final LinkedHashMap<Key, ArrayList<Node>> chains; // order i at index i, private modifiable copies
+    private final LinkedHashMap<Key, Node> firstDerivatives; // private modifiable copies
+    private Object definitions; // the registries of the context the entries were computed with
+    private long generation;
+    private long hits;
+    private long misses;
+    private long firstDerivativeHits;
+    private long firstDerivativeMisses;
+    private long invalidations;
+
+    /**
+     * @param capacity maximum number of chains, and of first derivatives of subexpressions
+     */
+    public DerivativeCache(int capacity) {
+        if (capacity <= 0) throw new JASException("capacity of derivative cache must be positive");
+        this.capacity = capacity;
+        this.chains = lru();
+        this.firstDerivatives = lru();
+    }
+
+    private <V> LinkedHashMap<Key, V> lru() {
+        return new LinkedHashMap<Key, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, V> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @param node        expression to differentiate, not modified
+     * @param v           the variable
+     * @param n           order of the derivative
+     * @param definitions registries of the current context, see JasContext.definitions()
+     * @return a modifiable copy of the nth derivative, computed from the highest order known
+     */
+    Node derivative(Node node, Variable v, int n, Object definitions) {
+        Key key = new Key(node.thaw(), v.getName());
+        ArrayList<Node> chain;
+        long generation;
+        synchronized (this) {
+            validate(definitions);
+            chain = chains.get(key);
+            if (chain != null && n < chain.size()) {
+                hits++;
+                return SimplificationCache.copy(chain.get(n));
+            }
+            misses++;
+            generation = this.generation;
+        }
+        ArrayList<Node> extended = new ArrayList<>();
+        if (chain == null) extended.add(SimplificationCache.copy(node.copy().simplify()));
+        else extended.addAll(chain); // the entries are never modified, only copied
+        while (extended.size() <= n) {
+            Node der = SimplificationCache.copy(extended.get(extended.size() - 1)).firstDerivative(v).simplest();
+            extended.add(SimplificationCache.copy(der));
+        }
+        synchronized (this) {
+            if (generation == this.generation) chains.put(key, extended);
+        }
+        return SimplificationCache.copy(extended.get(n));
+    }
+
+    /**
+     * @param node        operand to differentiate
+     * @param v           the variable
+     * @param definitions registries of the current context, see JasContext.definitions()
+     * @param derivative  takes the first derivative of node, invoked only if it is not cached
+     * @return first derivative of node, a copy of the cached one if there is one
+     */
+    Node firstDerivative(Node node, Variable v, Object definitions, Supplier<Node> derivative) {
+        Key key = new Key(node, v.getName());
+        long generation;
+        synchronized (this) {
+            validate(definitions);
+            Node result = firstDerivatives.get(key);
+            if (result != null) {
+                firstDerivativeHits++;
+                return SimplificationCache.copy(result);
+            }
+            firstDerivativeMisses++;
+            generation = this.generation;
+        }
+        key = new Key(node.thaw(), v.getName()); // e.g. Custom::firstDerivative simplifies node in place
+        Node result = derivative.get();
+        Node stored = SimplificationCache.copy(result);
+        synchronized (this) {
+            if (generation == this.generation) firstDerivatives.put(key, stored);
+        }
+        return result;
+    }
+
+    private void validate(Object definitions) {
+        if (definitions == this.definitions) return;
+        invalidate();
+        this.definitions = definitions;
+    }
+
+    /**
+     * discards all of the entries.
+     */
+    public synchronized void invalidate() {
+        generation++;
+        if (chains.isEmpty() && firstDerivatives.isEmpty()) return;
+        chains.clear();
+        firstDerivatives.clear();
+        invalidations++;
+    }
+
+    public synchronized void resetStatistics() {
+        hits = misses = firstDerivativeHits = firstDerivativeMisses = invalidations = 0;
+    }
+
+    /**
+     * @return number of chains
+     */
+    public synchronized int size() {
+        return chains.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return number of derivative(v, n) calls whose order was known
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return number of first derivatives of subexpressions that were shared instead of taken again
+     */
+    public synchronized long getFirstDerivativeHits() {
+        return firstDerivativeHits;
+    }
+
+    public synchronized long getFirstDerivativeMisses() {
+        return firstDerivativeMisses;
+    }
+
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "DerivativeCache{chains=" + chains.size() + "/" + capacity
+                + ", firstDerivatives=" + firstDerivatives.size() + "/" + capacity
+                + ", hits=" + hits
+                + ", misses=" + misses
+                + ", firstDerivativeHits=" + firstDerivativeHits
+                + ", firstDerivativeMisses=" + firstDerivativeMisses
+                + ", invalidations=" + invalidations + "}";
+    }
+
+    /**
+     * expression and variable; the structure is compared exactly, unlike Node.equals, which is commutative.
+     */
+    private static final class Key {
+        private final Node node;
+        private final String variable;
+        private final int modes;
+        private final int hash;
+
+        private Key(Node node, String variable) {
+            this.node = node;
+            this.variable = variable;
+            this.modes = SimplificationCache.modes();
+            this.hash = 31 * (31 * variable.hashCode() + modes) + SimplificationCache.exactHash(node);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) return false;
+            Key key = (Key) other;
+            return hash == key.hash && modes == key.modes && variable.equals(key.variable)
+                    && SimplificationCache.sameStructure(node, key.node);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package jas.core;
+
+import jas.core.components.Constants;
+import jas.core.components.Literal;
+import jas.core.components.Variable;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * Evaluates a Node with several variables bound at once. Each of the bound variables is resolved to a slot
+ * when the plan is made, so that evaluation reads the values straight from an array instead of replacing the
+ * variables in the tree; e.g. for a*x^2+b*x+c bound to [a, b, c, x], eval(1, 2, 3, 4) returns 27.
+ * Variables that are not bound evaluate to whatever val() gives, i.e. NaN unless a value is stored in them.
+ */
+public class EvalPlan {
+    private Program program;
+    private Variable[] variables;
+
+    EvalPlan(Node node, Variable... variables) {
+        HashSet<String> names = new HashSet<>();
+        for (Variable variable : variables) {
+            if (!isBindable(variable)) throw new JASException("\"" + variable + "\" cannot be bound");
+            if (!names.add(variable.getName()))
+                throw new JASException("variable \"" + variable + "\" is bound more than once");
+        }
+        this.variables = variables.clone();
+        this.program = Program.compile(node, this.variables);
+    }
+
+    static boolean isBindable(Variable variable) {
+        return !(variable instanceof Constants.Constant || variable instanceof Literal);
+    }
+
+    /**
+     * @param bindings values of the bound variables, in the order they were bound.
+     * @return the value of the node
+     */
+    public double eval(double... bindings) {
+        if (bindings.length != variables.length)
+            throw new JASException("expected " + variables.length + " values, found " + bindings.length);
+        return program.eval(bindings);
+    }
+
+    public Variable[] getVariables() {
+        return variables.clone();
+    }
+
+    @Override
+    public String toString() {
+        return "EvalPlan" + Arrays.toString(variables);
+    }
+}
@@ -6,4 +6,19 @@ package jas.core;
  */
 public interface Evaluable {
     double eval(double x);
+
+    /**
+     * evaluates xs[from] through xs[to - 1], storing the results at the same indices of out.
+     * Implementations evaluate column by column where possible, i.e. each operation is applied to the
+     * entire range before moving on to the next, so that the loops are simple enough to be vectorized by the JIT.
+     *
+     * @param xs   inputs
+     * @param out  outputs, could be the same array as xs
+     * @param from first index, inclusive
+     * @param to   last index, exclusive
+     */
+    default void evalBatch(double[] xs, double[] out, int from, int to) {
+        for (int i = from; i < to; i++)
+            out[i] = eval(xs[i]);
+    }
 }
@@ -0,0 +1,80 @@
+package jas.core;
+
+import jas.core.components.List;
+import jas.core.operations.Binary;
+import jas.core.operations.Operation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Hash consing factory: equal subtrees of the Nodes that pass through the same Interner are stored only once,
+ * turning the trees into a DAG. This pays off for large derivatives, where the same sub-expressions repeat a lot.
+ * Interned nodes are frozen; thaw() gives a modifiable tree whenever one is needed.
+ * Since interned nodes are canonical, two nodes of the same Interner are equal if and only if they are the same
+ * instance; nodes interned by another Interner are interned again.
+ */
+public class Interner {
+    private HashMap<Node, Node> nodes = new HashMap<>();
+    private long hits;
+    private long misses;
+
+    /**
+     * @param node the node to be interned, which is not modified.
+     * @return the canonical instance of the node, sharing its subtrees with the nodes interned before.
+     */
+    public synchronized Node intern(Node node) {
+        return node.getInterner() == this ? node : canonical(node.thaw());
+    }
+
+    /**
+     * interns the children first and then the node itself; modifies node.
+     */
+    private Node canonical(Node node) {
+        if (node.getInterner() == this) return node;
+        if (node instanceof Binary) node.order(); // reorders the operands before they are interned
+        ArrayList<Node> children = node instanceof Operation ? ((Operation) node).getOperands()
+                : node instanceof List ? ((List) node).unwrap() : null;
+        if (children != null) {
+            for (int i = 0; i < children.size(); i++) // the list is updated directly, the operands remain ordered
+                children.set(i, canonical(children.get(i)));
+        }
+        Node existing = nodes.get(node);
+        if (existing != null) {
+            hits++;
+            return existing;
+        }
+        misses++;
+        node.intern(this);
+        nodes.put(node, node);
+        return node;
+    }
+
+    /**
+     * @return number of distinct nodes interned
+     */
+    public synchronized int size() {
+        return nodes.size();
+    }
+
+    public synchronized void clear() {
+        nodes.clear();
+        hits = misses = 0;
+    }
+
+    /**
+     * @return number of times a subtree was found to be interned already
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Interner{size=" + nodes.size() + ", hits=" + hits + ", misses=" + misses + "}";
+    }
+}
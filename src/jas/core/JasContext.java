@@ -0,0 +1,335 @@
+package jas.core;
+
+import java.util.HashMap;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Session that owns the stored variables, constants, unary, binary and custom operations, the compile,
+ * simplification and derivative caches and the modes that affect results, i.e. FRACTION, POLYNOMIAL,
+ * STRUCTURAL_ORDER, COLLECT_LIKE_TERMS, MULTINOMIAL, SATURATION, PARALLEL and NARY, as well as DEBUG. A mode that
+ * is not set in a context follows the static flag of Mode, which only the display settings like COMPACT and the
+ * colors are left to. Every thread works in its current context; threads that never entered one share the default
+ * context, which is where the static methods like Variable.store and Unary.define have always written.
+ * <p>
+ * A new context starts out with the built-in definitions only, and fork() snapshots an existing one. Definitions are
+ * copy-on-write: registries are never modified, a definition replaces the registry of its own context with a
+ * modified copy, so contexts never see each other's definitions and reading a registry takes no lock.
+ * <p>
+ * e.g. new JasContext().call(() -> Compiler.compile("f(x)").simplify()) is not affected by what other threads define.
+ */
+public final class JasContext {
+    private static final JasContext DEFAULT = new JasContext();
+    private static final ThreadLocal<JasContext> CURRENT = ThreadLocal.withInitial(() -> DEFAULT);
+
+    private volatile HashMap<Key<?>, Object> registries; // never modified, replaced on every update
+    private volatile ReservedNames reservedNames; // names of the unary and custom operations of the registries
+    private volatile CompileCache compileCache;
+    private volatile SimplificationCache simplificationCache;
+    private volatile DerivativeCache derivativeCache;
+    private volatile Boolean fraction; // null to follow Mode.FRACTION
+    private volatile Boolean debug; // null to follow Mode.DEBUG
+    private volatile Boolean polynomial; // null to follow Mode.POLYNOMIAL, and so on
+    private volatile Boolean structuralOrder;
+    private volatile Boolean collectLikeTerms;
+    private volatile Boolean multinomial;
+    private volatile Boolean saturation;
+    private volatile Boolean parallel;
+    private volatile Boolean nary;
+
+    /**
+     * creates a context with the built-in definitions only.
+     */
+    public JasContext() {
+        registries = new HashMap<>();
+    }
+
+    /**
+     * @return the context of the current thread, the default context unless another one has been entered.
+     */
+    public static JasContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @return the context shared by all threads that have not entered a context of their own
+     */
+    public static JasContext getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return a new context that starts out with the definitions and modes of this one; later definitions in
+     * either context do not affect the other. The compile, simplification and derivative caches are not shared, but
+     * enabled with the same capacity.
+     */
+    public JasContext fork() {
+        JasContext fork = new JasContext();
+        fork.registries = registries;
+        fork.reservedNames = reservedNames;
+        fork.fraction = fraction;
+        fork.debug = debug;
+        fork.polynomial = polynomial;
+        fork.structuralOrder = structuralOrder;
+        fork.collectLikeTerms = collectLikeTerms;
+        fork.multinomial = multinomial;
+        fork.saturation = saturation;
+        fork.parallel = parallel;
+        fork.nary = nary;
+        CompileCache cache = compileCache;
+        if (cache != null) fork.compileCache = new CompileCache(cache.getCapacity());
+        SimplificationCache memo = simplificationCache;
+        if (memo != null) fork.simplificationCache = new SimplificationCache(memo.getCapacity());
+        DerivativeCache derivatives = derivativeCache;
+        if (derivatives != null) fork.derivativeCache = new DerivativeCache(derivatives.getCapacity());
+        return fork;
+    }
+
+    /**
+     * makes this the context of the current thread until the returned scope is closed.
+     * e.g. try (JasContext.Scope scope = session.enter()) { ... }
+     */
+    public Scope enter() {
+        JasContext previous = CURRENT.get();
+        CURRENT.set(this);
+        return new Scope(previous);
+    }
+
+    public void run(Runnable task) {
+        JasContext previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            task.run();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    public <T> T call(Supplier<T> task) {
+        JasContext previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return task.get();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * @param key identifies the registry
+     * @return the registry of this context, or the built-in one if nothing has been defined in this context;
+     * it must not be modified.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Key<T> key) {
+        Object registry = registries.get(key);
+        return registry == null ? key.builtIn : (T) registry;
+    }
+
+    /**
+     * replaces the registry of this context.
+     *
+     * @param key    identifies the registry
+     * @param change returns a modified copy of the registry, which is left untouched
+     */
+    public synchronized <T> void update(Key<T> key, UnaryOperator<T> change) {
+        HashMap<Key<?>, Object> registries = new HashMap<>(this.registries);
+        registries.put(key, change.apply(get(key)));
+        this.registries = registries;
+    }
+
+    CompileCache getCompileCache() {
+        return compileCache;
+    }
+
+    void setCompileCache(CompileCache compileCache) {
+        this.compileCache = compileCache;
+    }
+
+    SimplificationCache getSimplificationCache() {
+        return simplificationCache;
+    }
+
+    void setSimplificationCache(SimplificationCache simplificationCache) {
+        this.simplificationCache = simplificationCache;
+    }
+
+    DerivativeCache getDerivativeCache() {
+        return derivativeCache;
+    }
+
+    void setDerivativeCache(DerivativeCache derivativeCache) {
+        this.derivativeCache = derivativeCache;
+    }
+
+    ReservedNames getReservedNames() {
+        return reservedNames;
+    }
+
+    void setReservedNames(ReservedNames reservedNames) {
+        this.reservedNames = reservedNames;
+    }
+
+    /**
+     * @return the registries of this context, which are replaced whenever anything is stored or (re)defined
+     */
+    Object definitions() {
+        return registries;
+    }
+
+    public boolean isFraction() {
+        Boolean fraction = this.fraction;
+        return fraction == null ? Mode.FRACTION : fraction;
+    }
+
+    /**
+     * @param fraction whether decimals are converted to fractions in this context, null to follow Mode.FRACTION
+     */
+    public void setFraction(Boolean fraction) {
+        this.fraction = fraction;
+    }
+
+    public boolean isDebug() {
+        Boolean debug = this.debug;
+        return debug == null ? Mode.DEBUG : debug;
+    }
+
+    /**
+     * @param debug whether debug messages are printed in this context, null to follow Mode.DEBUG
+     */
+    public void setDebug(Boolean debug) {
+        this.debug = debug;
+    }
+
+    public boolean isPolynomial() {
+        Boolean polynomial = this.polynomial;
+        return polynomial == null ? Mode.POLYNOMIAL : polynomial;
+    }
+
+    /**
+     * @param polynomial whether polynomials are expanded and collected through jas.core.poly in this
+     * context, null to follow Mode.POLYNOMIAL
+     */
+    public void setPolynomial(Boolean polynomial) {
+        this.polynomial = polynomial;
+    }
+
+    public boolean isStructuralOrder() {
+        Boolean structuralOrder = this.structuralOrder;
+        return structuralOrder == null ? Mode.STRUCTURAL_ORDER : structuralOrder;
+    }
+
+    /**
+     * @param structuralOrder whether operands are ordered with StructuralOrder instead of by their strings in this
+     * context, null to follow Mode.STRUCTURAL_ORDER
+     */
+    public void setStructuralOrder(Boolean structuralOrder) {
+        this.structuralOrder = structuralOrder;
+    }
+
+    public boolean isCollectLikeTerms() {
+        Boolean collectLikeTerms = this.collectLikeTerms;
+        return collectLikeTerms == null ? Mode.COLLECT_LIKE_TERMS : collectLikeTerms;
+    }
+
+    /**
+     * @param collectLikeTerms whether like terms are grouped by hashing before every pair of terms is tried in this
+     * context, null to follow Mode.COLLECT_LIKE_TERMS
+     */
+    public void setCollectLikeTerms(Boolean collectLikeTerms) {
+        this.collectLikeTerms = collectLikeTerms;
+    }
+
+    public boolean isMultinomial() {
+        Boolean multinomial = this.multinomial;
+        return multinomial == null ? Mode.MULTINOMIAL : multinomial;
+    }
+
+    /**
+     * @param multinomial whether integer powers of sums are expanded by the multinomial theorem in this
+     * context, null to follow Mode.MULTINOMIAL
+     */
+    public void setMultinomial(Boolean multinomial) {
+        this.multinomial = multinomial;
+    }
+
+    public boolean isSaturation() {
+        Boolean saturation = this.saturation;
+        return saturation == null ? Mode.SATURATION : saturation;
+    }
+
+    /**
+     * @param saturation whether simplest() searches with jas.core.rules.EGraph in this
+     * context, null to follow Mode.SATURATION
+     */
+    public void setSaturation(Boolean saturation) {
+        this.saturation = saturation;
+    }
+
+    public boolean isParallel() {
+        Boolean parallel = this.parallel;
+        return parallel == null ? Mode.PARALLEL : parallel;
+    }
+
+    /**
+     * @param parallel whether large operands are transformed in parallel through jas.core.Parallel in this
+     * context, null to follow Mode.PARALLEL
+     */
+    public void setParallel(Boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public boolean isNary() {
+        Boolean nary = this.nary;
+        return nary == null ? Mode.NARY : nary;
+    }
+
+    /**
+     * @param nary whether chains of + and * are simplified, expanded and differentiated as n-ary
+     * jas.core.operations.Sum and Product nodes in this context, null to follow Mode.NARY
+     */
+    public void setNary(Boolean nary) {
+        this.nary = nary;
+    }
+
+    /**
+     * Identifies a registry such as the stored variables; the registry is an immutable value, e.g. a map that is
+     * copied before it is modified.
+     *
+     * @param <T> type of the registry
+     */
+    public static final class Key<T> {
+        private final String name;
+        private final T builtIn;
+
+        /**
+         * @param name    e.g. "variables"
+         * @param builtIn the registry of a context in which nothing has been defined
+         */
+        public Key(String name, T builtIn) {
+            this.name = name;
+            this.builtIn = builtIn;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * restores the context that was current before enter() when closed.
+     */
+    public static final class Scope implements AutoCloseable {
+        private final JasContext previous;
+
+        private Scope(JasContext previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            CURRENT.set(previous);
+        }
+    }
+}
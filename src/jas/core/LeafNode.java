@@ -5,7 +5,7 @@ package jas.core;
  * Leaf Node: super class of Variable and RawValue
  */
 public abstract class LeafNode extends Node implements BinLeafNode {
-    public abstract Node copy();
+    public abstract Node thaw();
 
     public int levelOf(Node o) {
         return this.equals(o) ? 0 : -1;
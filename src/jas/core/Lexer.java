@@ -0,0 +1,151 @@
+package jas.core;
+
+import jas.core.operations.Binary;
+
+import java.util.ArrayList;
+
+import static jas.core.Assets.DIGITS;
+import static jas.core.Assets.VARS;
+
+/**
+ * Lexer: breaks an expression into tokens in a single pass.
+ * Coefficients are split from what follows them the same way Compiler::formatCoefficients does,
+ * e.g. "2x" becomes [2, x] and "3pi" becomes [3, pi], while "x2" remains a single name.
+ */
+class Lexer {
+    private String exp;
+    private String operators;
+    private int idx;
+
+    private Lexer(String exp) {
+        this.exp = exp;
+        this.operators = Binary.operators() + ",";
+    }
+
+    /**
+     * @param exp expression with white spaces removed
+     * @return tokens of the expression, terminated by a Token of type END
+     */
+    static ArrayList<Token> tokenize(String exp) {
+        return new Lexer(exp).tokenize();
+    }
+
+    private ArrayList<Token> tokenize() {
+        ArrayList<Token> tokens = new ArrayList<>();
+        while (idx < exp.length()) {
+            char c = exp.charAt(idx);
+            switch (c) {
+                case '(':
+                    tokens.add(new Token(Type.OPEN, "(", idx++));
+                    break;
+                case ')':
+                    tokens.add(new Token(Type.CLOSE, ")", idx++));
+                    break;
+                case '{':
+                    tokens.add(new Token(Type.OPEN_CURLY, "{", idx++));
+                    break;
+                case '}':
+                    tokens.add(new Token(Type.CLOSE_CURLY, "}", idx++));
+                    break;
+                case '\'':
+                    int end = exp.indexOf('\'', idx + 1);
+                    if (end == -1) throw new JASException("'' mismatch in " + "\"" + exp + "\"");
+                    tokens.add(new Token(Type.LITERAL, exp.substring(idx + 1, end), idx));
+                    idx = end + 1;
+                    break;
+                default:
+                    if (isOperator(c)) tokens.add(new Token(Type.OPERATOR, Character.toString(c), idx++));
+                    else name(tokens);
+            }
+        }
+        tokens.add(new Token(Type.END, "", idx));
+        return tokens;
+    }
+
+    /**
+     * reads a run of non-symbolic characters, i.e. a number, a constant or a name, splitting off
+     * leading coefficients along the way.
+     */
+    private void name(ArrayList<Token> tokens) {
+        int start = idx;
+        while (idx < exp.length() && !isSymbol(exp.charAt(idx))) {
+            if (DIGITS.indexOf(exp.charAt(idx)) != -1 && idx + 1 < exp.length() && isCoefficientOf(idx + 1)) {
+                tokens.add(new Token(Type.NAME, exp.substring(start, idx + 1), start));
+                start = idx + 1;
+            }
+            idx++;
+        }
+        tokens.add(new Token(Type.NAME, exp.substring(start, idx), start));
+    }
+
+    /**
+     * @param i index of the character following a digit
+     * @return whether the digit is a coefficient of what comes after it.
+     */
+    private boolean isCoefficientOf(int i) {
+        char c = exp.charAt(i);
+        return !isSymbol(c) && (VARS.indexOf(c) != -1 || Compiler.startsWithConstant(exp, i));
+    }
+
+    private boolean isOperator(char c) {
+        return operators.indexOf(c) != -1;
+    }
+
+    private boolean isSymbol(char c) {
+        return isOperator(c) || "(){}'".indexOf(c) != -1;
+    }
+
+    enum Type {
+        NAME,
+        OPERATOR,
+        OPEN,
+        CLOSE,
+        OPEN_CURLY,
+        CLOSE_CURLY,
+        LITERAL,
+        END
+    }
+
+    static class Token {
+        private Type type;
+        private String text;
+        private int position;
+
+        Token(Type type, String text, int position) {
+            this.type = type;
+            this.text = text;
+            this.position = position;
+        }
+
+        Type getType() {
+            return type;
+        }
+
+        boolean is(Type type) {
+            return this.type == type;
+        }
+
+        boolean is(String operator) {
+            return type == Type.OPERATOR && text.equals(operator);
+        }
+
+        String getText() {
+            return text;
+        }
+
+        int getPosition() {
+            return position;
+        }
+
+        public String toString() {
+            switch (type) {
+                case END:
+                    return "end of input";
+                case LITERAL:
+                    return "'" + text + "'";
+                default:
+                    return "\"" + text + "\"";
+            }
+        }
+    }
+}
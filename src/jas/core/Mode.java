@@ -5,11 +5,20 @@ import static jas.utils.AnsiColor.*;
 /**
  * Created by Jiachen on 3/4/18.
  * Mode: radians vs. degrees, debug on/off, etc.
+ * FRACTION, DEBUG and the flags from POLYNOMIAL to NARY are the defaults of every JasContext that does not set
+ * them itself.
  */
 public class Mode {
     public static boolean DEBUG = false;
     public static boolean FRACTION = true;
     public static boolean COMPACT = true;
+    public static boolean POLYNOMIAL = false; // expand and collect polynomials through jas.core.poly
+    public static boolean STRUCTURAL_ORDER = false; // order operands with StructuralOrder instead of by their strings
+    public static boolean COLLECT_LIKE_TERMS = false; // group like terms by hashing before trying every pair of terms
+    public static boolean MULTINOMIAL = false; // expand integer powers of sums term by term, collecting like terms
+    public static boolean SATURATION = false; // find the simplest form with jas.core.rules.EGraph
+    public static boolean PARALLEL = false; // transform large operands in parallel through jas.core.Parallel
+    public static boolean NARY = false; // simplify chains of + and * as n-ary Sum and Product nodes
     public static String U_OP_COLOR = LIGHT_BLUE.toString();
     public static String BIN_OP_COLOR = "[0m";
     public static String CUSTOM_OP_COLOR = LIGHT_PURPLE.toString();
@@ -2,12 +2,27 @@ package jas.core;
 
 
 import jas.core.components.Fraction;
+import jas.core.components.List;
 import jas.core.components.RawValue;
 import jas.core.components.Variable;
 import jas.core.operations.Binary;
+import jas.core.operations.Expansion;
+import jas.core.operations.Nary;
 import jas.core.operations.Operation;
+import jas.core.operations.Unary;
+import jas.core.rules.EGraph;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
 
 import static jas.core.Mode.PARENTHESIS_COLOR;
 import static jas.utils.ColorFormatter.color;
@@ -17,6 +32,20 @@ import static jas.utils.ColorFormatter.color;
  * Node
  */
 public abstract class Node implements Evaluable {
+    private static final AtomicInteger VERSION = new AtomicInteger(); // incremented whenever a shared node changes
+    private int hash;
+    private Interner interner; // the Interner this node is the canonical instance of, if any
+    private boolean frozen;
+    private Node parent; // the latest modifiable node that cached metadata depending on this one, if any
+    private boolean shared; // whether two modifiable nodes, which both cached metadata, contain this one
+    private boolean attached; // whether the children know this node as their parent, see attachChildren()
+    private int metadataVersion; // version at which the metadata below were computed, ignored once frozen
+    private int numNodes; // 0 if unknown
+    private int complexity; // 0 if unknown
+    private String[] variables; // sorted names of the variables, null if unknown
+    private byte pure; // 1 if made of numbers, binary and unary operations only, 2 if not, 0 if unknown
+    private CachedValue value;
+
     /**
      * invocation of commonTerms(o1 = "a*b*(c+d)*m", o2 = "f*(c+d)*m")
      * returns [(c+d), m]
@@ -80,7 +109,440 @@ public abstract class Node implements Evaluable {
 
     public abstract boolean equals(Node other);
 
-    public abstract Node copy();
+    @Override
+    public boolean equals(Object other) {
+        return this == other || other instanceof Node && equals((Node) other);
+    }
+
+    /**
+     * Nodes that are equal have the same hash, e.g. a*b and b*a. Frozen nodes never change, so their hash is
+     * computed only once; the hash of any other node is recomputed every time since the tree could be modified.
+     *
+     * @return structural hash of the node
+     */
+    @Override
+    public final int hashCode() {
+        return frozen ? hash : structuralHash();
+    }
+
+    /**
+     * @return hash computed from the structure of the node, consistent with equals(Node)
+     */
+    protected abstract int structuralHash();
+
+    /**
+     * @return whether the node is the canonical instance shared by an Interner, in which case it must not be modified.
+     */
+    public boolean isInterned() {
+        return interner != null;
+    }
+
+    /**
+     * Nodes are canonical only within the Interner that interned them: two nodes of the same Interner are equal if
+     * and only if they are the same instance.
+     *
+     * @return whether this node and other are canonical instances of the same Interner
+     */
+    protected final boolean isInternedWith(Node other) {
+        return interner != null && interner == other.interner;
+    }
+
+    Interner getInterner() {
+        return interner;
+    }
+
+    /**
+     * marks the node as the canonical instance of owner; interned nodes are frozen as well.
+     */
+    void intern(Interner owner) {
+        markFrozen();
+        interner = owner;
+    }
+
+    /**
+     * @return whether the node is immutable, see freeze()
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Makes the tree immutable. The operands of binary operations are ordered first, so a frozen tree is always in
+     * ordered form. Frozen nodes are never copied; copy() returns the node itself and builders such as add(Node)
+     * share it. Transformations like simplify() and expand() leave a frozen node untouched and return a new frozen
+     * tree that shares every subtree the transformation did not change. Setters throw a JASException instead.
+     * A frozen tree could therefore be shared across threads.
+     *
+     * @return this
+     */
+    public Node freeze() {
+        if (!frozen) {
+            order();
+            markFrozen();
+        }
+        return this;
+    }
+
+    /**
+     * freezes the tree bottom up without ordering it again.
+     */
+    private void markFrozen() {
+        ArrayList<Node> children = children(this);
+        if (children != null) children.stream().filter(child -> !child.frozen).forEach(Node::markFrozen);
+        hash = structuralHash();
+        validateMetadata();
+        frozen = true;
+    }
+
+    /**
+     * @return a modifiable deep copy of the node, also when the node or some of its subtrees are frozen.
+     */
+    public abstract Node thaw();
+
+    /**
+     * @return a copy that could be modified without affecting the original, or the node itself if it is frozen.
+     */
+    public Node copy() {
+        return frozen ? this : thaw();
+    }
+
+    /**
+     * @throws JASException if the node is frozen
+     */
+    protected void checkModifiable() {
+        if (frozen) throw new JASException("cannot modify frozen node " + this);
+        modified();
+    }
+
+    /**
+     * invalidates the metadata of the node and of its ancestors that cached metadata; called after operands are
+     * replaced without a setter. The metadata of every modifiable node are invalidated if the path reaches a node
+     * that is contained in more than one of them.
+     */
+    protected void modified() {
+        Node node = this;
+        while (true) {
+            Node up = node.parent;
+            boolean wasShared = node.shared;
+            node.clearMetadata();
+            if (wasShared) {
+                VERSION.incrementAndGet();
+                return;
+            }
+            if (up == null || !up.attached) return; // the ancestors cached nothing since
+            node = up;
+        }
+    }
+
+    /**
+     * Opt-in: remembers up to [capacity] results of simplify(), expand() and simplest() in the current context,
+     * discarding the least recently used ones. The cache is invalidated whenever anything is stored or (re)defined
+     * in the context.
+     *
+     * @param capacity maximum number of cached results
+     * @return the newly created cache, for inspecting hit/miss/eviction counts
+     */
+    public static SimplificationCache enableSimplificationCache(int capacity) {
+        SimplificationCache cache = new SimplificationCache(capacity);
+        JasContext.current().setSimplificationCache(cache);
+        return cache;
+    }
+
+    public static void disableSimplificationCache() {
+        JasContext.current().setSimplificationCache(null);
+    }
+
+    /**
+     * @return the simplification cache of the current context; null if caching is disabled.
+     */
+    public static SimplificationCache getSimplificationCache() {
+        return JasContext.current().getSimplificationCache();
+    }
+
+    /**
+     * Opt-in: remembers every order of derivative(v, n) computed for up to [capacity] expressions in the current
+     * context, along with the first derivatives of up to [capacity] subexpressions, discarding the least recently
+     * used ones. The cache is invalidated whenever anything is stored or (re)defined in the context.
+     *
+     * @param capacity maximum number of cached chains and first derivatives each
+     * @return the newly created cache, for inspecting hit/miss counts
+     */
+    public static DerivativeCache enableDerivativeCache(int capacity) {
+        DerivativeCache cache = new DerivativeCache(capacity);
+        JasContext.current().setDerivativeCache(cache);
+        return cache;
+    }
+
+    public static void disableDerivativeCache() {
+        JasContext.current().setDerivativeCache(null);
+    }
+
+    /**
+     * @return the derivative cache of the current context; null if caching is disabled.
+     */
+    public static DerivativeCache getDerivativeCache() {
+        return JasContext.current().getDerivativeCache();
+    }
+
+    /**
+     * takes the first derivative of an operand for the product, quotient, chain and power rules. With a derivative
+     * cache, an operand that has been differentiated before is not differentiated again, see
+     * enableDerivativeCache(int).
+     *
+     * @param operand not modified unless it is a custom operation, see Custom::firstDerivative
+     * @return first derivative of operand
+     */
+    protected static Node derivativeOf(Node operand, Variable v) {
+        if (!(operand instanceof Operation)) return operand.firstDerivative(v);
+        JasContext context = JasContext.current();
+        DerivativeCache cache = context.getDerivativeCache();
+        if (cache == null) return operand.firstDerivative(v);
+        return cache.firstDerivative(operand, v, context.definitions(), () -> operand.firstDerivative(v));
+    }
+
+    /**
+     * looks the result up in the simplification cache of the current context, if there is one.
+     *
+     * @param transformation e.g. SIMPLIFY
+     * @param transform      transforms this modifiable node
+     * @return the result of transform, or a copy of the cached one
+     */
+    protected final Node memoized(SimplificationCache.Transformation transformation, Supplier<Node> transform) {
+        JasContext context = JasContext.current();
+        SimplificationCache cache = context.getSimplificationCache();
+        if (cache == null) return transform.get();
+        return cache.apply(transformation, this, context.definitions(), transform);
+    }
+
+    /**
+     * fails once the budget of the current simplify(SimplifyOptions), expand(SimplifyOptions), etc. has run out;
+     * called throughout the transformations.
+     */
+    protected static void checkBudget() {
+        SimplifyOptions.checkpoint();
+    }
+
+    /**
+     * @param node an intermediate form, which also has to be small enough for the budget
+     */
+    protected static void checkBudget(Node node) {
+        SimplifyOptions.checkpoint(node);
+    }
+
+    /**
+     * The metadata of a frozen node are computed at most once. The metadata of any other node stay valid until
+     * the node or one of its descendants is changed, see modified().
+     */
+    private void validateMetadata() {
+        int version = VERSION.get();
+        if (frozen || metadataVersion == version) return;
+        metadataVersion = version;
+        clearMetadata();
+    }
+
+    private void clearMetadata() {
+        numNodes = complexity = 0;
+        variables = null;
+        pure = 0;
+        value = null;
+        attached = false;
+    }
+
+    /**
+     * Registers this node as the parent of its modifiable descendants, level by level, before it caches metadata,
+     * such that a change to any of them reaches this node; stops at the subtrees that are already attached.
+     */
+    private void attachChildren() {
+        if (frozen || attached) return;
+        attached = true;
+        ArrayList<Node> children = children(this);
+        if (children == null) return;
+        for (Node child : children) {
+            if (child.frozen) continue;
+            child.attachTo(this);
+            child.attachChildren();
+        }
+    }
+
+    private void attachTo(Node node) {
+        Node previous = parent;
+        if (previous == node) return;
+        if (previous == null || !previous.attached || !isChildOf(previous)) parent = node;
+        else shared = true;
+    }
+
+    private boolean isChildOf(Node node) {
+        ArrayList<Node> children = children(node);
+        if (children == null) return false;
+        for (Node child : children) {
+            if (child == this) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param count computes the number of nodes
+     * @return number of nodes, only counted if unknown
+     */
+    protected final int cachedNumNodes(IntSupplier count) {
+        validateMetadata();
+        int n = numNodes;
+        if (n == 0) {
+            attachChildren();
+            numNodes = n = count.getAsInt();
+        }
+        return n;
+    }
+
+    /**
+     * @param n minimum number of nodes
+     * @return whether the tree has at least n nodes; counts no further than n unless the number is already known
+     */
+    boolean hasAtLeastNodes(int n) {
+        validateMetadata();
+        if (numNodes != 0) return numNodes >= n;
+        return countNodes(this, n) >= n;
+    }
+
+    /**
+     * @return number of nodes, or any number not smaller than limit once limit is reached
+     */
+    private static int countNodes(Node node, int limit) {
+        int count = 1;
+        ArrayList<Node> children = children(node);
+        if (children != null) {
+            for (int i = 0; i < children.size() && count < limit; i++)
+                count += countNodes(children.get(i), limit - count);
+        }
+        return count;
+    }
+
+    /**
+     * @param compute computes the complexity
+     * @return complexity, only computed if unknown
+     */
+    protected final int cachedComplexity(IntSupplier compute) {
+        validateMetadata();
+        int c = complexity;
+        if (c == 0) {
+            attachChildren();
+            complexity = c = compute.getAsInt();
+        }
+        return c;
+    }
+
+    /**
+     * Only the value of a tree made of numbers, binary and unary operations is cached; variables, constants like
+     * random and custom operations could evaluate to something different every time. The value is computed again in
+     * another context, or once anything is (re)defined, as the definitions of the operations may have changed.
+     *
+     * @param evaluate computes the value
+     * @return arbitrary value of the node, only evaluated if unknown
+     */
+    protected final double cachedVal(DoubleSupplier evaluate) {
+        validateMetadata();
+        CachedValue v = value;
+        Object definitions = JasContext.current().definitions();
+        if (v != null && v.definitions == definitions) return v.value;
+        if (!isPure()) return evaluate.getAsDouble();
+        double val = evaluate.getAsDouble();
+        attachChildren();
+        value = new CachedValue(val, definitions);
+        return val;
+    }
+
+    private boolean isPure() {
+        if (pure == 0) {
+            attachChildren();
+            boolean b = this instanceof RawValue;
+            if (this instanceof Binary || this instanceof Unary || this instanceof Nary)
+                b = ((Operation) this).getOperands().stream().allMatch(Node::isPure);
+            pure = (byte) (b ? 1 : 2);
+        }
+        return pure == 1;
+    }
+
+    /**
+     * collects the variables in a single traversal; the names of the subtrees are cached as well.
+     * Constants, literals and other subclasses of Variable are not included.
+     *
+     * @return sorted names of the variables contained in the node, which must not be modified
+     */
+    private String[] variableNames() {
+        validateMetadata();
+        String[] names = variables;
+        if (names != null) return names;
+        attachChildren();
+        ArrayList<Node> children = children(this);
+        if (children != null) {
+            TreeSet<String> union = new TreeSet<>();
+            for (Node child : children) Collections.addAll(union, child.variableNames());
+            names = union.toArray(new String[0]);
+        } else if (this instanceof Variable && this.equals(new Variable(((Variable) this).getName()))) {
+            names = new String[]{((Variable) this).getName()};
+        } else {
+            names = new String[0];
+        }
+        return variables = names;
+    }
+
+    /**
+     * immutable, so that a frozen node could be evaluated from several threads.
+     */
+    private static final class CachedValue {
+        private final double value;
+        private final Object definitions; // the registries of the context the value was computed in
+
+        private CachedValue(double value, Object definitions) {
+            this.value = value;
+            this.definitions = definitions;
+        }
+    }
+
+    /**
+     * Applies a transformation that modifies its argument to this frozen node. The transformation is carried out on
+     * a modifiable copy; the result is frozen, and its subtrees that are equal to subtrees of this node are replaced
+     * by the latter, such that the original and the result share everything that did not change.
+     *
+     * @param transformation e.g. Node::simplify
+     * @return frozen result of the transformation
+     */
+    protected Node transformFrozen(UnaryOperator<Node> transformation) {
+        HashMap<Node, Node> subtrees = new HashMap<>();
+        collect(this, subtrees);
+        return share(transformation.apply(thaw()), subtrees);
+    }
+
+    private static void collect(Node node, HashMap<Node, Node> subtrees) {
+        if (subtrees.putIfAbsent(node, node) != null) return;
+        ArrayList<Node> children = children(node);
+        if (children != null) children.forEach(child -> collect(child, subtrees));
+    }
+
+    /**
+     * freezes node bottom up, substituting the subtrees that are already present in subtrees.
+     */
+    private static Node share(Node node, HashMap<Node, Node> subtrees) {
+        if (!node.frozen) {
+            // reorders the operands before they are shared
+            if (node instanceof Binary || node instanceof Nary) node.order();
+            ArrayList<Node> children = children(node);
+            if (children != null) {
+                for (int i = 0; i < children.size(); i++) // the list is updated directly, the operands remain ordered
+                    children.set(i, share(children.get(i), subtrees));
+            }
+            node.markFrozen();
+        }
+        return subtrees.getOrDefault(node, node);
+    }
+
+    /**
+     * @return the list holding the children of node, or null if node is a leaf
+     */
+    static ArrayList<Node> children(Node node) {
+        return node instanceof Operation ? ((Operation) node).getOperands()
+                : node instanceof List ? ((List) node).unwrap() : null;
+    }
 
     public boolean isMultiVar() {
         return numVars() > 1;
@@ -97,16 +559,26 @@ public abstract class Node implements Evaluable {
      * @return number of variables in the expression represented by self.
      */
     public int numVars() {
-        return extractVariables().size();
+        return variableNames().length;
+    }
+
+    /**
+     * e.g. bind(a, b) on "a*x+b" returns a plan that evaluates a*x+b for values of a and b.
+     *
+     * @param variables the variables to be bound, in the order their values are supplied
+     * @return a plan that evaluates self against values of the variables without modifying the tree
+     */
+    public EvalPlan bind(Variable... variables) {
+        return new EvalPlan(this, variables);
     }
 
+    /**
+     * @return the distinct variables contained in the node, ordered by name
+     */
     public ArrayList<Variable> extractVariables() {
         ArrayList<Variable> vars = new ArrayList<>();
-        for (Character c : Assets.VARS.toCharArray()) {
-            Variable var = new Variable(c.toString());
-            if (this.levelOf(var) != -1)
-                vars.add(var);
-        }
+        for (String name : variableNames())
+            vars.add(new Variable(name));
         return vars;
     }
 
@@ -180,13 +652,59 @@ public abstract class Node implements Evaluable {
      * @return the simplest representation of the expression in expanded form.
      */
     public Node simplest() {
-        ArrayList<Node> simplifiedForms = new ArrayList<>();
-        Node s = this.copy();
-        while (!contains(simplifiedForms, s)) {
-            simplifiedForms.add(s.copy());
-            s = s.expand().simplify();
+        return isFrozen() ? simplestForm() : memoized(SimplificationCache.Transformation.SIMPLEST, this::simplestForm);
+    }
+
+    /**
+     * Does not modify self. Stops after options.getMaxIterations() iterations, before a form with too many nodes and
+     * once the time is up or the call is cancelled.
+     *
+     * @return the simplest representation found within the budget.
+     */
+    public Node simplest(SimplifyOptions options) {
+        return options.run(() -> simplestForm(options), this::copy);
+    }
+
+    private Node simplestForm() {
+        return simplestForm(SimplifyOptions.UNBOUNDED);
+    }
+
+    private Node simplestForm(SimplifyOptions options) {
+        if (JasContext.current().isSaturation()) return EGraph.simplest(this, options);
+        HashSet<Node> simplifiedForms = new HashSet<>();
+        Node s = this.copy(), simplest = s;
+        for (int i = 0; !simplifiedForms.contains(s); i++) {
+            simplest = s.copy();
+            if (i == options.getMaxIterations()) break;
+            simplifiedForms.add(simplest);
+            try {
+                s = s.expand().simplify();
+            } catch (SimplifyOptions.Exhausted e) {
+                if (options == SimplifyOptions.UNBOUNDED) throw e; // budget of an enclosing call, nothing to fall back on
+                break;
+            }
+            if (!SimplifyOptions.fits(s)) break;
         }
-        return simplifiedForms.get(simplifiedForms.size() - 1);
+        return simplest;
+    }
+
+    /**
+     * Does not modify self.
+     *
+     * @return simplified expression, or a copy of self if the budget runs out first.
+     */
+    public Node simplify(SimplifyOptions options) {
+        return options.run(() -> copy().simplify(), this::copy);
+    }
+
+    /**
+     * Does not modify self.
+     *
+     * @return expanded expression, or a copy of self if the budget runs out first, e.g. when the expansion has
+     * more than options.getMaxNodes() nodes.
+     */
+    public Node expand(SimplifyOptions options) {
+        return options.run(() -> copy().expand(), this::copy);
     }
 
     /**
@@ -223,11 +741,17 @@ public abstract class Node implements Evaluable {
     public abstract Node firstDerivative(Variable v);
 
     /**
+     * With a derivative cache, the orders that have been computed before are looked up instead, see
+     * enableDerivativeCache(int).
+     *
      * @param v the variable in which the first derivative is taken with respect to.
      * @param n the nth derivative
      * @return the nth derivative of the expression
      */
     public Node derivative(Variable v, int n) {
+        JasContext context = JasContext.current();
+        DerivativeCache cache = context.getDerivativeCache();
+        if (cache != null && n >= 0) return cache.derivative(this, v, n, context.definitions());
         Node der = this.copy().simplify();
         while (n > 0) {
             //.expand().simplify() gives the completely simplified form.
@@ -237,6 +761,25 @@ public abstract class Node implements Evaluable {
         return der;
     }
 
+    /**
+     * The simplification after each derivative keeps the best form found so far once the budget runs out, but there
+     * is no such form of a derivative that has not been taken yet.
+     *
+     * @param v the variable in which the first derivative is taken with respect to.
+     * @param n the nth derivative
+     * @return the nth derivative of the expression, simplified within the budget
+     * @throws JASException if the budget runs out before the nth derivative is taken
+     */
+    public Node derivative(Variable v, int n, SimplifyOptions options) {
+        return options.run(() -> {
+            Node der = this.simplify(options);
+            for (int i = 0; i < n; i++) der = der.firstDerivative(v).simplest(options);
+            return der;
+        }, () -> {
+            throw new JASException("ran out of budget before taking the derivative of order " + n);
+        });
+    }
+
     public Node exec() {
         return this;
     }
@@ -249,6 +792,17 @@ public abstract class Node implements Evaluable {
      */
     public abstract Node expand();
 
+    /**
+     * Expands the expression lazily, one term at a time, see Expansion. Does not modify self.
+     * e.g. node.expandStream().parallel().collect(Expansion.likeTerms()) adds up like terms as they are generated,
+     * never holding more than one entry per distinct term.
+     *
+     * @return the terms of expand(), unsimplified
+     */
+    public Stream<Node> expandStream() {
+        return Expansion.terms(this);
+    }
+
     /**
      * @return string representation of the node coded with Ansi color codes.
      */
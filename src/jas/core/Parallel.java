@@ -0,0 +1,222 @@
+package jas.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+
+/**
+ * Parallel mode, see JasContext.isParallel(): Operation::simplify, expand and beautify, as well as List::simplify, transform
+ * every operand of at least [threshold] nodes in a task of its own on a ForkJoinPool, and the tasks fork again
+ * further down the tree.
+ * The results are joined in the order of the operands, so the result is the same as in sequential mode.
+ * <p>
+ * Transformations modify nodes in place, so the operands are transformed sequentially whenever they share a
+ * modifiable subtree. A task runs in the context, the simplification budget and the memo state of the call that
+ * forked it.
+ */
+public final class Parallel {
+    private static volatile int threshold = 200;
+    private static volatile ForkJoinPool pool = ForkJoinPool.commonPool();
+    private static final AtomicLong forks = new AtomicLong();
+
+    /**
+     * @param operands       operands of an operation, which are not modified themselves
+     * @param transformation e.g. Node::simplify
+     * @return the transformed operands, in the same order
+     */
+    public static ArrayList<Node> map(ArrayList<Node> operands, UnaryOperator<Node> transformation) {
+        if (!JasContext.current().isParallel() || !isWorthForking(operands)) {
+            ArrayList<Node> transformed = new ArrayList<>(operands.size());
+            for (Node operand : operands) transformed.add(transformation.apply(operand));
+            return transformed;
+        }
+        ForkJoinPool pool = Parallel.pool;
+        Transformation task = new Transformation(operands, transformation);
+        if (ForkJoinTask.getPool() == pool) task.compute(); // already in a task, fork from here
+        else pool.invoke(task);
+        if (task.failure != null) throw task.failure;
+        return task.transformed;
+    }
+
+    /**
+     * @return whether at least two of the operands are large enough and none of them share a modifiable subtree;
+     * forking does not pay off with a single worker.
+     */
+    private static boolean isWorthForking(ArrayList<Node> operands) {
+        if (operands.size() < 2 || pool.getParallelism() < 2) return false;
+        int large = 0, threshold = Parallel.threshold;
+        for (Node operand : operands)
+            if (operand.hasAtLeastNodes(threshold)) large++;
+        if (large < 2) return false;
+        IdentityHashMap<Node, Boolean> visited = new IdentityHashMap<>();
+        for (Node operand : operands)
+            if (!visit(operand, visited)) return false;
+        return true;
+    }
+
+    /**
+     * @return false if a modifiable node is visited twice
+     */
+    private static boolean visit(Node node, IdentityHashMap<Node, Boolean> visited) {
+        if (node.isFrozen()) return true; // frozen subtrees are shared by design
+        if (visited.put(node, true) != null) return false;
+        ArrayList<Node> children = Node.children(node);
+        if (children != null) {
+            for (Node child : children)
+                if (!visit(child, visited)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param threshold minimum number of nodes of an operand that is transformed in a task of its own
+     */
+    public static void setThreshold(int threshold) {
+        if (threshold < 1) throw new JASException("threshold must be positive");
+        Parallel.threshold = threshold;
+    }
+
+    public static int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * @param pool where the tasks are forked, ForkJoinPool.commonPool() by default
+     */
+    public static void setPool(ForkJoinPool pool) {
+        Parallel.pool = pool;
+    }
+
+    public static ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * @return number of operands that have been transformed in a task of their own
+     */
+    public static long getForks() {
+        return forks.get();
+    }
+
+    /**
+     * transforms the operands, forking a task for every large operand but the last one, which is transformed along
+     * with the small operands by the current thread.
+     */
+    private static final class Transformation extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final ArrayList<Node> operands;
+        private final UnaryOperator<Node> transformation;
+        private final State state = new State();
+        private ArrayList<Node> transformed;
+        private RuntimeException failure; // kept as it is instead of being rethrown by invoke()
+
+        private Transformation(ArrayList<Node> operands, UnaryOperator<Node> transformation) {
+            this.operands = operands;
+            this.transformation = transformation;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                transformed = state.call(this::transform);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        private ArrayList<Node> transform() {
+            int n = operands.size(), threshold = Parallel.threshold, last = -1;
+            Operand[] tasks = new Operand[n];
+            for (int i = 0; i < n; i++) {
+                if (!operands.get(i).hasAtLeastNodes(threshold)) continue;
+                if (last != -1) {
+                    tasks[last] = new Operand(operands.get(last), transformation, state);
+                    tasks[last].fork();
+                    forks.incrementAndGet();
+                }
+                last = i;
+            }
+            Node[] transformed = new Node[n];
+            RuntimeException failure = null; // thrown by the first operand that failed, as in sequential mode
+            int failed = n;
+            for (int i = 0; i < n && failure == null; i++) {
+                if (tasks[i] != null) continue;
+                try {
+                    transformed[i] = transformation.apply(operands.get(i));
+                } catch (RuntimeException e) {
+                    failure = e;
+                    failed = i;
+                }
+            }
+            for (int i = 0; i < n; i++) { // every task is joined, so that no operand is still being modified
+                if (tasks[i] == null) continue;
+                tasks[i].join();
+                transformed[i] = tasks[i].transformed;
+                if (tasks[i].failure != null && i < failed) {
+                    failure = tasks[i].failure;
+                    failed = i;
+                }
+            }
+            if (failure != null) throw failure;
+            ArrayList<Node> result = new ArrayList<>(n);
+            Collections.addAll(result, transformed);
+            return result;
+        }
+    }
+
+    /**
+     * transforms a single operand; the exception it throws is kept as it is instead of being rethrown by join().
+     */
+    private static final class Operand extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Node operand;
+        private final UnaryOperator<Node> transformation;
+        private final State state;
+        private Node transformed;
+        private RuntimeException failure;
+
+        private Operand(Node operand, UnaryOperator<Node> transformation, State state) {
+            this.operand = operand;
+            this.transformation = transformation;
+            this.state = state;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                transformed = state.call(() -> transformation.apply(operand));
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+    }
+
+    /**
+     * the thread local state of the thread that started the transformation.
+     */
+    private static final class State {
+        private final JasContext context = JasContext.current();
+        private final SimplifyOptions.Budget budget = SimplifyOptions.getBudget();
+        private final boolean nested = SimplificationCache.isNested();
+
+        private <T> T call(Supplier<T> task) {
+            SimplifyOptions.Budget budget = SimplifyOptions.getBudget();
+            boolean nested = SimplificationCache.isNested();
+            SimplifyOptions.setBudget(this.budget);
+            SimplificationCache.setNested(this.nested);
+            try {
+                return context.call(task);
+            } finally {
+                SimplifyOptions.setBudget(budget);
+                SimplificationCache.setNested(nested);
+            }
+        }
+    }
+}
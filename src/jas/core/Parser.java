@@ -0,0 +1,135 @@
+package jas.core;
+
+import jas.core.Lexer.Token;
+import jas.core.Lexer.Type;
+import jas.core.components.Literal;
+import jas.core.components.RawValue;
+import jas.core.operations.Binary;
+
+import java.util.ArrayList;
+
+/**
+ * Precedence climbing parser that builds Binary, Unary, Custom, List and Literal trees from the tokens produced
+ * by the Lexer in a single pass. Operator priorities come from Binary.Operator, 1 being the most prioritized;
+ * all binary operators are left associative, just as they were in the string-rewriting compiler.
+ * <p>
+ * Implicit multiplication: "2x", "x(x+1)", "(x+1)(x-1)" and "sin(x)cos(x)" are all multiplications.
+ * Unary minus: "-x^2" at the beginning of an expression, after "(" or "," is parsed as "0-x^2", whereas after
+ * "*", "/" or "^" only the operand that immediately follows is negated, i.e. "x*-y^2" is "x*(0-y)^2". A "-" right
+ * after "+" or "-", as in "5--x", is missing an operand, since its tree would print as "5-0-x".
+ */
+class Parser {
+    private static final int COMMA_PRIORITY = 4;
+    private static final int ADDITIVE_PRIORITY = 3;
+
+    private ArrayList<Token> tokens;
+    private ReservedNames reservedNames;
+    private int idx;
+
+    private Parser(String exp) {
+        this.tokens = Lexer.tokenize(exp);
+        this.reservedNames = ReservedNames.current();
+    }
+
+    /**
+     * @param exp expression with white spaces removed
+     * @return the compiled Node
+     */
+    static Node parse(String exp) {
+        Parser parser = new Parser(exp);
+        Node node = parser.expression(COMMA_PRIORITY);
+        if (!parser.peek().is(Type.END))
+            throw new JASException("syntax error: unexpected " + parser.peek() + " at index " + parser.peek().getPosition());
+        return node;
+    }
+
+    /**
+     * parses a sequence of binary operations; only operators with priority less than or equal to limit are consumed.
+     *
+     * @param limit the lowest priority (largest priority number) that could be consumed
+     * @return the parsed expression
+     */
+    private Node expression(int limit) {
+        Node left = peek().is("-") && limit >= ADDITIVE_PRIORITY ? new RawValue(0) : unit();
+        while (true) {
+            Token token = peek();
+            String operator;
+            if (token.is(Type.OPERATOR)) operator = token.getText();
+            else if (isOperandStart(token)) operator = "*"; // implicit multiplication
+            else break;
+            int priority = priority(operator);
+            if (priority > limit) break;
+            if (token.is(Type.OPERATOR)) next();
+            Node right = expression(priority - 1);
+            Compiler.ensureValidity(left);
+            Compiler.ensureValidity(right);
+            left = new Binary(left, operator, right);
+        }
+        return left;
+    }
+
+    /**
+     * @return an operand, negated if it is preceded by "-"
+     */
+    private Node unit() {
+        if (peek().is("-")) {
+            if (idx > 0 && (tokens.get(idx - 1).is("+") || tokens.get(idx - 1).is("-")))
+                throw new JASException("missing operand(s)");
+            next();
+            return new Binary(new RawValue(0), "-", primary());
+        }
+        return primary();
+    }
+
+    private Node primary() {
+        Token token = next();
+        switch (token.getType()) {
+            case NAME:
+                if (peek().is(Type.OPEN) && reservedNames.contains(token.getText())) {
+                    next();
+                    return Compiler.invoke(token.getText(), enclosed(Type.CLOSE));
+                }
+                return Compiler.resolve(token.getText());
+            case OPEN:
+                return enclosed(Type.CLOSE);
+            case OPEN_CURLY:
+                return Compiler.invoke("list", enclosed(Type.CLOSE_CURLY));
+            case LITERAL:
+                return new Literal(token.getText());
+            case OPERATOR:
+            case END:
+                throw new JASException("missing operand(s)");
+        }
+        throw new JASException("syntax error: unexpected " + token + " at index " + token.getPosition());
+    }
+
+    /**
+     * @param close the type of the closing bracket
+     * @return content within the brackets; UNDEF if nothing is within the brackets.
+     */
+    private Node enclosed(Type close) {
+        Node node = peek().is(close) ? RawValue.UNDEF : expression(COMMA_PRIORITY);
+        Token token = next();
+        if (!token.is(close))
+            throw new JASException("syntax error: unexpected " + token + " at index " + token.getPosition());
+        return node;
+    }
+
+    private boolean isOperandStart(Token token) {
+        return token.is(Type.NAME) || token.is(Type.OPEN) || token.is(Type.OPEN_CURLY);
+    }
+
+    private int priority(String operator) {
+        return operator.equals(",") ? COMMA_PRIORITY : Binary.getPriority(operator);
+    }
+
+    private Token peek() {
+        return tokens.get(idx);
+    }
+
+    private Token next() {
+        Token token = tokens.get(idx);
+        if (!token.is(Type.END)) idx++;
+        return token;
+    }
+}
@@ -0,0 +1,373 @@
+package jas.core;
+
+import jas.MathContext;
+import jas.core.components.Constants;
+import jas.core.components.RawValue;
+import jas.core.components.Variable;
+import jas.core.operations.Binary;
+import jas.core.operations.Binary.BinEvaluable;
+import jas.core.operations.Custom;
+import jas.core.operations.Nary;
+import jas.core.operations.Unary;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A Node lowered to a flat program for a stack machine: an int[] of opcodes and their arguments, a double[] pool
+ * of numbers and a preallocated double[] stack, so that evaluation neither allocates nor walks the operands of
+ * the tree. Built-in binary operators and unary operations have their own opcodes; user defined operations,
+ * constants, custom operations and the like are called back, so the results are identical to node.eval(x).
+ * <p>
+ * The program is a snapshot of the Node: modifying the Node afterwards does not affect it.
+ */
+public class Program implements Evaluable {
+    private static final int NUM = 0, VAR = 1, LOAD = 2, CALL = 3, CALL_VAL = 4, SUBSTITUTE = 5, CALL_UNARY = 6, CALL_BINARY = 7;
+    private static final int ADD = 8, SUB = 9, MUL = 10, DIV = 11, POW = 12;
+    private static final int COS = 13, SIN = 14, TAN = 15, LOG = 16, INT = 17, ATAN = 18, ASIN = 19, ACOS = 20,
+            ABS = 21, LN = 22, SEC = 23, CSC = 24, COT = 25, FACTORIAL = 26, COSH = 27, SINH = 28, TANH = 29, SIGN = 30;
+    private static final Map<String, Integer> unaryOpcodes = new HashMap<>();
+    private static final Map<String, Integer> binaryOpcodes = new HashMap<>();
+
+    static {
+        String[] names = {"cos", "sin", "tan", "log", "int", "atan", "asin", "acos", "abs", "ln", "sec", "csc", "cot",
+                "factorial", "cosh", "sinh", "tanh", "sign"};
+        for (int i = 0; i < names.length; i++) unaryOpcodes.put(names[i], COS + i);
+        binaryOpcodes.put("+", ADD);
+        binaryOpcodes.put("-", SUB);
+        binaryOpcodes.put("*", MUL);
+        binaryOpcodes.put("/", DIV);
+        binaryOpcodes.put("^", POW);
+    }
+
+    private final int[] code;
+    private final double[] numbers;
+    private final Evaluable[] callbacks;
+    private final BinEvaluable[] binaryCallbacks;
+    private final Node[] nodes;
+    private final Variable[] variables;
+    private final int maxDepth;
+    /**
+     * the stack is taken while evaluating, so that a concurrent or reentrant call allocates its own.
+     */
+    private final AtomicReference<double[]> stack;
+
+    private Program(Builder builder) {
+        code = builder.code.stream().mapToInt(Integer::intValue).toArray();
+        numbers = builder.numbers.stream().mapToDouble(Double::doubleValue).toArray();
+        callbacks = builder.callbacks.toArray(new Evaluable[0]);
+        binaryCallbacks = builder.binaryCallbacks.toArray(new BinEvaluable[0]);
+        nodes = builder.nodes.toArray(new Node[0]);
+        variables = builder.variables;
+        maxDepth = builder.maxDepth;
+        stack = new AtomicReference<>(new double[maxDepth]);
+    }
+
+    /**
+     * @param node the Node to be lowered, preferably simplified.
+     * @return the program that evaluates the node
+     */
+    public static Program compile(Node node) {
+        Builder builder = new Builder();
+        builder.lower(node);
+        return new Program(builder);
+    }
+
+    /**
+     * lowers the node such that the variables are read from bindings, i.e. the ith variable is bound to
+     * bindings[i], while the rest of the variables are evaluated as val() does.
+     *
+     * @see EvalPlan
+     */
+    static Program compile(Node node, Variable[] variables) {
+        Builder builder = new Builder(variables);
+        builder.lower(node);
+        return new Program(builder);
+    }
+
+    public double eval(double x) {
+        return execute(x, null);
+    }
+
+    /**
+     * @param bindings values of the variables the program was compiled with
+     */
+    double eval(double[] bindings) {
+        return execute(Double.NaN, bindings);
+    }
+
+    private double execute(double x, double[] bindings) {
+        double[] stack = this.stack.getAndSet(null);
+        if (stack == null) stack = new double[maxDepth];
+        try {
+            return run(stack, x, bindings);
+        } finally {
+            this.stack.set(stack);
+        }
+    }
+
+    private double run(double[] stack, double x, double[] bindings) {
+        final int[] code = this.code;
+        int sp = -1;
+        for (int pc = 0; pc < code.length; pc++) {
+            switch (code[pc]) {
+                case NUM:
+                    stack[++sp] = numbers[code[++pc]];
+                    break;
+                case VAR:
+                    stack[++sp] = x;
+                    break;
+                case LOAD:
+                    stack[++sp] = bindings[code[++pc]];
+                    break;
+                case CALL:
+                    stack[++sp] = callbacks[code[++pc]].eval(x);
+                    break;
+                case CALL_VAL:
+                    stack[++sp] = nodes[code[++pc]].val();
+                    break;
+                case SUBSTITUTE:
+                    stack[++sp] = substitute(nodes[code[++pc]], bindings);
+                    break;
+                case CALL_UNARY:
+                    stack[sp] = callbacks[code[++pc]].eval(stack[sp]);
+                    break;
+                case CALL_BINARY:
+                    sp--;
+                    stack[sp] = binaryCallbacks[code[++pc]].eval(stack[sp], stack[sp + 1]);
+                    break;
+                case ADD:
+                    sp--;
+                    stack[sp] = stack[sp] + stack[sp + 1];
+                    break;
+                case SUB:
+                    sp--;
+                    stack[sp] = stack[sp] - stack[sp + 1];
+                    break;
+                case MUL:
+                    sp--;
+                    stack[sp] = stack[sp] * stack[sp + 1];
+                    break;
+                case DIV:
+                    sp--;
+                    stack[sp] = stack[sp] / stack[sp + 1];
+                    break;
+                case POW:
+                    sp--;
+                    stack[sp] = Math.pow(stack[sp], stack[sp + 1]);
+                    break;
+                default:
+                    stack[sp] = unary(code[pc], stack[sp]);
+            }
+        }
+        return stack[0];
+    }
+
+    /**
+     * the slow path for nodes that could not be lowered but depend on the bound variables, e.g. custom operations,
+     * which are manipulated before the values are substituted, just as Custom::eval does.
+     */
+    private double substitute(Node node, double[] bindings) {
+        Node tmp = node instanceof Custom ? ((Custom) node.thaw()).manipulate() : node.thaw();
+        for (int i = 0; i < variables.length; i++)
+            tmp = tmp.replace(variables[i], new RawValue(bindings[i]));
+        return tmp.val();
+    }
+
+    /**
+     * evaluates the program column by column; the stack holds an entire column of values in each slot.
+     */
+    @Override
+    public void evalBatch(double[] xs, double[] out, int from, int to) {
+        final int[] code = this.code;
+        double[][] stack = new double[maxDepth][to];
+        int sp = -1;
+        for (int pc = 0; pc < code.length; pc++) {
+            int opcode = code[pc];
+            switch (opcode) {
+                case NUM:
+                    Arrays.fill(stack[++sp], from, to, numbers[code[++pc]]);
+                    continue;
+                case VAR:
+                    System.arraycopy(xs, from, stack[++sp], from, to - from);
+                    continue;
+                case CALL:
+                    callbacks[code[++pc]].evalBatch(xs, stack[++sp], from, to);
+                    continue;
+                case CALL_UNARY:
+                    callbacks[code[++pc]].evalBatch(stack[sp], stack[sp], from, to);
+                    continue;
+            }
+            if (opcode > POW) {
+                double[] a = stack[sp];
+                for (int i = from; i < to; i++) a[i] = unary(opcode, a[i]);
+                continue;
+            }
+            double[] a = stack[sp - 1], b = stack[sp--];
+            switch (opcode) {
+                case CALL_BINARY:
+                    BinEvaluable binEvaluable = binaryCallbacks[code[++pc]];
+                    for (int i = from; i < to; i++) a[i] = binEvaluable.eval(a[i], b[i]);
+                    break;
+                case ADD:
+                    for (int i = from; i < to; i++) a[i] += b[i];
+                    break;
+                case SUB:
+                    for (int i = from; i < to; i++) a[i] -= b[i];
+                    break;
+                case MUL:
+                    for (int i = from; i < to; i++) a[i] *= b[i];
+                    break;
+                case DIV:
+                    for (int i = from; i < to; i++) a[i] /= b[i];
+                    break;
+                case POW:
+                    for (int i = from; i < to; i++) a[i] = Math.pow(a[i], b[i]);
+                    break;
+            }
+        }
+        System.arraycopy(stack[0], from, out, from, to - from);
+    }
+
+    /**
+     * built-in unary operations, as defined in Unary.Definitions
+     */
+    private static double unary(int opcode, double x) {
+        switch (opcode) {
+            case COS:
+                return Math.cos(x);
+            case SIN:
+                return Math.sin(x);
+            case TAN:
+                return Math.tan(x);
+            case LOG:
+                return Math.log10(x);
+            case INT:
+                return Math.floor(x);
+            case ATAN:
+                return Math.atan(x);
+            case ASIN:
+                return Math.asin(x);
+            case ACOS:
+                return Math.acos(x);
+            case ABS:
+                return Math.abs(x);
+            case LN:
+                return Math.log(x) / Math.log(Constants.E.val());
+            case SEC:
+                return 1 / Math.cos(x);
+            case CSC:
+                return 1 / Math.sin(x);
+            case COT:
+                return 1 / Math.tan(x);
+            case FACTORIAL:
+                return MathContext.factorial(new BigDecimal(x).toBigInteger()).doubleValue();
+            case COSH:
+                return Math.cosh(x);
+            case SINH:
+                return Math.sinh(x);
+            case TANH:
+                return Math.tanh(x);
+            case SIGN:
+                if (!Double.isNaN(x)) return x == 0 ? 0 : x > 0 ? 1 : -1;
+                return Double.NaN;
+        }
+        throw new IllegalStateException("illegal opcode " + opcode);
+    }
+
+    private static class Builder {
+        private ArrayList<Integer> code = new ArrayList<>();
+        private ArrayList<Double> numbers = new ArrayList<>();
+        private ArrayList<Evaluable> callbacks = new ArrayList<>();
+        private ArrayList<BinEvaluable> binaryCallbacks = new ArrayList<>();
+        private ArrayList<Node> nodes = new ArrayList<>();
+        private Variable[] variables;
+        private int depth;
+        private int maxDepth = 1;
+
+        private Builder() {
+
+        }
+
+        private Builder(Variable[] variables) {
+            this.variables = variables;
+        }
+
+        private void lower(Node node) {
+            if (node instanceof RawValue) {
+                emit(NUM, numbers.size(), 1);
+                numbers.add(((RawValue) node).doubleValue());
+            } else if (node instanceof Binary) {
+                Binary binary = (Binary) node;
+                lower(binary.getLeft());
+                lower(binary.getRight());
+                Binary.Operator operator = binary.getOperator();
+                Integer opcode = binaryOpcodes.get(operator.getName());
+                if (operator.isBuiltIn() && opcode != null) emit(opcode, -1);
+                else {
+                    emit(CALL_BINARY, binaryCallbacks.size(), -1);
+                    binaryCallbacks.add(operator);
+                }
+            } else if (node instanceof Nary && !((Nary) node).getOperands().isEmpty()) {
+                ArrayList<Node> operands = ((Nary) node).getOperands();
+                lower(operands.get(0));
+                for (int i = 1; i < operands.size(); i++) {
+                    lower(operands.get(i));
+                    emit(binaryOpcodes.get(((Nary) node).getName()), -1);
+                }
+            } else if (node instanceof Unary) {
+                Unary unary = (Unary) node;
+                lower(unary.getOperand());
+                Integer opcode = unaryOpcodes.get(unary.getFunction().getName());
+                if (unary.isBuiltIn() && opcode != null) emit(opcode, 0);
+                else {
+                    emit(CALL_UNARY, callbacks.size(), 0);
+                    callbacks.add(unary.getFunction());
+                }
+            } else if (variables != null) {
+                lowerBound(node);
+            } else if (node.getClass() == Variable.class) {
+                emit(VAR, 1);
+            } else {
+                // constants (which could be random), custom operations, lists, etc.
+                emit(CALL, callbacks.size(), 1);
+                callbacks.add(node);
+            }
+        }
+
+        /**
+         * leaves and operations other than Binary and Unary, when compiling with bound variables.
+         */
+        private void lowerBound(Node node) {
+            if (node instanceof Variable && EvalPlan.isBindable((Variable) node)) {
+                String name = ((Variable) node).getName();
+                for (int i = 0; i < variables.length; i++) {
+                    if (variables[i].getName().equals(name)) {
+                        emit(LOAD, i, 1);
+                        return;
+                    }
+                }
+            }
+            boolean bound = false;
+            for (Variable variable : variables)
+                bound |= node.levelOf(variable) != -1;
+            emit(bound ? SUBSTITUTE : CALL_VAL, nodes.size(), 1);
+            nodes.add(node);
+        }
+
+        private void emit(int opcode, int stackChange) {
+            code.add(opcode);
+            depth += stackChange;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        private void emit(int opcode, int arg, int stackChange) {
+            emit(opcode, stackChange);
+            code.add(arg);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package jas.core;
+
+import jas.Function;
+import jas.core.operations.Custom;
+import jas.core.operations.Manipulation;
+import jas.core.operations.Unary;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * Names of the unary and custom operations, built once for every version of the registries of a context rather than
+ * every time the compiler asks for them; each context keeps its own. The names are also stored in a trie, so that the first call to a reserved operation
+ * in an expression is found in a single scan.
+ */
+final class ReservedNames {
+    private final Collection<Function> unary; // the registries the names are taken from
+    private final ArrayList<Manipulation> custom;
+    private final ArrayList<String> names = new ArrayList<>();
+    private final HashMap<String, Integer> ranks = new HashMap<>(); // position of the first occurrence in names
+    private final Trie trie = new Trie();
+
+    private ReservedNames(Collection<Function> unary, ArrayList<Manipulation> custom) {
+        this.unary = unary;
+        this.custom = custom;
+        unary.forEach(function -> names.add(function.getName()));
+        custom.forEach(manipulation -> names.add(manipulation.getName()));
+        names.add("list");
+        for (int i = 0; i < names.size(); i++) {
+            if (ranks.putIfAbsent(names.get(i), i) == null) trie.insert(names.get(i));
+        }
+    }
+
+    /**
+     * @return the reserved names of the current context
+     */
+    static ReservedNames current() {
+        Collection<Function> unary = Unary.registeredOperations();
+        ArrayList<Manipulation> custom = Custom.registeredManipulations();
+        JasContext context = JasContext.current();
+        ReservedNames names = context.getReservedNames();
+        if (names == null || names.unary != unary || names.custom != custom)
+            context.setReservedNames(names = new ReservedNames(unary, custom));
+        return names;
+    }
+
+    /**
+     * @return unary operations first, then custom operations and "list"; must not be modified.
+     */
+    ArrayList<String> list() {
+        return names;
+    }
+
+    boolean contains(String name) {
+        return ranks.containsKey(name);
+    }
+
+    /**
+     * Among the reserved names that are followed by "(" somewhere in exp, picks the one that comes first in list(),
+     * just like checking exp.contains(name + "(") for each name in order would.
+     *
+     * @return index of the "(" that follows the first occurrence of that name, -1 if there is none.
+     */
+    int indexOfCall(String exp) {
+        int bestRank = Integer.MAX_VALUE, index = -1;
+        for (int i = 0; i < exp.length(); i++) {
+            Trie node = trie;
+            for (int k = i; k < exp.length() && (node = node.children.get(exp.charAt(k))) != null; k++) {
+                if (node.name != null && k + 1 < exp.length() && exp.charAt(k + 1) == '(') {
+                    int rank = ranks.get(node.name);
+                    if (rank < bestRank) {
+                        bestRank = rank;
+                        index = k + 1;
+                    }
+                }
+            }
+        }
+        return index;
+    }
+
+    private static final class Trie {
+        private final HashMap<Character, Trie> children = new HashMap<>();
+        private String name; // the reserved name ending here, if any
+
+        private void insert(String name) {
+            Trie node = this;
+            for (char c : name.toCharArray()) node = node.children.computeIfAbsent(c, k -> new Trie());
+            node.name = name;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return Collections.unmodifiableList(names).toString();
+    }
+}
@@ -0,0 +1,243 @@
+package jas.core;
+
+import jas.core.components.RawValue;
+import jas.core.operations.Binary;
+import jas.core.operations.Operation;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Size bounded, least recently used memo of simplify(), expand() and simplest() results, owned by a JasContext.
+ * Entries are keyed by the exact structure of the node before it was transformed (a*b and b*a are different keys)
+ * together with the modes that affect the result, i.e. FRACTION, POLYNOMIAL, STRUCTURAL_ORDER,
+ * COLLECT_LIKE_TERMS, SATURATION and MULTINOMIAL.
+ * Both the key and the result are stored as private deep copies, so that modifying the nodes handed out later
+ * cannot corrupt the entries. The memo empties itself as soon as anything is stored or (re)defined in its context.
+ * <p>
+ * Only the outermost simplify() or expand() of a thread is memoized, along with the ones simplest() iterates: the
+ * intermediate results of a transformation are shared by its subtrees and reordered in place by equals(Node),
+ * so handing out copies of them instead would change the final result.
+ */
+public class SimplificationCache {
+    private static final ThreadLocal<Boolean> NESTED = ThreadLocal.withInitial(() -> false);
+    private final int capacity;
+    private final LinkedHashMap<Key, Node> entries;
+    private Object definitions; // the registries of the context the entries were computed with
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    public SimplificationCache(int capacity) {
+        if (capacity <= 0) throw new JASException("capacity of simplification cache must be positive");
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<Key, Node>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Node> eldest) {
+                if (size() <= SimplificationCache.this.capacity) return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @param transformation e.g. SIMPLIFY
+     * @param node           modifiable node to be transformed
+     * @param definitions    registries of the current context, see JasContext.definitions()
+     * @param transform      transforms node, invoked only if the result is not cached
+     * @return a modifiable copy of the cached result, or the result of transform
+     */
+    Node apply(Transformation transformation, Node node, Object definitions, Supplier<Node> transform) {
+        if (NESTED.get()) return transform.get();
+        Key key = new Key(transformation, node.thaw()); // node is modified by transform
+        long generation;
+        synchronized (this) {
+            if (definitions != this.definitions) {
+                invalidate();
+                this.definitions = definitions;
+            }
+            Node result = entries.get(key);
+            if (result != null) {
+                hits++;
+                return copy(result);
+            }
+            misses++;
+            generation = this.generation;
+        }
+        Node result = transformation == Transformation.SIMPLEST ? transform.get() : outermost(transform);
+        Node stored = copy(result);
+        synchronized (this) {
+            if (generation == this.generation) entries.put(key, stored);
+        }
+        return result;
+    }
+
+    /**
+     * @return a modifiable deep copy that keeps the parenthesis of a binary root, which thaw() does not.
+     */
+    static Node copy(Node node) {
+        Node copy = node.thaw();
+        if (node instanceof Binary) ((Binary) copy).setOmitParenthesis(((Binary) node).isOmitParenthesis());
+        return copy;
+    }
+
+    /**
+     * @return whether a transformation is in progress on the current thread, see Parallel
+     */
+    static boolean isNested() {
+        return NESTED.get();
+    }
+
+    static void setNested(boolean nested) {
+        NESTED.set(nested);
+    }
+
+    private static Node outermost(Supplier<Node> transform) {
+        NESTED.set(true);
+        try {
+            return transform.get();
+        } finally {
+            NESTED.set(false);
+        }
+    }
+
+    /**
+     * discards all of the entries.
+     */
+    public synchronized void invalidate() {
+        generation++;
+        if (entries.isEmpty()) return;
+        entries.clear();
+        invalidations++;
+    }
+
+    public synchronized void resetStatistics() {
+        hits = misses = evictions = invalidations = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * @return hits / (hits + misses); 0 if the cache has never been queried.
+     */
+    public synchronized double hitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SimplificationCache{size=" + entries.size() + "/" + capacity
+                + ", hits=" + hits
+                + ", misses=" + misses
+                + ", evictions=" + evictions
+                + ", invalidations=" + invalidations + "}";
+    }
+
+    /**
+     * @return hash of the exact structure of node, consistent with sameStructure
+     */
+    static int exactHash(Node node) {
+        int hash = node.getClass().hashCode();
+        ArrayList<Node> children = Node.children(node);
+        if (children == null) return 31 * hash + node.toString().hashCode();
+        hash = 31 * hash + ((node instanceof Operation) ? ((Operation) node).getName().hashCode() : 0);
+        for (Node child : children) hash = 31 * hash + exactHash(child);
+        return hash;
+    }
+
+    /**
+     * @return whether a and b have the same structure, operands in the same order
+     */
+    static boolean sameStructure(Node a, Node b) {
+        if (a == b) return true;
+        if (a.getClass() != b.getClass()) return false;
+        ArrayList<Node> children = Node.children(a);
+        if (children == null) {
+            if (a instanceof RawValue && Double.compare(((RawValue) a).doubleValue(), ((RawValue) b).doubleValue()) != 0)
+                return false;
+            return a.toString().equals(b.toString());
+        }
+        ArrayList<Node> others = Node.children(b);
+        if (children.size() != others.size()) return false;
+        if (a instanceof Operation && !((Operation) a).getName().equals(((Operation) b).getName())) return false;
+        for (int i = 0; i < children.size(); i++) {
+            if (!sameStructure(children.get(i), others.get(i))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the modes of the current context that affect the result of a transformation, as bits
+     */
+    static int modes() {
+        JasContext context = JasContext.current();
+        return (context.isFraction() ? 1 : 0)
+                | (context.isPolynomial() ? 2 : 0)
+                | (context.isStructuralOrder() ? 4 : 0)
+                | (context.isCollectLikeTerms() ? 8 : 0)
+                | (context.isSaturation() ? 16 : 0)
+                | (context.isMultinomial() ? 32 : 0)
+                | (context.isNary() ? 64 : 0);
+    }
+
+    public enum Transformation {
+        SIMPLIFY, EXPAND, SIMPLEST
+    }
+
+    /**
+     * node before transformation; its structure is compared exactly, unlike Node.equals, which is commutative.
+     */
+    private static final class Key {
+        private final Transformation transformation;
+        private final Node node;
+        private final int modes;
+        private final int hash;
+
+        private Key(Transformation transformation, Node node) {
+            this.transformation = transformation;
+            this.node = node;
+            this.modes = modes();
+            this.hash = 31 * (31 * transformation.hashCode() + modes) + exactHash(node);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) return false;
+            Key key = (Key) other;
+            return hash == key.hash && transformation == key.transformation && modes == key.modes && sameStructure(node, key.node);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
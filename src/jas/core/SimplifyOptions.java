@@ -0,0 +1,217 @@
+package jas.core;
+
+import java.util.function.Supplier;
+
+/**
+ * Budget of simplify(), expand(), simplest() and derivative(): maximum number of iterations of simplest(), maximum
+ * number of nodes of an intermediate form, a timeout, a wall-clock deadline and a cancellation token. The budget is
+ * checked throughout the transformations; once it runs out, the best form found so far is returned instead.
+ * maxIterations only applies to simplest().
+ * <p>
+ * Options are immutable, so the same options could be used for many calls and from several threads. The timeout
+ * is measured from the start of every outermost call, whereas the deadline is an absolute point in time.
+ * e.g. node.simplest(SimplifyOptions.UNBOUNDED.withTimeout(100).withMaxNodes(10000))
+ */
+public final class SimplifyOptions {
+    public static final SimplifyOptions UNBOUNDED = new SimplifyOptions(Integer.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, null);
+    private static final ThreadLocal<Budget> BUDGET = new ThreadLocal<>();
+
+    private final int maxIterations;
+    private final int maxNodes;
+    private final long timeout; // in milliseconds
+    private final long deadline; // in milliseconds since the epoch
+    private final CancellationToken cancellation; // null if not cancellable
+
+    private SimplifyOptions(int maxIterations, int maxNodes, long timeout, long deadline, CancellationToken cancellation) {
+        this.maxIterations = maxIterations;
+        this.maxNodes = maxNodes;
+        this.timeout = timeout;
+        this.deadline = deadline;
+        this.cancellation = cancellation;
+    }
+
+    /**
+     * @param maxIterations maximum number of times simplest() expands and simplifies, at least 1
+     */
+    public SimplifyOptions withMaxIterations(int maxIterations) {
+        if (maxIterations < 1) throw new JASException("max iterations must be positive");
+        return new SimplifyOptions(maxIterations, maxNodes, timeout, deadline, cancellation);
+    }
+
+    /**
+     * @param maxNodes maximum number of nodes of the result of an expansion and of the forms simplest() goes through
+     */
+    public SimplifyOptions withMaxNodes(int maxNodes) {
+        if (maxNodes < 1) throw new JASException("max nodes must be positive");
+        return new SimplifyOptions(maxIterations, maxNodes, timeout, deadline, cancellation);
+    }
+
+    /**
+     * @param timeout milliseconds each call may take
+     */
+    public SimplifyOptions withTimeout(long timeout) {
+        if (timeout < 0) throw new JASException("timeout must not be negative");
+        return new SimplifyOptions(maxIterations, maxNodes, timeout, deadline, cancellation);
+    }
+
+    /**
+     * @param deadline as returned by System.currentTimeMillis()
+     */
+    public SimplifyOptions withDeadline(long deadline) {
+        return new SimplifyOptions(maxIterations, maxNodes, timeout, deadline, cancellation);
+    }
+
+    public SimplifyOptions withCancellation(CancellationToken cancellation) {
+        return new SimplifyOptions(maxIterations, maxNodes, timeout, deadline, cancellation);
+    }
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    public int getMaxNodes() {
+        return maxNodes;
+    }
+
+    /**
+     * runs the task with this budget, in addition to the budget of the enclosing call if there is one.
+     *
+     * @param task     transformation that checks the budget through checkpoint()
+     * @param fallback the best form found so far, in case the budget runs out
+     */
+    Node run(Supplier<Node> task, Supplier<Node> fallback) {
+        Budget enclosing = BUDGET.get();
+        if (enclosing == null || enclosing.options != this) BUDGET.set(new Budget(this, enclosing));
+        try {
+            return task.get();
+        } catch (Exhausted e) {
+            return fallback.get();
+        } finally {
+            BUDGET.set(enclosing);
+        }
+    }
+
+    /**
+     * @return budget of the call in progress on the current thread, null if there is none; see Parallel
+     */
+    static Budget getBudget() {
+        return BUDGET.get();
+    }
+
+    static void setBudget(Budget budget) {
+        BUDGET.set(budget);
+    }
+
+    /**
+     * @throws Exhausted if the budget of the current call has run out
+     */
+    static void checkpoint() {
+        Budget budget = BUDGET.get();
+        if (budget != null) budget.check(null);
+    }
+
+    /**
+     * @param node an intermediate form
+     * @throws Exhausted if the budget of the current call has run out, or if node has too many nodes
+     */
+    static void checkpoint(Node node) {
+        Budget budget = BUDGET.get();
+        if (budget != null) budget.check(node);
+    }
+
+    /**
+     * polls the budget of the call in progress on the current thread, for loops outside of jas.core that stop on
+     * their own instead of at a checkpoint, e.g. EGraph.
+     *
+     * @return whether the budget has run out
+     */
+    public static boolean isExhausted() {
+        Budget budget = BUDGET.get();
+        if (budget == null) return false;
+        try {
+            budget.check(null);
+            return false;
+        } catch (Exhausted e) {
+            return true;
+        }
+    }
+
+    /**
+     * @return whether the node is small enough for the budget of the current call
+     */
+    static boolean fits(Node node) {
+        Budget budget = BUDGET.get();
+        return budget == null || budget.fits(node);
+    }
+
+    @Override
+    public String toString() {
+        return "SimplifyOptions{maxIterations=" + maxIterations + ", maxNodes=" + maxNodes + ", timeout=" + timeout
+                + ", deadline=" + deadline + ", cancellable=" + (cancellation != null) + "}";
+    }
+
+    /**
+     * Cooperative cancellation: once cancelled, every call that uses the token returns the best form it has found
+     * at its next checkpoint. Could be cancelled from any thread.
+     */
+    public static final class CancellationToken {
+        private volatile boolean cancelled;
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * what is left of the options of a call in progress; shared by the tasks the call forks.
+     */
+    static final class Budget {
+        private final SimplifyOptions options;
+        private final Budget enclosing; // null for the outermost call
+        private final long deadline; // in nanoseconds, as returned by System.nanoTime()
+        private final boolean timed;
+        private volatile boolean exhausted;
+
+        private Budget(SimplifyOptions options, Budget enclosing) {
+            this.options = options;
+            this.enclosing = enclosing;
+            long now = System.nanoTime(), remaining = Long.MAX_VALUE;
+            if (options.timeout != Long.MAX_VALUE) remaining = options.timeout;
+            if (options.deadline != Long.MAX_VALUE)
+                remaining = Math.min(remaining, Math.max(0, options.deadline - System.currentTimeMillis()));
+            this.timed = remaining != Long.MAX_VALUE;
+            this.deadline = timed ? now + Math.min(remaining, Long.MAX_VALUE / 2_000_000) * 1_000_000 : 0;
+        }
+
+        private void check(Node node) {
+            if (enclosing != null) enclosing.check(node);
+            if (exhausted || timed && System.nanoTime() - deadline > 0
+                    || options.cancellation != null && options.cancellation.isCancelled()
+                    || node != null && options.maxNodes != Integer.MAX_VALUE && node.numNodes() > options.maxNodes) {
+                exhausted = true; // the remaining checkpoints of the call fail right away
+                throw Exhausted.INSTANCE;
+            }
+        }
+
+        private boolean fits(Node node) {
+            return (enclosing == null || enclosing.fits(node))
+                    && (options.maxNodes == Integer.MAX_VALUE || node.numNodes() <= options.maxNodes);
+        }
+    }
+
+    /**
+     * thrown at a checkpoint once the budget has run out, and caught by run(); carries no stack trace.
+     */
+    static final class Exhausted extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private static final Exhausted INSTANCE = new Exhausted();
+
+        private Exhausted() {
+            super("simplification budget exhausted", null, false, false);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package jas.core;
+
+import jas.core.components.List;
+import jas.core.components.RawValue;
+import jas.core.components.Variable;
+import jas.core.operations.Binary;
+import jas.core.operations.Custom;
+import jas.core.operations.Nary;
+import jas.core.operations.Operation;
+import jas.core.operations.Unary;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+
+/**
+ * Total order on Nodes that compares their structure instead of their string representation:
+ * numbers come first, then variables, unary, custom, binary and n-ary operations, and lists.
+ * Nodes of the same kind are compared by value, name or operator, and then by their operands from left to right.
+ * Used by Binary.order() when JasContext.isStructuralOrder() is on; no string is rendered during the comparison.
+ */
+public final class StructuralOrder implements Comparator<Node> {
+    public static final StructuralOrder INSTANCE = new StructuralOrder();
+
+    private StructuralOrder() {
+
+    }
+
+    private static int rank(Node node) {
+        if (node instanceof RawValue) return 0;
+        if (node instanceof Variable) return 1;
+        if (node instanceof Unary) return 2;
+        if (node instanceof Custom) return 3;
+        if (node instanceof Binary || node instanceof Nary) return 4;
+        if (node instanceof List) return 5;
+        return 6;
+    }
+
+    @Override
+    public int compare(Node a, Node b) {
+        if (a == b) return 0;
+        if (a.isFrozen() && b.isFrozen() && a.hashCode() == b.hashCode() && a.equals(b)) return 0;
+        int c = Integer.compare(rank(a), rank(b));
+        if (c != 0) return c;
+        if (a instanceof RawValue) {
+            c = Double.compare(((RawValue) a).doubleValue(), ((RawValue) b).doubleValue());
+        } else if (a instanceof Variable) {
+            c = ((Variable) a).getName().compareTo(((Variable) b).getName());
+        } else if (a instanceof Operation) {
+            c = ((Operation) a).getName().compareTo(((Operation) b).getName());
+            if (c == 0) c = compare(((Operation) a).getOperands(), ((Operation) b).getOperands());
+        } else if (a instanceof List) {
+            c = compare(((List) a).unwrap(), ((List) b).unwrap());
+        }
+        return c != 0 ? c : a.getClass().getName().compareTo(b.getClass().getName());
+    }
+
+    private int compare(ArrayList<Node> a, ArrayList<Node> b) {
+        for (int i = 0; i < Math.min(a.size(), b.size()); i++) {
+            int c = compare(a.get(i), b.get(i));
+            if (c != 0) return c;
+        }
+        return Integer.compare(a.size(), b.size());
+    }
+}
@@ -1,6 +1,8 @@
 package jas.core.components;
 
+import jas.core.Compiler;
 import jas.core.JASException;
+import jas.core.JasContext;
 import jas.core.Mode;
 import jas.core.Node;
 import jas.utils.ColorFormatter;
@@ -12,20 +14,22 @@ import java.util.ArrayList;
  * Constants
  */
 public class Constants {
+    private static final ArrayList<Constant> builtIns = new ArrayList<>();
+    private static JasContext.Key<ArrayList<Constant>> CONSTANTS;
+
     static {
-        constants = new ArrayList<>();
-        define("e", () -> Math.E);
-        define("pi", () -> Math.PI);
-        define("∞", () -> Double.POSITIVE_INFINITY);
-        define("random", Math::random);
+        builtIns.add(new Constant("e", () -> Math.E, true));
+        builtIns.add(new Constant("pi", () -> Math.PI, true));
+        builtIns.add(new Constant("∞", () -> Double.POSITIVE_INFINITY, true));
+        builtIns.add(new Constant("random", Math::random, false));
+        CONSTANTS = new JasContext.Key<>("constants", builtIns);
     }
 
-    private static ArrayList<Constant> constants;
     public static final Constant E = get("e");
     public static final Constant PI = get("pi");
 
     public static boolean contains(String symbol) {
-        for (Constant constant : constants) {
+        for (Constant constant : list()) {
             if (constant.getName().equals(symbol))
                 return true;
         }
@@ -33,36 +37,44 @@ public class Constants {
     }
 
     /**
-     * add or define a Constant object into the static ArrayList Constants.
+     * add or define a Constant object into the constants of the current context.
      *
      * @param name          the name of the constant
      * @param computedConst the new computed const instance
      */
     public static void define(String name, ComputedConst computedConst) {
-        boolean defined = false;
-        for (Constant constant : constants) {
-            if (constant.getName().equals(name)) {
-                constant.computedConst = computedConst;
-                defined = true;
+        JasContext.current().update(CONSTANTS, constants -> {
+            ArrayList<Constant> defined = new ArrayList<>(constants);
+            Constant constant = new Constant(name, computedConst);
+            for (int i = 0; i < defined.size(); i++) {
+                if (defined.get(i).getName().equals(name)) {
+                    defined.set(i, constant); // compiled constants look the new definition up by name
+                    return defined;
+                }
             }
-        }
-        if (!defined) constants.add(new Constant(name, computedConst));
+            defined.add(constant);
+            return defined;
+        });
+        Compiler.invalidateCache();
     }
 
     public static double valueOf(String constant) {
-        for (Constant c : constants) {
+        for (Constant c : list()) {
             if (c.getName().equals(constant))
                 return c.computedConst.compute();
         }
         return 0.0;
     }
 
+    /**
+     * @return the constants of the current context, which must not be modified
+     */
     public static ArrayList<Constant> list() {
-        return constants;
+        return JasContext.current().get(CONSTANTS);
     }
 
     public static Constant get(String name) {
-        for (Constant constant : constants) {
+        for (Constant constant : list()) {
             if (constant.getName().equals(name))
                 return constant;
         }
@@ -75,25 +87,54 @@ public class Constants {
 
     public static class Constant extends Variable {
         private ComputedConst computedConst;
+        private final boolean deterministic;
 
         public Constant(String name, ComputedConst computedConst) {
+            this(name, computedConst, false);
+        }
+
+        private Constant(String name, ComputedConst computedConst, boolean deterministic) {
             super(name);
             this.computedConst = computedConst;
-
+            this.deterministic = deterministic;
         }
 
         Constant(Constant other) {
             super(other.getName());
             this.computedConst = other.computedConst;
+            this.deterministic = other.deterministic;
+        }
+
+        /**
+         * @return whether the constant always has the same value; only known for the built-in constants other
+         * than random, since a user defined constant could be computed by anything.
+         */
+        public boolean isDeterministic() {
+            return deterministic;
         }
 
         public double eval(double x) {
-            return computedConst.compute();
+            return definition().compute();
+        }
+
+        /**
+         * @return the definition of this constant in the current context, or the one it was created with if the
+         * current context does not define it, such that redefining a constant affects the nodes compiled before.
+         */
+        private ComputedConst definition() {
+            for (Constant constant : list()) {
+                if (constant.getName().equals(getName()))
+                    return constant.computedConst;
+            }
+            return computedConst;
         }
 
+        /**
+         * constants are told apart by name, in agreement with the hash of Variable; comparing values instead would
+         * make random unequal to itself.
+         */
         public boolean equals(Node other) {
-            return other instanceof Constant && (((Constant) other).getName().equals(getName())
-                    || other.val() == this.val());
+            return other instanceof Constant && ((Constant) other).getName().equals(getName());
         }
 
         @Override
@@ -103,11 +144,16 @@ public class Constants {
 
         @Override
         public double val() {
-            return computedConst.compute();
+            return definition().compute();
         }
 
         @Override
         public Constant copy() {
+            return isFrozen() ? this : thaw();
+        }
+
+        @Override
+        public Constant thaw() {
             return new Constant(this);
         }
 
@@ -14,48 +14,105 @@ import static jas.utils.ColorFormatter.color;
 
 /**
  * Created by Jiachen on 3/2/18.
- * Fraction
+ * Fraction, kept in a pair of longs while both of its parts fit; arithmetic that overflows a long, detected by
+ * Math.multiplyExact and Math.addExact, is redone with BigInteger, and the result returns to longs once it fits again.
  */
 public class Fraction extends RawValue {
     private static final BigInteger BIG_ZERO = BigInteger.ZERO; //wow this is such a weird bug!
     private static final BigInteger BIG_ONE = BigInteger.ONE;
+    private static final double MAX_EXACT = 0x1p53; // integral doubles up to this convert to long exactly
     public static final Fraction UNDEF = new Fraction(0, 0);
     public static double TOLERANCE = 5E-7;
-    private BigInteger numerator;
-    private BigInteger denominator;
+    private long numerator;
+    private long denominator;
+    private BigInteger bigNumerator; // both null unless a part does not fit in a long
+    private BigInteger bigDenominator;
 
 
-    Fraction(BigInteger numerator, BigInteger denominator) {
+    public Fraction(BigInteger numerator, BigInteger denominator) {
         super(Double.NaN);
-        this.numerator = numerator;
-        this.denominator = denominator;
+        assign(numerator, denominator);
         this.reduce();
     }
 
     public Fraction(long numerator, long denominator) {
-        this(new BigInteger(Long.toString(numerator)), new BigInteger(Long.toString(denominator)));
+        super(Double.NaN);
+        assign(numerator, denominator);
+        this.reduce();
+    }
+
+    private boolean isBig() {
+        return bigNumerator != null;
+    }
+
+    private void assign(long numerator, long denominator) {
+        if (numerator == Long.MIN_VALUE || denominator == Long.MIN_VALUE) { // cannot be negated
+            assign(BigInteger.valueOf(numerator), BigInteger.valueOf(denominator));
+            return;
+        }
+        this.numerator = numerator;
+        this.denominator = denominator;
+        this.bigNumerator = null;
+        this.bigDenominator = null;
     }
 
+    private void assign(BigInteger numerator, BigInteger denominator) {
+        if (fitsLong(numerator) && fitsLong(denominator)) {
+            this.numerator = numerator.longValue();
+            this.denominator = denominator.longValue();
+            this.bigNumerator = null;
+            this.bigDenominator = null;
+        } else {
+            this.bigNumerator = numerator;
+            this.bigDenominator = denominator;
+        }
+    }
+
+    /**
+     * @return whether n is a long other than Long.MIN_VALUE, which cannot be negated
+     */
+    private static boolean fitsLong(BigInteger n) {
+        return n.bitLength() < Long.SIZE && n.longValue() != Long.MIN_VALUE;
+    }
+
+    /**
+     * divides both parts by their gcd and moves the sign of a negative denominator to the numerator.
+     *
+     * @return this, or a RawValue if the fraction is an integer
+     */
     public RawValue reduce() {
         if (isUndefined()) return UNDEF;
-        BigInteger gcd = gcd();
-        setNumerator(numerator.divide(gcd));
-        setDenominator(this.denominator.divide(gcd));
-        if (denominator.equals(BIG_ONE)) {
-            return new RawValue(numerator.doubleValue());
-        } else if (numerator.equals(BIG_ZERO)) {
+        checkModifiable();
+        if (!isBig() && (numerator == Long.MIN_VALUE || denominator == Long.MIN_VALUE)) // cannot be negated
+            assign(BigInteger.valueOf(numerator), BigInteger.valueOf(denominator));
+        if (isBig()) {
+            BigInteger gcd = MathContext.gcd(bigNumerator.abs(), bigDenominator.abs());
+            BigInteger n = bigNumerator.divide(gcd), d = bigDenominator.divide(gcd);
+            if (d.signum() < 0) {
+                n = n.negate();
+                d = d.negate();
+            }
+            assign(n, d);
+            if (isBig()) {
+                if (bigDenominator.equals(BIG_ONE)) return new RawValue(bigNumerator.doubleValue());
+                return this;
+            }
+        }
+        long gcd = MathContext.gcd(Math.abs(numerator), Math.abs(denominator));
+        numerator /= gcd;
+        denominator /= gcd;
+        if (denominator < 0) {
+            numerator = -numerator;
+            denominator = -denominator;
+        }
+        if (denominator == 1) {
+            return new RawValue((double) numerator);
+        } else if (numerator == 0) {
             return new RawValue(0);
-        } else if (numerator.compareTo(BIG_ZERO) < 0 && denominator.compareTo(BIG_ZERO) < 0) {
-            setNumerator(this.numerator.multiply(BIG_ONE.negate()));
-            setDenominator(this.denominator.multiply(BIG_ONE.negate()));
         }
         return this;
     }
 
-    private BigInteger gcd() {
-        return MathContext.gcd(numerator.abs(), denominator.abs());
-    }
-
     public static RawValue convertToFraction(double val) {
         String s = String.valueOf(val);
         long digitsDec = s.length() - 1 - s.indexOf('.');
@@ -140,26 +197,54 @@ public class Fraction extends RawValue {
     public RawValue add(RawValue o) {
         if (o.isUndefined() || this.isUndefined()) return UNDEF;
         if (!(o instanceof Fraction)) {
-            if (o.isInteger()) o = new Fraction(o.toBigInteger(), BIG_ONE);
-            else o = Fraction.convertToFraction(o.doubleValue(), TOLERANCE);
-        } else o = o.copy();
+            if (isSmallInteger(o)) return add((long) o.doubleValue(), 1);
+            if (o.isInteger()) return add(o.toBigInteger(), BIG_ONE);
+            o = Fraction.convertToFraction(o.doubleValue(), TOLERANCE);
+        }
         Fraction f = (Fraction) o;
+        if (f.isBig()) return add(f.bigNumerator, f.bigDenominator);
+        return add(f.numerator, f.denominator);
+    }
 
-        BigInteger lcm = lcm(denominator, f.denominator);
-        this.simult(lcm.divide(denominator));
-        f.simult(lcm.divide(f.denominator));
-        setNumerator(this.numerator.add(f.numerator));
+    private RawValue add(long n, long d) {
+        checkModifiable();
+        if (!isBig() && denominator > 0 && d > 0) {
+            try {
+                long gcd = MathContext.gcd(denominator, d);
+                long lcm = Math.multiplyExact(denominator / gcd, d);
+                long sum = Math.addExact(Math.multiplyExact(numerator, d / gcd), Math.multiplyExact(n, denominator / gcd));
+                assign(sum, lcm);
+                return this.reduce();
+            } catch (ArithmeticException e) {
+                // overflows a long
+            }
+        }
+        return add(BigInteger.valueOf(n), BigInteger.valueOf(d));
+    }
+
+    private RawValue add(BigInteger n, BigInteger d) {
+        checkModifiable();
+        BigInteger numerator = getNumerator(), denominator = getDenominator();
+        BigInteger lcm = lcm(denominator, d);
+        assign(numerator.multiply(lcm.divide(denominator)).add(n.multiply(lcm.divide(d))), lcm);
         return this.reduce();
     }
 
+    /**
+     * @return whether o is an integer that converts to a long exactly
+     */
+    private static boolean isSmallInteger(RawValue o) {
+        return o.isInteger() && Math.abs(o.doubleValue()) <= MAX_EXACT;
+    }
+
     public Node exp(RawValue o) {
         if (o.isUndefined() || this.isUndefined()) return UNDEF;
         if (o instanceof Fraction) {
             Fraction f = ((Fraction) o);
-            this.exp(f.numerator.intValueExact());
+            this.exp(f.getNumerator().intValueExact());
             this.reduce();
-            Node o1 = extractRoot(this.numerator, f.denominator);
-            Node o2 = extractRoot(this.denominator, f.denominator);
+            Node o1 = extractRoot(this.getNumerator(), f.getDenominator());
+            Node o2 = extractRoot(this.getDenominator(), f.getDenominator());
             if (o1 == null || o1.isUndefined() || o2 == null || o2.isUndefined()) return UNDEF;
             Binary nu = (Binary) o1;
             Binary de = (Binary) o2;
@@ -185,37 +270,74 @@ public class Fraction extends RawValue {
             i *= -1;
             this.inverse();
         }
-        this.numerator = this.numerator.pow(i);
-        this.denominator = this.denominator.pow(i);
+        checkModifiable();
+        if (!isBig() && i >= 0) {
+            try {
+                assign(pow(numerator, i), pow(denominator, i));
+                return this.reduce();
+            } catch (ArithmeticException e) {
+                // overflows a long
+            }
+        }
+        assign(getNumerator().pow(i), getDenominator().pow(i));
         return this.reduce();
     }
 
+    /**
+     * @throws ArithmeticException if the power overflows a long
+     */
+    private static long pow(long base, int i) {
+        long pow = 1;
+        for (; i > 0; i >>= 1) {
+            if ((i & 1) == 1) pow = Math.multiplyExact(pow, base);
+            if (i > 1) base = Math.multiplyExact(base, base);
+        }
+        return pow;
+    }
+
     public RawValue sub(RawValue o) {
-        return this.add(o.copy().negate());
+        return this.add(o.thaw().negate());
     }
 
     public RawValue mult(RawValue o) {
         if (o.isUndefined() || this.isUndefined()) return UNDEF;
         if (o instanceof Fraction) {
-            setNumerator(numerator.multiply(((Fraction) o).numerator));
-            setDenominator(denominator.multiply(((Fraction) o).denominator));
-            return this.reduce();
+            Fraction f = (Fraction) o;
+            if (f.isBig()) return mult(f.bigNumerator, f.bigDenominator);
+            return mult(f.numerator, f.denominator);
+        } else if (isSmallInteger(o)) {
+            return mult((long) o.doubleValue(), 1);
         } else if (o.isInteger()) {
-            setNumerator(numerator.multiply(o.toBigInteger()));
-            return this.reduce();
+            return mult(o.toBigInteger(), BIG_ONE);
         } else {
             o = Fraction.convertToFraction(o.doubleValue(), TOLERANCE);
             return mult(o);
         }
     }
 
-    public RawValue div(RawValue o) {
-        return mult(o.inverse());
+    private RawValue mult(long n, long d) {
+        checkModifiable();
+        if (!isBig()) {
+            try { // cancels crosswise first, so that only the reduced product has to fit
+                long g1 = MathContext.gcd(Math.abs(numerator), Math.abs(d));
+                long g2 = MathContext.gcd(Math.abs(n), Math.abs(denominator));
+                assign(Math.multiplyExact(numerator / g1, n / g2), Math.multiplyExact(denominator / g2, d / g1));
+                return this.reduce();
+            } catch (ArithmeticException e) {
+                // overflows a long
+            }
+        }
+        return mult(BigInteger.valueOf(n), BigInteger.valueOf(d));
     }
 
-    private void simult(BigInteger n) {
-        setDenominator(denominator.multiply(n));
-        setNumerator(numerator.multiply(n));
+    private RawValue mult(BigInteger n, BigInteger d) {
+        checkModifiable();
+        assign(getNumerator().multiply(n), getDenominator().multiply(d));
+        return this.reduce();
+    }
+
+    public RawValue div(RawValue o) {
+        return mult(o.inverse());
     }
 
     @Override
@@ -226,25 +348,26 @@ public class Fraction extends RawValue {
     @Override
     public double doubleValue() {
         if (isUndefined()) return Double.NaN;
-        return numerator.doubleValue() / denominator.doubleValue();
+        if (isBig()) return bigNumerator.doubleValue() / bigDenominator.doubleValue();
+        return (double) numerator / (double) denominator;
     }
 
     @Override
     public Fraction inverse() {
         if (isUndefined()) return Fraction.UNDEF;
-        BigInteger tmp = denominator;
-        denominator = numerator;
-        numerator = tmp;
+        checkModifiable();
+        if (isBig()) assign(bigDenominator, bigNumerator);
+        else assign(denominator, numerator);
         return this;
     }
 
     @Override
     public boolean isZero() {
-        return !isUndefined() && denominator.equals(BIG_ZERO);
+        return !isUndefined() && !isBig() && denominator == 0;
     }
 
     public String toString() {
-        return "(" + numerator + "/" + denominator + ")";
+        return "(" + getNumerator() + "/" + getDenominator() + ")";
     }
 
     /**
@@ -252,20 +375,28 @@ public class Fraction extends RawValue {
      */
     @Override
     public String coloredString() {
-        return color("(", PARENTHESIS_COLOR) + color(numerator + "/" + denominator, FRACTION_COLOR) + color(")", PARENTHESIS_COLOR);
+        return color("(", PARENTHESIS_COLOR) + color(getNumerator() + "/" + getDenominator(), FRACTION_COLOR) + color(")", PARENTHESIS_COLOR);
     }
 
     @Override
     public boolean isPositive() {
-        return !isUndefined() && numerator.divide(denominator).compareTo(BIG_ZERO) > 0;
+        if (isUndefined()) return false;
+        if (isBig()) return bigNumerator.divide(bigDenominator).signum() > 0;
+        return numerator / denominator > 0;
     }
 
     @Override
     public boolean isUndefined() {
-        return denominator.equals(BIG_ZERO);
+        return !isBig() && denominator == 0;
     }
 
+    @Override
     public Fraction copy() {
+        return isFrozen() ? this : thaw();
+    }
+
+    public Fraction thaw() {
+        if (isBig()) return new Fraction(bigNumerator, bigDenominator);
         return new Fraction(numerator, denominator);
     }
 
@@ -275,8 +406,10 @@ public class Fraction extends RawValue {
     }
 
     public Fraction negate() {
-        Fraction clone = this.copy();
-        clone.setNumerator(clone.numerator.multiply(BIG_ONE.negate()));
+        Fraction clone = this.thaw();
+        clone.checkModifiable();
+        if (clone.isBig()) clone.assign(clone.bigNumerator.negate(), clone.bigDenominator);
+        else clone.assign(-clone.numerator, clone.denominator);
         clone.reduce();
         return clone;
     }
@@ -286,20 +419,22 @@ public class Fraction extends RawValue {
     }
 
     public BigInteger getNumerator() {
-        return numerator;
+        return isBig() ? bigNumerator : BigInteger.valueOf(numerator);
     }
 
     public Fraction setNumerator(BigInteger n) {
-        this.numerator = n;
+        checkModifiable();
+        assign(n, getDenominator());
         return this;
     }
 
     public BigInteger getDenominator() {
-        return denominator;
+        return isBig() ? bigDenominator : BigInteger.valueOf(denominator);
     }
 
     public Fraction setDenominator(BigInteger n) {
-        this.denominator = n;
+        checkModifiable();
+        assign(getNumerator(), n);
         return this;
     }
 }
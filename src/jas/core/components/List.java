@@ -2,6 +2,7 @@ package jas.core.components;
 
 import jas.core.JASException;
 import jas.core.Node;
+import jas.core.Parallel;
 import jas.core.operations.Binary;
 import jas.core.operations.Custom;
 import jas.core.operations.Unary;
@@ -42,6 +43,11 @@ public class List extends Node {
         return true;
     }
 
+    @Override
+    protected int structuralHash() {
+        return nodes.hashCode();
+    }
+
     public Node get(int i) {
         return nodes.get(i);
     }
@@ -59,6 +65,7 @@ public class List extends Node {
      * @return two lists merged with binary operation
      */
     public List binOp(Binary binOp, List other) {
+        if (isFrozen()) return modifiable().binOp(binOp, other);
         if (size() != other.size()) throw new JASException("list dimension mismatch");
         ArrayList<Node> unwrap = unwrap();
         for (int i = 0; i < unwrap.size(); i++) {
@@ -78,6 +85,7 @@ public class List extends Node {
      * @return self with all of the elements performed binOp with [other]
      */
     public List binOp(Binary binOp, Node other, boolean forward) {
+        if (isFrozen()) return modifiable().binOp(binOp, other, forward);
         ArrayList<Node> unwrap = unwrap();
         for (int i = 0; i < unwrap.size(); i++) {
             Node node = unwrap.get(i);
@@ -95,6 +103,8 @@ public class List extends Node {
      * @return self
      */
     public List uOp(Unary uOp) {
+        if (isFrozen()) return modifiable().uOp(uOp);
+        modified();
         nodes = nodes.stream().map(o -> new Unary(o, uOp.getFunction()))
                 .collect(Collectors.toCollection(ArrayList::new));
         return this;
@@ -107,22 +117,40 @@ public class List extends Node {
      * @return self
      */
     public List customOp(Custom customOp) {
+        if (isFrozen()) return modifiable().customOp(customOp);
+        modified();
         nodes = nodes.stream().map(o -> new Custom(customOp.getName(), o))
                 .collect(Collectors.toCollection(ArrayList::new));
         return this;
     }
 
+    /**
+     * @return this, or a modifiable List sharing the elements of this frozen List
+     */
+    private List modifiable() {
+        return isFrozen() ? new List(new ArrayList<>(nodes)) : this;
+    }
+
     public void set(int i, Node o) {
+        checkModifiable();
         nodes.set(i, o);
     }
 
     public void set(ArrayList<Node> nodes) {
+        checkModifiable();
         this.nodes = nodes;
     }
 
     @Override
-    public Node copy() {
-        return this;
+    public List copy() {
+        return isFrozen() ? this : thaw();
+    }
+
+    @Override
+    public List thaw() {
+        return new List(nodes.stream()
+                .map(Node::thaw)
+                .collect(Collectors.toCollection(ArrayList::new)));
     }
 
     /**
@@ -203,9 +231,9 @@ public class List extends Node {
      */
     @Override
     public Node simplify() {
-        nodes = nodes.stream()
-                .map(Node::simplify)
-                .collect(Collectors.toCollection(ArrayList::new));
+        if (isFrozen()) return transformFrozen(Node::simplify);
+        modified();
+        nodes = Parallel.map(nodes, Node::simplify);
         return this;
     }
 
@@ -287,4 +315,15 @@ public class List extends Node {
     public double eval(double x) {
         return Double.NaN;
     }
+
+    /**
+     * evaluates each of the elements for xs[from] through xs[to - 1]
+     *
+     * @param out out[i] holds the values of the ith element, at the same indices as xs
+     */
+    public void evalBatch(double[] xs, double[][] out, int from, int to) {
+        if (out.length != size()) throw new JASException("list dimension mismatch");
+        for (int i = 0; i < size(); i++)
+            get(i).evalBatch(xs, out[i], from, to);
+    }
 }
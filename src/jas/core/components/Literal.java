@@ -21,8 +21,18 @@ public class Literal extends Variable {
         return other instanceof Literal && ((Literal) other).content.equals(content);
     }
 
+    @Override
+    protected int structuralHash() {
+        return content.hashCode();
+    }
+
     @Override
     public Literal copy() {
+        return isFrozen() ? this : thaw();
+    }
+
+    @Override
+    public Literal thaw() {
         return new Literal(content);
     }
 
@@ -9,6 +9,7 @@ import jas.utils.ColorFormatter;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.text.DecimalFormat;
+import java.util.Arrays;
 
 /**
  * Created by Jiachen on 03/05/2017.
@@ -58,7 +59,13 @@ public class RawValue extends LeafNode {
         return doubleValue();
     }
 
+    @Override
+    public void evalBatch(double[] xs, double[] out, int from, int to) {
+        Arrays.fill(out, from, to, doubleValue());
+    }
+
     public RawValue inverse() {
+        if (isInteger() && Math.abs(doubleValue()) <= 0x1p53) return new Fraction(1, (long) doubleValue());
         if (isInteger()) return new Fraction(BigInteger.ONE, toBigInteger());
         else return Fraction.convertToFraction(doubleValue(), Fraction.TOLERANCE).inverse();
     }
@@ -108,7 +115,12 @@ public class RawValue extends LeafNode {
     }
 
 
+    @Override
     public RawValue copy() {
+        return isFrozen() ? this : thaw();
+    }
+
+    public RawValue thaw() {
         return new RawValue(n);
     }
 
@@ -140,6 +152,11 @@ public class RawValue extends LeafNode {
                 == this.doubleValue();
     }
 
+    @Override
+    protected int structuralHash() {
+        return isUndefined() ? 0 : Double.hashCode(doubleValue() + 0.0); // 0.0 == -0.0
+    }
+
     public Node simplify() {
         return this;
     }
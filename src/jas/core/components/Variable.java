@@ -13,7 +13,7 @@ import java.util.Optional;
  */
 public class Variable extends LeafNode implements Nameable {
     private String name;
-    private static Map<String, Node> storedVars = new HashMap<>();
+    private static final JasContext.Key<Map<String, Node>> STORED_VARS = new JasContext.Key<>("variables", new HashMap<>());
 
     public Variable(String name) {
         if (name.equals("")) throw new JASException("variable name cannot be empty");
@@ -24,10 +24,22 @@ public class Variable extends LeafNode implements Nameable {
         return x;
     }
 
+    @Override
+    public void evalBatch(double[] xs, double[] out, int from, int to) {
+        if (getClass() != Variable.class) { // constants, literals, supplied variables, etc.
+            super.evalBatch(xs, out, from, to);
+        } else if (xs != out) System.arraycopy(xs, from, out, from, to - from);
+    }
+
     public boolean equals(Node other) {
         return other instanceof Variable && ((Variable) other).getName().equals(name);
     }
 
+    @Override
+    protected int structuralHash() {
+        return name.hashCode();
+    }
+
     public String getName() {
         return name;
     }
@@ -37,6 +49,7 @@ public class Variable extends LeafNode implements Nameable {
     }
 
     public void setName(String name) {
+        checkModifiable();
         this.name = name;
     }
 
@@ -69,7 +82,11 @@ public class Variable extends LeafNode implements Nameable {
      * @param o   the Node to be assigned to the variable name .
      */
     public static void store(Node o, String var) {
-        storedVars.put(var, o);
+        JasContext.current().update(STORED_VARS, vars -> {
+            HashMap<String, Node> stored = new HashMap<>(vars);
+            stored.put(var, o);
+            return stored;
+        });
     }
 
     /**
@@ -77,7 +94,7 @@ public class Variable extends LeafNode implements Nameable {
      * @return Optional type of var's definition
      */
     public static Optional<Node> get(String var) {
-        return Optional.ofNullable(storedVars.get(var));
+        return Optional.ofNullable(JasContext.current().get(STORED_VARS).get(var));
     }
 
     /**
@@ -87,7 +104,15 @@ public class Variable extends LeafNode implements Nameable {
      * @return definition of var
      */
     public static Node del(String var) {
-        return storedVars.remove(var);
+        Node definition = JasContext.current().get(STORED_VARS).get(var);
+        if (definition != null) {
+            JasContext.current().update(STORED_VARS, vars -> {
+                HashMap<String, Node> stored = new HashMap<>(vars);
+                stored.remove(var);
+                return stored;
+            });
+        }
+        return definition;
     }
 
     /**
@@ -112,7 +137,12 @@ public class Variable extends LeafNode implements Nameable {
      *
      * @return new Variable instance that is identical to self.
      */
+    @Override
     public Variable copy() {
+        return isFrozen() ? this : thaw();
+    }
+
+    public Variable thaw() {
         return new Variable(name);
     }
 
@@ -12,7 +12,12 @@ public class Vector extends Node {
     }
 
     @Override
-    public Node copy() {
+    protected int structuralHash() {
+        return System.identityHashCode(this);
+    }
+
+    @Override
+    public Node thaw() {
         return null;
     }
 
@@ -3,10 +3,14 @@ package jas.core.operations;
 
 import jas.MathContext;
 import jas.core.*;
+import jas.core.Compiler;
+import jas.core.components.Constants;
 import jas.core.components.Fraction;
 import jas.core.components.List;
 import jas.core.components.RawValue;
 import jas.core.components.Variable;
+import jas.core.poly.Polynomial;
+import jas.core.rules.Rules;
 
 import java.math.BigInteger;
 import java.util.*;
@@ -51,7 +55,7 @@ public class Binary extends Operation {
     }
 
     public static String operators() {
-        return operators(0) + operators(1) + operators(2) + operators(3);
+        return Operator.symbols();
     }
 
     /**
@@ -132,27 +136,50 @@ public class Binary extends Operation {
      * @since May 19th, 2017
      */
     private void processParentheticalNotation(Node node, boolean isRightHand) {
-        if (node instanceof Binary) {
-            Binary op = ((Binary) node);
-            if (op.getPriority() < this.getPriority()) {
-                op.setOmitParenthesis(true);
-            } else if (op.getPriority() == this.getPriority()) {
-                if (op.operator.equals(operator) && op.is("^"))
-                    op.setOmitParenthesis(false);
-                else op.setOmitParenthesis(op.operator.equals(operator) || !isRightHand);
-            } else {
-                op.setOmitParenthesis(false);
-            }
+        if (node instanceof Binary && !node.isFrozen())
+            ((Binary) node).setOmitParenthesis(omitsParenthesis((Binary) node, isRightHand));
+    }
+
+    /**
+     * @param op          an operand of this binary operation
+     * @param isRightHand whether op is the right hand operand
+     * @return whether the parenthesis around op could be omitted
+     */
+    private boolean omitsParenthesis(Binary op, boolean isRightHand) {
+        if (op.getPriority() < this.getPriority()) return true;
+        if (op.getPriority() > this.getPriority()) return false;
+        if (op.operator.equals(operator) && op.is("^")) return false;
+        return op.operator.equals(operator) || !isRightHand;
+    }
+
+    /**
+     * a frozen operand could be shared by several parents, so its parenthesis are decided by the parent instead.
+     */
+    private boolean parenthesize(Node operand, boolean isRightHand) {
+        if (operand instanceof Nary) { // never encloses itself in parenthesis
+            Nary nary = (Nary) operand;
+            if (nary.getPriority() != getPriority()) return nary.getPriority() > getPriority();
+            return isRightHand && !operator.equals(nary.getName());
         }
+        return needsParenthesis(operand) || operand instanceof Binary && operand.isFrozen()
+                && !omitsParenthesis((Binary) operand, isRightHand);
     }
 
     @Override
     public void order() {
+        if (isFrozen()) return;
         if (is("*") || is("+")) {
             ArrayList<Node> flattened = flattened();
-            flattened.forEach(Node::order);
-            flattened = flattened.stream().sorted(Comparator.comparing(Node::toString))
-                    .collect(Collectors.toCollection(ArrayList::new));
+            flattened.forEach(node -> {
+                if (!(node instanceof Operation && ((Operation) node).isOrdered())) node.order();
+            });
+            if (JasContext.current().isStructuralOrder()) {
+                flattened.sort(StructuralOrder.INSTANCE);
+            } else { // each operand is rendered once rather than on every comparison
+                IdentityHashMap<Node, String> keys = new IdentityHashMap<>();
+                flattened.forEach(node -> keys.put(node, node.toString()));
+                flattened.sort(Comparator.comparing(keys::get));
+            }
             Binary ordered = (Binary) reconstructBinTree(flattened);
             setLeft(ordered.getLeft());
             setRight(ordered.getRight());
@@ -183,7 +210,16 @@ public class Binary extends Operation {
         return operator.priority;
     }
 
+    public Operator getOperator() {
+        return operator;
+    }
+
+    public boolean isOmitParenthesis() {
+        return omitParenthesis;
+    }
+
     public void setOmitParenthesis(boolean temp) {
+        checkModifiable();
         omitParenthesis = temp;
     }
 
@@ -193,16 +229,54 @@ public class Binary extends Operation {
         return operator.eval(leftVal, rightVal);
     }
 
+    @Override
+    public void evalBatch(double[] xs, double[] out, int from, int to) {
+        double[] right = new double[to];
+        getRight().evalBatch(xs, right, from, to);
+        getLeft().evalBatch(xs, out, from, to); // xs could be out, so the left hand side is evaluated last
+        switch (operator.isBuiltIn() ? operator.name : "") {
+            case "+":
+                for (int i = from; i < to; i++) out[i] += right[i];
+                break;
+            case "-":
+                for (int i = from; i < to; i++) out[i] -= right[i];
+                break;
+            case "*":
+                for (int i = from; i < to; i++) out[i] *= right[i];
+                break;
+            case "/":
+                for (int i = from; i < to; i++) out[i] /= right[i];
+                break;
+            default:
+                for (int i = from; i < to; i++) out[i] = operator.eval(out[i], right[i]);
+        }
+    }
+
     @Override
     public Binary copy() {
-        return new Binary(getLeft().copy(), operator, getRight().copy());
+        return isFrozen() ? this : thaw();
+    }
+
+    @Override
+    public Binary thaw() {
+        return new Binary(getLeft().thaw(), operator, getRight().thaw());
+    }
+
+    /**
+     * @return number of terms of a chain of + and -, e.g. 3 for a-b*c+d
+     */
+    private static int numTerms(Node node) {
+        if (node instanceof Binary && (((Binary) node).is("+") || ((Binary) node).is("-")))
+            return numTerms(((Binary) node).getLeft()) + numTerms(((Binary) node).getRight());
+        return 1;
     }
 
     private Node simplifyCommutative() {
         //make operations of the same priority throughout the binary tree visible at the same level.
         //for example, (a+c)+c becomes a+b+c; (a*b)*c becomes a*b*c
-        this.toAdditionOnly().toExponentialForm();
         ArrayList<Node> flattened = this.flattened();
+        if (JasContext.current().isCollectLikeTerms() && is("+")) // e.g. x*x*3 -> 3*x^2, so that it is keyed like other terms with x^2
+            flattened.replaceAll(term -> term instanceof Binary && isRegular(term, true) ? term.simplify() : term);
         crossSimplify(flattened);
         return reconstructBinTree(flattened);
     }
@@ -223,6 +297,25 @@ public class Binary extends Operation {
      * @return the simplified version of self
      */
     public Node simplify() {
+        checkBudget();
+        if (isFrozen()) return transformFrozen(Node::simplify);
+        return memoized(SimplificationCache.Transformation.SIMPLIFY, this::simplifyOperation);
+    }
+
+    private Node simplifyOperation() {
+        if (JasContext.current().isPolynomial() && (is("+") || is("-"))) { // collects like terms, products and powers of sums are kept
+            Polynomial polynomial = Polynomial.from(this, false);
+            if (polynomial != null) {
+                int n = numTerms(this);
+                if (polynomial.numTerms() < n) return polynomial.toNode();
+                Node collected = polynomial.toNode(); // already collected, e.g. the result of expand()
+                if (polynomial.numTerms() == n && collected.toString().equals(toString())) return collected;
+            }
+        }
+        if (JasContext.current().isNary()) {
+            Nary nary = Nary.from(this);
+            if (nary != null) return nary.simplify();
+        }
         if (isCommutable())
             return simplifyCommutative();
         super.simplify();
@@ -250,10 +343,8 @@ public class Binary extends Operation {
             if (simplified != null) return simplified;
         }
 
-        if (getLeft() instanceof Unary && getRight() instanceof Unary) {
-            Node simplified = simplify(((Unary) getLeft()), ((Unary) getRight()));
-            if (simplified != null) return simplified;
-        }
+        Node rewritten = Rules.rewrite(this);
+        if (rewritten != null) return rewritten;
 
         //at this point neither left hand nor right hand is undefined.
         //simplifyRightHand() -> for subtraction and exponentiation, the position of left and right hand is not interchangeable.
@@ -313,6 +404,7 @@ public class Binary extends Operation {
      */
     @Override
     public Node beautify() {
+        if (isFrozen()) return transformFrozen(Node::beautify);
         if (getRight() instanceof RawValue && is("*")) {
             //keeps numbers to the left side of the operator
             flip(); // there is space for improvement...
@@ -368,16 +460,18 @@ public class Binary extends Operation {
     }
 
     public Binary toAdditionOnly() {
+        if (isFrozen()) return (Binary) transformFrozen(Node::toAdditionOnly);
         super.toAdditionOnly();
         if (operator.name.equals("-")) {
             operator = Operator.extract("+");
+            modified();
             setRight(getRight().negate().simplify());
         }
         return this;
     }
 
     public double val() {
-        return operator.eval(getLeft().val(), getRight().val());
+        return cachedVal(() -> operator.eval(getLeft().val(), getRight().val()));
     }
 
     /**
@@ -389,30 +483,37 @@ public class Binary extends Operation {
      */
     @Override
     public Binary toExponentialForm() {
+        if (isFrozen()) return (Binary) transformFrozen(Node::toExponentialForm);
         super.toExponentialForm();
         if (!this.is("/")) return this;
         if (getRight().equals(new RawValue(0))) return this; //x/0 cannot be converted to exponential form
         this.setRight(getRight().exp(new RawValue(-1)).simplify());
         operator = Operator.extract("*");
+        modified();
         simplifyParenthesis();
         return this;
     }
 
     @Override
     public Node firstDerivative(Variable v) {
+        checkBudget();
+        if (JasContext.current().isNary()) {
+            Nary nary = Nary.from(this);
+            if (nary != null) return nary.firstDerivative(v);
+        }
         switch (operator.name) {
             case "+": // d/dx [f(x) + g(x)] = d/dx(g(x)) - d/dx(g(x))
-                return getLeft().firstDerivative(v).add(getRight().firstDerivative(v));
+                return derivativeOf(getLeft(), v).add(derivativeOf(getRight(), v));
             case "-": // d/dx [f(x) - g(x)] = d/dx(g(x)) - d/dx(g(x))
-                return getLeft().firstDerivative(v).sub(getRight().firstDerivative(v));
+                return derivativeOf(getLeft(), v).sub(derivativeOf(getRight(), v));
             case "*": // apply product rule
                 // d/dx[f(x)*g(x)] = d/dx(f(x))*g(x) + d/dx(g(x))*f(x)
-                return getLeft().firstDerivative(v).mult(getRight())
-                        .add(getRight().firstDerivative(v).mult(getLeft()));
+                return derivativeOf(getLeft(), v).mult(getRight())
+                        .add(derivativeOf(getRight(), v).mult(getLeft()));
             case "/": // apply quotient rule
                 // [f(x)/g(x)]' = [g(x)*f'(x) - f(x)*g'(x)]/g(x)^2
-                return getRight().mult(getLeft().firstDerivative(v))
-                        .sub(getLeft().mult(getRight().firstDerivative(v)))
+                return getRight().mult(derivativeOf(getLeft(), v))
+                        .sub(getLeft().mult(derivativeOf(getRight(), v)))
                         .div(getRight().sq());
             case "^":
                 if (getRight().contains(v)) { // x^(x...) use logarithmic differentiation
@@ -420,14 +521,13 @@ public class Binary extends Operation {
                     // ln(y) = g(x)*ln(f(x)) --apply implicit differentiation
                     // dy/dx * 1/y = d/dx[g(x)*ln(f(x))]
                     // dy/dx = d/dx[g(x)*ln(f(x))] * y
-                    return new Unary(getLeft(), "ln").mult(getRight())
-                            .firstDerivative(v)
+                    return derivativeOf(new Unary(getLeft(), "ln").mult(getRight()), v)
                             .mult(this);
                 } else {
                     // the exponent part does not contain Variable v
                     // apply power rule -> d/dx(f(x)^n) = n*f(x)^(n-1)
                     return getRight().mult(getLeft().exp(getRight().sub(1)))
-                            .mult(getLeft().firstDerivative(v));
+                            .mult(derivativeOf(getLeft(), v));
                 }
 
         }
@@ -497,10 +597,10 @@ public class Binary extends Operation {
      * @return simplified r1 [Operator] r2
      */
     private Node simplify(RawValue r1, RawValue r2) {
-        if (!FRACTION) return new RawValue(val());
+        if (!JasContext.current().isFraction()) return new RawValue(val());
         if (getLeft() instanceof Fraction && isCommutative()) {
-            Fraction f = (Fraction) getLeft().copy();
-            RawValue r = (RawValue) getRight().copy();
+            Fraction f = (Fraction) getLeft().thaw();
+            RawValue r = (RawValue) getRight().thaw();
             switch (operator.name) {
                 case "+":
                     return f.add(r);
@@ -512,8 +612,8 @@ public class Binary extends Operation {
                     return f.div(r);
             }
         } else if (getRight() instanceof Fraction && isCommutative()) {
-            Fraction f = (Fraction) getRight().copy();
-            RawValue r = (RawValue) getLeft().copy();
+            Fraction f = (Fraction) getRight().thaw();
+            RawValue r = (RawValue) getLeft().thaw();
             switch (operator.name) {
                 case "+":
                     return f.add(r);
@@ -526,7 +626,7 @@ public class Binary extends Operation {
             }
         } else if (operator.name.equals("^")) { //fractional mode
             if (r1 instanceof Fraction) {
-                return ((Fraction) r1).exp(r2);
+                return ((Fraction) r1.thaw()).exp(r2);
             } else if (r1.isInteger() && r2 instanceof Fraction) {
                 if (r1.val() == 0) return ZERO; // 0^x = 0, as long as x != 0
                 boolean r1Negative = false;
@@ -585,27 +685,6 @@ public class Binary extends Operation {
         return null;
     }
 
-    private Node simplify(Unary u1, Unary u2) {
-        if (!u1.getOperand().isNaN() && !u2.getOperand().isNaN()) {
-            if (u1.getName().equals(u2.getName()))
-                switch (operator.name) {
-                    case "+":
-                        switch (u1.getName()) {
-                            case "log":
-                            case "ln":
-                                return new Unary(u1.getOperand().mult(u2.getOperand()), u1.getName()).simplify();
-                        }
-                    case "-":
-                        switch (u1.getName()) {
-                            case "log":
-                            case "ln":
-                                return new Unary(u1.getOperand().div(u2.getOperand()), u1.getName()).simplify();
-                        }
-                }
-        }
-        return null;
-    }
-
     /**
      * HELPER METHOD
      * <p>
@@ -646,12 +725,12 @@ public class Binary extends Operation {
     }
 
     public String toString() {
-        boolean k = needsParenthesis(getLeft());
-        boolean q = needsParenthesis(getRight());
+        boolean k = parenthesize(getLeft(), false);
+        boolean q = parenthesize(getRight(), true);
         String left = k ? "(" + getLeft().toString() + ")" : getLeft().toString();
         String right = q ? "(" + getRight().toString() + ")" : getRight().toString();
         String temp = left + (Mode.COMPACT ? "" : " ") + operator.name + (Mode.COMPACT ? "" : " ") + right;
-        return omitParenthesis ? temp : "(" + temp + ")";
+        return omitParenthesis || isFrozen() ? temp : "(" + temp + ")";
     }
 
     /**
@@ -691,6 +770,11 @@ public class Binary extends Operation {
                     }
             }
         }
+        if (getLeft() instanceof Product && o instanceof RawValue && is("^")) { // (a*b)^# = a^#*b^#
+            ArrayList<Node> factors = new ArrayList<>();
+            for (Node factor : ((Product) getLeft()).getOperands()) factors.add(new Binary(factor, "^", o.copy()));
+            return new Product(factors).simplify();
+        }
         if (getLeft() instanceof Binary) {
             Binary bin = (Binary) getLeft();
             switch (operator.name) {
@@ -857,6 +941,52 @@ public class Binary extends Operation {
         return null;
     }
 
+    /**
+     * (t1+t2+...+tm)^n by the multinomial theorem, i.e. the sum of n!/(k1!*k2!*...*km!)*t1^k1*t2^k2*...*tm^km over
+     * every k1+k2+...+km = n. The terms are generated one at a time and added up with the like terms generated before
+     * them, so neither the n-fold product nor the sum of all of its unreduced terms is ever built.
+     * e.g. (x+y)^2 = x^2+2*x*y+y^2
+     *
+     * @param terms t1, t2, ..., tm, already expanded
+     * @param n     the exponent, at least 2
+     * @return expanded power, like terms collected
+     */
+    private static Node multinomial(ArrayList<Node> terms, int n) {
+        int m = terms.size();
+        int[] k = new int[m];
+        k[0] = n;
+        Expansion.LikeTerms collected = new Expansion.LikeTerms(JasContext.current());
+        do {
+            checkBudget();
+            Node term = new RawValue(MathContext.multinomial(k).doubleValue());
+            for (int i = 0; i < m; i++) {
+                if (k[i] == 0) continue;
+                Node factor = k[i] == 1 ? terms.get(i).copy() : new Binary(terms.get(i).copy(), "^", new RawValue(k[i]));
+                term = new Binary(term, "*", factor);
+            }
+            collected.add(term.expand()); // e.g. (a*b)^2 -> a^2*b^2
+        } while (nextComposition(k));
+        return collected.sum();
+    }
+
+    /**
+     * steps through the ways to write n as an ordered sum of k.length non-negative integers in decreasing
+     * lexicographic order, from [n, 0, ..., 0] to [0, ..., 0, n].
+     *
+     * @param k modified in place into the next composition
+     * @return false once k was the last composition
+     */
+    private static boolean nextComposition(int[] k) {
+        int last = k.length - 1, i = last - 1;
+        while (i >= 0 && k[i] == 0) i--; // the rightmost nonzero part other than the last one
+        if (i < 0) return false;
+        int rest = k[last];
+        k[last] = 0;
+        k[i]--;
+        k[i + 1] = rest + 1;
+        return true;
+    }
+
     /**
      * This method shouldn't be used when priority == 1, or with the operator ^, since it is not commutative.
      *
@@ -864,10 +994,15 @@ public class Binary extends Operation {
      */
     private void crossSimplify(ArrayList<Node> pool) {
         if (!(is("*") || is("+"))) return;
+        boolean collectLikeTerms = JasContext.current().isCollectLikeTerms();
+        if (collectLikeTerms) while (collectLikeTerms(pool)) ; // collected terms could be like terms again, e.g. 3*x^0
         for (int i = 0; i < pool.size() - 1; i++) {
             Node node = pool.get(i);
             for (int k = i + 1; k < pool.size(); k++) {
                 Node other = pool.get(k);
+                if (collectLikeTerms && isRegular(node, is("+")) && isRegular(other, is("+")))
+                    continue; // already collected, e.g. 3*x and 2*y, x^2 and y
+                checkBudget();
                 String operation = getPriority() == 2 ? "*" : "+";
                 Binary bin = new Binary(node, operation, other);
                 int n1 = bin.complexity();
@@ -883,6 +1018,169 @@ public class Binary extends Operation {
         }
     }
 
+    /**
+     * Collects like terms, or like factors, of the pool in a single pass by grouping them on a key:
+     * 3*x + 2*x = 5*x, where the key of both terms is x, and x^2 * x^3 = x^5, where the key of both factors is x.
+     * The collected term takes the place of the first term of its group; a group of one irregular term is left
+     * untouched.
+     * Finally, 0 is removed from sums, 1 is removed from products and 0 absorbs products.
+     *
+     * @param pool ArrayList containing flattened nodes, modified in place
+     * @return whether the pool changed
+     */
+    private boolean collectLikeTerms(ArrayList<Node> pool) {
+        boolean sum = is("+");
+        LinkedHashMap<String, ArrayList<Node>> groups = new LinkedHashMap<>();
+        for (Node node : pool)
+            groups.computeIfAbsent(sum ? termKey(node) : key(base(node)), k -> new ArrayList<>()).add(node);
+        boolean changed = groups.size() < pool.size();
+        pool.clear();
+        for (ArrayList<Node> group : groups.values()) {
+            Node first = group.get(0);
+            if (group.size() == 1 && !(first instanceof Binary && isRegular(first, sum))) {
+                pool.add(first);
+                continue;
+            }
+            // a regular term by itself is still brought to normal form, e.g. x^1*y -> x*y
+            Node collected = sum ? collectTerms(group) : collectFactors(group);
+            if (collected != null) pool.add(collected);
+        }
+        if (pool.size() < 2) {
+            if (pool.isEmpty()) pool.add(new RawValue(sum ? 0 : 1)); // every term cancelled out
+            return changed;
+        }
+        if (!sum && pool.stream().anyMatch(ZERO::equals)) {
+            pool.clear();
+            pool.add(new RawValue(0));
+            return true;
+        }
+        if (!pool.removeIf(sum ? ZERO::equals : ONE::equals)) return changed;
+        if (pool.isEmpty()) pool.add(new RawValue(sum ? 0 : 1));
+        return true;
+    }
+
+    /**
+     * @return e.g. 5*x for [3*x, 2*x]; null if the terms cancel out.
+     */
+    static Node collectTerms(ArrayList<Node> terms) {
+        Node coefficient = null;
+        ArrayList<Node> rest = null;
+        for (Node term : terms) {
+            ArrayList<Node> factors = new ArrayList<>();
+            factors(term, factors);
+            Node c = ONE;
+            ArrayList<Node> others = new ArrayList<>();
+            for (Node factor : factors) {
+                if (factor instanceof RawValue) c = new Binary(c, "*", factor).simplify();
+                else others.add(factor);
+            }
+            coefficient = coefficient == null ? c : new Binary(coefficient, "+", c).simplify();
+            if (rest == null) rest = others;
+        }
+        if (coefficient.equals(ZERO)) return null;
+        if (rest.isEmpty()) return coefficient;
+        Node product = rest.get(0);
+        for (int i = 1; i < rest.size(); i++) product = new Binary(product, "*", rest.get(i));
+        return (coefficient.equals(ONE) ? product : new Binary(coefficient, "*", product)).simplify();
+    }
+
+    /**
+     * @return e.g. x^5 for [x^2, x^3], 6 for [2, 3]
+     */
+    private static Node collectFactors(ArrayList<Node> factors) {
+        if (base(factors.get(0)) == null) { // numbers
+            Node product = factors.get(0);
+            for (int i = 1; i < factors.size(); i++) product = new Binary(product, "*", factors.get(i)).simplify();
+            return product;
+        }
+        Node exponent = null;
+        for (Node factor : factors) {
+            Node e = factor instanceof Binary && ((Binary) factor).is("^") ? ((Binary) factor).getRight() : ONE;
+            exponent = exponent == null ? e : new Binary(exponent, "+", e);
+        }
+        return new Binary(base(factors.get(0)), "^", exponent.simplify()).simplify();
+    }
+
+    private static void factors(Node node, ArrayList<Node> factors) {
+        if (node instanceof Binary && ((Binary) node).is("*")) {
+            factors(((Binary) node).getLeft(), factors);
+            factors(((Binary) node).getRight(), factors);
+        } else if (node instanceof Product) {
+            for (Node factor : ((Product) node).getOperands()) factors(factor, factors);
+        } else factors.add(node);
+    }
+
+    /**
+     * @return key shared by like terms, e.g. x^2*y for 3*x*y*x and y*x^2; irregular terms are keyed by their
+     * factors other than numbers, in any order.
+     */
+    static String termKey(Node term) {
+        ArrayList<Node> factors = new ArrayList<>();
+        factors(term, factors);
+        if (isRegular(term, true)) { // monomial, the exponents of each variable are added up
+            TreeMap<String, Double> exponents = new TreeMap<>();
+            for (Node factor : factors) {
+                if (factor instanceof RawValue) continue;
+                double exponent = factor instanceof Binary ? ((Binary) factor).getRight().val() : 1;
+                exponents.merge(base(factor).toString(), exponent, Double::sum);
+            }
+            StringBuilder key = new StringBuilder();
+            exponents.forEach((variable, exponent) -> {
+                if (exponent != 0) key.append(variable).append('^').append(exponent).append('*');
+            });
+            return key.toString();
+        }
+        ArrayList<String> keys = new ArrayList<>();
+        for (Node factor : factors) {
+            if (!(factor instanceof RawValue)) keys.add(key(factor));
+        }
+        Collections.sort(keys);
+        return "(" + String.join("*", keys) + ")";
+    }
+
+    /**
+     * @return base of a factor, e.g. x for x^2 and x; null for numbers, which are like factors of each other.
+     */
+    private static Node base(Node factor) {
+        if (factor instanceof RawValue) return null;
+        if (factor instanceof Binary && ((Binary) factor).is("^")) return ((Binary) factor).getLeft();
+        return factor;
+    }
+
+    /**
+     * @return string representation that does not depend on the parenthesis set by the parent node.
+     */
+    private static String key(Node node) {
+        if (node == null) return "";
+        if (node instanceof Binary) {
+            Binary bin = (Binary) node;
+            return "(" + key(bin.getLeft()) + bin.operator.name + key(bin.getRight()) + ")";
+        }
+        if (node instanceof Unary) return ((Unary) node).getName() + "(" + key(((Unary) node).getOperand()) + ")";
+        return node.toString();
+    }
+
+    /**
+     * A term is regular if it is a product of numbers and powers of variables with numeric exponents, e.g. 3*x*y^2;
+     * a factor is regular if it is a number or such a power, e.g. x^(-1).
+     * Regular terms that collectLikeTerms did not collect cannot be collected at all.
+     *
+     * @param term whether node is a term of a sum rather than a factor of a product
+     */
+    private static boolean isRegular(Node node, boolean term) {
+        if (node instanceof Binary && ((Binary) node).is("*"))
+            return term && isRegular(((Binary) node).getLeft(), true) && isRegular(((Binary) node).getRight(), true);
+        if (node instanceof Product)
+            return term && ((Product) node).getOperands().stream().allMatch(factor -> isRegular(factor, true));
+        if (node instanceof Binary && ((Binary) node).is("^"))
+            return isVariable(((Binary) node).getLeft()) && ((Binary) node).getRight() instanceof RawValue;
+        return node instanceof RawValue || isVariable(node);
+    }
+
+    private static boolean isVariable(Node node) {
+        return node.getClass() == Variable.class || node instanceof Constants.Constant;
+    }
+
     /**
      * reconstruct binary operation tree from flattened ArrayList of operations.
      *
@@ -910,9 +1208,9 @@ public class Binary extends Operation {
         ArrayList<Node> pool = new ArrayList<>();
         if (operator.priority == 1 || !operator.isStandard())
             return pool; //if the operator is ^, then no commutative property applies.
-        this.toAdditionOnly().toExponentialForm();
-        flat(pool, getLeft());
-        flat(pool, getRight());
+        Binary bin = this.toAdditionOnly().toExponentialForm(); // a converted copy if this is frozen
+        flat(pool, bin.getLeft());
+        flat(pool, bin.getRight());
         return pool;
     }
 
@@ -921,14 +1219,18 @@ public class Binary extends Operation {
      * and extracts nodes of the same binary operator priority, making applying commutative properties
      * of + and * possible.
      *
+     * The whole tree is already converted to addition only and exponential form by flattened(), so the chain is
+     * walked directly instead of converting every nested binary operation again.
+     *
      * @param pool pool of flattened binary tree nodes.
      * @param node the binary tree to be flattened
      */
     private void flat(ArrayList<Node> pool, Node node) {
         if (node instanceof Binary) {
             Binary bin = ((Binary) node);
-            if (bin.getPriority() == this.getPriority()) {
-                pool.addAll(bin.flattened());
+            if (bin.getPriority() == this.getPriority() && bin.operator.isStandard()) {
+                flat(pool, bin.getLeft());
+                flat(pool, bin.getRight());
             } else {
                 pool.add(bin);
             }
@@ -963,6 +1265,17 @@ public class Binary extends Operation {
             case "^":
                 if (getRight() instanceof RawValue && ((RawValue) getRight()).isInteger()) {
                     long num = ((RawValue) getRight()).longValue();
+                    if (getLeft() instanceof Product) { // (a*b)^# = a^#*b^#
+                        ArrayList<Node> factors = new ArrayList<>();
+                        for (Node factor : ((Product) getLeft()).getOperands()) factors.add(Operation.exp(factor, num));
+                        return new Product(factors);
+                    } else if (getLeft() instanceof Sum && num >= 2 && num <= Integer.MAX_VALUE) { // (a+b)^# = ...
+                        ArrayList<Node> terms = ((Sum) getLeft()).getOperands();
+                        if (JasContext.current().isMultinomial()) return multinomial(terms, (int) num);
+                        ArrayList<Node> factors = new ArrayList<>();
+                        for (int i = 0; i < num; i++) factors.add(getLeft().copy());
+                        return new Product(factors).expand();
+                    }
                     if (getLeft() instanceof Binary) {
                         Binary bin = ((Binary) getLeft());
                         switch (bin.operator.name) {
@@ -973,6 +1286,7 @@ public class Binary extends Operation {
                                 if (op1.isPresent()) return op1.get();
                                 break;
                             case "+": // (a+b)^# = ...
+                                if (JasContext.current().isMultinomial() && num >= 2 && num <= Integer.MAX_VALUE) return multinomial(bin.flattened(), (int) num);
                                 ArrayList<Node> pool = new ArrayList<>();
                                 for (int i = 0; i < num; i++) {
                                     pool.add(bin.copy());
@@ -1079,6 +1393,22 @@ public class Binary extends Operation {
 
     @Override
     public Node expand() {
+        checkBudget();
+        if (isFrozen()) return transformFrozen(Node::expand);
+        Node expanded = memoized(SimplificationCache.Transformation.EXPAND, this::expandOperation);
+        checkBudget(expanded); // e.g. (a+b+c)^20 could outgrow the budget
+        return expanded;
+    }
+
+    private Node expandOperation() {
+        if (JasContext.current().isPolynomial()) {
+            Polynomial polynomial = Polynomial.from(this);
+            if (polynomial != null) return polynomial.toNode();
+        }
+        if (JasContext.current().isNary()) {
+            Nary nary = Nary.from(this);
+            if (nary != null) return nary.expand();
+        }
         this.toAdditionOnly().toExponentialForm();
         super.expand();
         return expandBase();
@@ -1091,10 +1421,10 @@ public class Binary extends Operation {
     public String coloredString() {
         String left = getLeft().coloredString();
         String right = getRight().coloredString();
-        left = needsParenthesis(getLeft()) ? coloredParenthesis(left) : left;
-        right = needsParenthesis(getRight()) ? coloredParenthesis(right) : right;
+        left = parenthesize(getLeft(), false) ? coloredParenthesis(left) : left;
+        right = parenthesize(getRight(), true) ? coloredParenthesis(right) : right;
         String tmp = left + (Mode.COMPACT ? "" : " ") + color(operator.name, BIN_OP_COLOR) + (Mode.COMPACT ? "" : " ") + right;
-        tmp = omitParenthesis ? tmp : coloredParenthesis(tmp);
+        tmp = omitParenthesis || isFrozen() ? tmp : coloredParenthesis(tmp);
         return tmp;
     }
 
@@ -1125,6 +1455,7 @@ public class Binary extends Operation {
      */
     @Override
     public boolean equals(Node other) {
+        if (this == other || isInternedWith(other)) return this == other;
         if (!(other instanceof Binary)) return false;
         Binary bin = (Binary) other;
         if (operator.equals(bin.operator)) {
@@ -1135,6 +1466,15 @@ public class Binary extends Operation {
         return false;
     }
 
+    /**
+     * operands are ordered first, just as equals(Node) does, such that a*b and b*a have the same hash.
+     */
+    @Override
+    protected int structuralHash() {
+        if (!isOrdered()) order();
+        return 31 * operator.name.hashCode() + super.structuralHash();
+    }
+
     @Override
     public Node replace(Node o, Node r) {
         Node clone = super.replace(o, r);
@@ -1154,16 +1494,20 @@ public class Binary extends Operation {
     }
 
     public static class Operator implements BinEvaluable, Nameable {
-        private static Map<String, Operator> registeredBinOps;
+        private static final Map<String, Operator> builtInBinOps = new HashMap<>();
+        private static JasContext.Key<Map<String, Operator>> BIN_OPS;
+        private static Set<Operator> builtIns;
+        private static volatile Symbols symbols; // operators() of the last registry it was asked for
 
         static {
-            registeredBinOps = new HashMap<>();
             define("+", 3, (a, b) -> a + b);
             define("-", 3, (a, b) -> a - b);
             define("*", 2, (a, b) -> a * b);
             define("/", 2, (a, b) -> a / b);
             define("^", 1, Math::pow);
             define(",", -1, (a, b) -> Double.NaN);
+            builtIns = new HashSet<>(builtInBinOps.values());
+            BIN_OPS = new JasContext.Key<>("binary operators", builtInBinOps);
             if (DEBUG) System.out.println("# reserved binary operations declared");
         }
 
@@ -1179,13 +1523,52 @@ public class Binary extends Operation {
         }
 
         private static void define(String name, int priority, BinEvaluable evaluable) {
-            registeredBinOps.remove(name);
-            registeredBinOps.put(name, new Operator(name, priority, evaluable));
+            Operator operator = new Operator(name, priority, evaluable);
+            if (BIN_OPS == null) { // built-in operators
+                builtInBinOps.put(name, operator);
+                return;
+            }
+            JasContext.current().update(BIN_OPS, operators -> {
+                HashMap<String, Operator> defined = new HashMap<>(operators);
+                defined.put(name, operator);
+                return defined;
+            });
+            Compiler.invalidateCache();
+        }
+
+        /**
+         * @return the binary operators of the current context, which must not be modified
+         */
+        private static Map<String, Operator> registeredBinOps() {
+            return JasContext.current().get(BIN_OPS);
+        }
+
+        /**
+         * @return operators(0) + operators(1) + operators(2) + operators(3), computed once per registry
+         */
+        private static String symbols() {
+            Map<String, Operator> operators = registeredBinOps();
+            Symbols symbols = Operator.symbols;
+            if (symbols == null || symbols.registry != operators) {
+                String listed = listAsString(0) + listAsString(1) + listAsString(2) + listAsString(3);
+                Operator.symbols = symbols = new Symbols(operators, listed);
+            }
+            return symbols.listed;
+        }
+
+        private static final class Symbols {
+            private final Map<String, Operator> registry;
+            private final String listed;
+
+            private Symbols(Map<String, Operator> registry, String listed) {
+                this.registry = registry;
+                this.listed = listed;
+            }
         }
 
         private static String listAsString(int priority) {
             StringBuilder incrementer = new StringBuilder();
-            for (Operator operation : registeredBinOps.values()) {
+            for (Operator operation : registeredBinOps().values()) {
                 if (operation.priority == priority)
                     incrementer.append(operation.name);
             }
@@ -1193,11 +1576,18 @@ public class Binary extends Operation {
         }
 
         private static Operator extract(String name) {
-            Operator bin = registeredBinOps.get(name);
+            Operator bin = registeredBinOps().get(name);
             if (bin == null) throw new RuntimeException("undefined binary operator \"" + name + "\"");
             return bin;
         }
 
+        /**
+         * @return whether the operator is one of the built-in definitions, i.e. it is not user-defined or overridden.
+         */
+        public boolean isBuiltIn() {
+            return builtIns.contains(this);
+        }
+
         @SuppressWarnings("BooleanMethodIsAlwaysInverted")
         private boolean isStandard() {
             return standardOperations.contains(name);
@@ -1,7 +1,9 @@
 package jas.core.operations;
 
 import jas.core.*;
+import jas.core.Compiler;
 import jas.core.components.*;
+import jas.core.rules.Rules;
 
 import java.util.ArrayList;
 import java.util.Optional;
@@ -16,7 +18,8 @@ import static jas.utils.ColorFormatter.color;
  * Custom Operation
  */
 public class Custom extends Operation implements BinLeafNode, Nameable {
-    private static ArrayList<Manipulation> manipulations = new ArrayList<>();
+    private static final ArrayList<Manipulation> builtIns = new ArrayList<>();
+    private static JasContext.Key<Dispatch> MANIPULATIONS;
     private Manipulation manipulation;
 
     static {
@@ -93,15 +96,17 @@ public class Custom extends Operation implements BinLeafNode, Nameable {
             if (operator.length() > 1) throw new JASException("binary operator can only be a single character");
             if (Assets.isSymbol(operator.charAt(0)) || Assets.isValidVarName(operator))
                 throw new JASException("reserved symbol '" + operator + "', choose a different one");
-            Binary.define(operator, (int) priority.val(), (a, b) -> {
-                Node tmp = operation.copy();
-                return tmp.replace(new Variable("a"), new RawValue(a))
-                        .replace(new Variable("b"), new RawValue(b))
-                        .val();
-            });
+            EvalPlan plan = operation.bind(new Variable("a"), new Variable("b"));
+            Binary.define(operator, (int) priority.val(), plan::eval);
             return new Literal("a" + operator + "b = " + operation);
         });
 
+        define("rule", new Signature(LITERAL, LITERAL), operands -> {
+            String pattern = ((Literal) operands.get(0)).get();
+            String replacement = ((Literal) operands.get(1)).get();
+            return new Literal(Rules.define(pattern, replacement).toString());
+        });
+
         define("store", new Signature(LITERAL, ANY), operands -> {
             Variable v = ((Variable) operands.get(0));
             Node o = operands.get(1);
@@ -132,6 +137,7 @@ public class Custom extends Operation implements BinLeafNode, Nameable {
             });
             return new Literal("Deleted: " + toString(removed));
         });
+        MANIPULATIONS = new JasContext.Key<>("custom operations", new Dispatch(builtIns));
     }
 
     private static String toString(ArrayList<Manipulation> manipulations) {
@@ -143,11 +149,20 @@ public class Custom extends Operation implements BinLeafNode, Nameable {
 
 
     public static ArrayList<Manipulation> unregister(String name, Signature signature) {
+        ArrayList<Manipulation> manipulations = registeredManipulations();
         ArrayList<Manipulation> unregistered = new ArrayList<>();
         for (int i = manipulations.size() - 1; i >= 0; i--) {
             Manipulation manipulation = manipulations.get(i);
             if (manipulation.equals(name, signature))
-                unregistered.add(manipulations.remove(i));
+                unregistered.add(manipulation);
+        }
+        if (unregistered.size() > 0) {
+            JasContext.current().update(MANIPULATIONS, registered -> {
+                ArrayList<Manipulation> remaining = new ArrayList<>(registered.list());
+                remaining.removeIf(manipulation -> manipulation.equals(name, signature));
+                return new Dispatch(remaining);
+            });
+            Compiler.invalidateCache();
         }
         return unregistered;
     }
@@ -159,36 +174,31 @@ public class Custom extends Operation implements BinLeafNode, Nameable {
 
     public Custom(String name, ArrayList<Node> operands) {
         super(operands);
-        this.manipulation = resolveManipulation(name, Signature.resolve(operands));
-    }
-
-    private static Manipulation resolveManipulation(String name, Signature signature) {
-        ArrayList<Manipulation> candidates = manipulations.stream()
-                .filter(o -> o.getName().equals(name))
-                .collect(Collectors.toCollection(ArrayList::new));
-        for (Manipulation manipulation : candidates) { //prioritize explicit signatures
-            if (manipulation.getSignature().equals(signature)) {
-                return manipulation;
-            }
-        }
-        for (Manipulation manipulation : candidates) {
-            if (manipulation.getSignature().equals(Signature.ANY)) {
-                return manipulation;
-            }
-        }
-        throw new JASException("cannot resolve operation \"" + name + "\" with signature " + signature);
+        this.manipulation = JasContext.current().get(MANIPULATIONS).resolve(name, operands);
     }
 
+    /**
+     * @return the custom operations of the current context, which must not be modified
+     */
     public static ArrayList<Manipulation> registeredManipulations() {
-        return manipulations;
+        return JasContext.current().get(MANIPULATIONS).list();
     }
 
     public static void define(String name, Signature signature, Manipulable manipulable) {
-        manipulations.add(new Manipulation(name, signature, manipulable));
+        register(new Manipulation(name, signature, manipulable));
     }
 
     public static void register(Manipulation manipulation) {
-        manipulations.add(manipulation);
+        if (MANIPULATIONS == null) { // built-in operations
+            builtIns.add(manipulation);
+            return;
+        }
+        JasContext.current().update(MANIPULATIONS, manipulations -> {
+            ArrayList<Manipulation> registered = new ArrayList<>(manipulations.list());
+            registered.add(manipulation);
+            return new Dispatch(registered);
+        });
+        Compiler.invalidateCache();
     }
 
 
@@ -199,6 +209,13 @@ public class Custom extends Operation implements BinLeafNode, Nameable {
         return getName() + "(" + (args.orElse("")) + ")";
     }
 
+    /**
+     * @return the result of the manipulation performed on the operands, e.g. 2*x for deriv(x^2,x)
+     */
+    public Node manipulate() {
+        return manipulation.manipulate(getOperands());
+    }
+
     public double val() {
         Node node = manipulation.manipulate(getOperands());
         if (node.equals(this)) return Double.NaN;
@@ -215,6 +232,7 @@ public class Custom extends Operation implements BinLeafNode, Nameable {
 
     @Override
     public Node simplify() {
+        if (isFrozen()) return transformFrozen(Node::simplify);
         super.simplify();
         /* special case: when f(x) is defined as f(ANY), the default behavior is to distribute the custom operation
         to each element in the List accordingly, such that define('f',{x},x^2+2x+1), f({a,b}) = {a^2+2a+1,b^2+2b+1}
@@ -247,12 +265,22 @@ public class Custom extends Operation implements BinLeafNode, Nameable {
         return this.simplify().firstDerivative(v);
     }
 
+    @Override
     public Custom copy() {
+        return isFrozen() ? this : thaw();
+    }
+
+    public Custom thaw() {
         return new Custom(getName(), getOperands().stream()
-                .map(Node::copy)
+                .map(Node::thaw)
                 .collect(Collectors.toCollection(ArrayList::new)));
     }
 
+    @Override
+    protected int structuralHash() {
+        return 31 * getName().hashCode() + super.structuralHash();
+    }
+
     public boolean equals(Node o) {
         if (!super.equals(o)) return false;
         if (o instanceof Custom) {
@@ -0,0 +1,55 @@
+package jas.core.operations;
+
+import jas.core.JASException;
+import jas.core.Node;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Index of the custom operations of a context by name and number of arguments, built once whenever the operations
+ * change. Resolves an operation without scanning every registered manipulation: an explicit signature of the same
+ * arity is preferred, then the first signature that accepts ANY arguments, in the order they were registered.
+ * Instances are immutable.
+ */
+final class Dispatch {
+    private final ArrayList<Manipulation> manipulations;
+    private final HashMap<String, HashMap<Integer, ArrayList<Manipulation>>> explicit = new HashMap<>();
+    private final HashMap<String, Manipulation> fallback = new HashMap<>();
+
+    Dispatch(ArrayList<Manipulation> manipulations) {
+        this.manipulations = manipulations;
+        for (Manipulation manipulation : manipulations) {
+            int arity = manipulation.getSignature().arity();
+            explicit.computeIfAbsent(manipulation.getName(), name -> new HashMap<>())
+                    .computeIfAbsent(arity, n -> new ArrayList<>())
+                    .add(manipulation);
+            if (arity == 0) fallback.putIfAbsent(manipulation.getName(), manipulation);
+        }
+    }
+
+    /**
+     * @return the registered manipulations, which must not be modified
+     */
+    ArrayList<Manipulation> list() {
+        return manipulations;
+    }
+
+    /**
+     * the argument type of an operand is only resolved when a candidate signature constrains it.
+     */
+    Manipulation resolve(String name, ArrayList<Node> operands) {
+        HashMap<Integer, ArrayList<Manipulation>> byArity = explicit.get(name);
+        ArrayList<Manipulation> candidates = byArity == null ? null : byArity.get(operands.size());
+        if (candidates != null) {
+            Argument[] resolved = new Argument[operands.size()];
+            for (Manipulation manipulation : candidates) { //prioritize explicit signatures
+                if (manipulation.getSignature().matches(operands, resolved))
+                    return manipulation;
+            }
+        }
+        Manipulation manipulation = fallback.get(name);
+        if (manipulation != null) return manipulation;
+        throw new JASException("cannot resolve operation \"" + name + "\" with signature " + Signature.resolve(operands));
+    }
+}
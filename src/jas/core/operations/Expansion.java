@@ -0,0 +1,262 @@
+package jas.core.operations;
+
+import jas.core.JASException;
+import jas.core.JasContext;
+import jas.core.Node;
+import jas.core.components.RawValue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Expansion as a stream of terms: the sums, products and positive integer powers of sums of an expression are
+ * multiplied out one term at a time, so that the terms are never held all at once. Every term is a product of the
+ * operands that are not sums, products or powers of those, e.g. the 4 terms of (a+b)*(c+sin(x)) are a*c, a*sin(x),
+ * b*c and b*sin(x). The operands are expanded and frozen up front; each term is a new modifiable tree.
+ * <p>
+ * The terms are numbered, so the stream splits evenly and could be consumed in parallel. likeTerms() adds them up,
+ * keeping one entry per distinct term; memory thus grows with the number of distinct terms rather than with the
+ * number of raw terms, e.g. 231 entries for the 3^20 terms of (x+y+z)^20.
+ * e.g. Compiler.compile("(a+b+c)^3*(x-y)").expandStream().parallel().collect(Expansion.likeTerms())
+ */
+public final class Expansion {
+    private Expansion() {
+    }
+
+    /**
+     * @param node the expression, which is not modified
+     * @return the terms of the expansion of node; their sum equals node.expand()
+     * @throws JASException if there are 2^63 terms or more
+     */
+    public static Stream<Node> terms(Node node) {
+        Source source = source(node.copy().toAdditionOnly().toExponentialForm());
+        return StreamSupport.stream(new Terms(source, 0, source.size), false);
+    }
+
+    /**
+     * adds up like terms as they come, e.g. 3*x and 2*x*1 into 5*x. The terms are simplified in the context of the
+     * thread that created the collector, on whichever thread consumes them.
+     *
+     * @return collector of the sum, 0 if there are no terms or they cancel out
+     */
+    public static Collector<Node, ?, Node> likeTerms() {
+        JasContext context = JasContext.current();
+        return Collector.of(() -> new LikeTerms(context), LikeTerms::add, LikeTerms::merge, LikeTerms::sum);
+    }
+
+    private static Source source(Node node) {
+        if (node instanceof Binary) {
+            Binary bin = (Binary) node;
+            if (bin.is("+")) return new Sum(source(bin.getLeft()), source(bin.getRight()));
+            if (bin.is("*")) return new Product(source(bin.getLeft()), source(bin.getRight()));
+            if (bin.is("^") && bin.getRight() instanceof RawValue && ((RawValue) bin.getRight()).isInteger()) {
+                double n = bin.getRight().val();
+                Source base = source(bin.getLeft());
+                if (n >= 2 && n <= Integer.MAX_VALUE && base.size > 1) return new Power(base, (int) n);
+            }
+        }
+        return new Factor(node.expand().freeze());
+    }
+
+    /**
+     * numbered terms of a subexpression.
+     */
+    private static abstract class Source {
+        final long size;
+
+        Source(long size) {
+            this.size = size;
+        }
+
+        /**
+         * @param index from 0 to size - 1
+         * @return a new modifiable tree
+         */
+        abstract Node term(long index);
+
+        static long add(long a, long b) {
+            try {
+                return Math.addExact(a, b);
+            } catch (ArithmeticException e) {
+                throw new JASException("expansion has too many terms to be streamed");
+            }
+        }
+
+        static long multiply(long a, long b) {
+            try {
+                return Math.multiplyExact(a, b);
+            } catch (ArithmeticException e) {
+                throw new JASException("expansion has too many terms to be streamed");
+            }
+        }
+    }
+
+    private static final class Factor extends Source {
+        private final Node node; // frozen
+
+        private Factor(Node node) {
+            super(1);
+            this.node = node;
+        }
+
+        @Override
+        Node term(long index) {
+            return node.thaw();
+        }
+    }
+
+    private static final class Sum extends Source {
+        private final Source left, right;
+
+        private Sum(Source left, Source right) {
+            super(add(left.size, right.size));
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Node term(long index) {
+            return index < left.size ? left.term(index) : right.term(index - left.size);
+        }
+    }
+
+    private static final class Product extends Source {
+        private final Source left, right;
+
+        private Product(Source left, Source right) {
+            super(multiply(left.size, right.size));
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Node term(long index) {
+            return new Binary(left.term(index / right.size), "*", right.term(index % right.size));
+        }
+    }
+
+    /**
+     * base^n, every term being a product of n terms of the base.
+     */
+    private static final class Power extends Source {
+        private final Source base;
+        private final int n;
+
+        private Power(Source base, int n) {
+            super(power(base.size, n));
+            this.base = base;
+            this.n = n;
+        }
+
+        private static long power(long size, int n) {
+            long power = 1;
+            for (int i = 0; i < n; i++) power = multiply(power, size);
+            return power;
+        }
+
+        @Override
+        Node term(long index) {
+            Node term = base.term(index % base.size);
+            for (int i = 1; i < n; i++) {
+                index /= base.size;
+                term = new Binary(term, "*", base.term(index % base.size));
+            }
+            return term;
+        }
+    }
+
+    /**
+     * terms from index to end - 1; splits in halves.
+     */
+    private static final class Terms implements Spliterator<Node> {
+        private final Source source;
+        private long index;
+        private final long end;
+
+        private Terms(Source source, long index, long end) {
+            this.source = source;
+            this.index = index;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Node> action) {
+            if (index >= end) return false;
+            action.accept(source.term(index++));
+            return true;
+        }
+
+        @Override
+        public Spliterator<Node> trySplit() {
+            long mid = index + (end - index) / 2;
+            if (mid == index) return null;
+            Terms prefix = new Terms(source, index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+    }
+
+    /**
+     * sum of terms with one entry per distinct term, keyed like the like terms of Binary::simplify.
+     */
+    static final class LikeTerms {
+        private final JasContext context;
+        private final LinkedHashMap<String, Node> terms = new LinkedHashMap<>();
+
+        LikeTerms(JasContext context) {
+            this.context = context;
+        }
+
+        void add(Node term) {
+            if (JasContext.current() != context) {
+                context.run(() -> add(term));
+                return;
+            }
+            Node simplified = term.simplify();
+            if (simplified.equals(RawValue.ZERO)) return;
+            collect(simplified);
+        }
+
+        /**
+         * @param term already simplified
+         */
+        private void collect(Node term) {
+            String key = Binary.termKey(term);
+            Node like = terms.get(key);
+            if (like != null) term = Binary.collectTerms(new ArrayList<>(Arrays.asList(like, term)));
+            if (term == null) terms.remove(key); // cancelled out
+            else terms.put(key, term); // in place of the first like term
+        }
+
+        LikeTerms merge(LikeTerms other) {
+            if (JasContext.current() != context) return context.call(() -> merge(other));
+            other.terms.values().forEach(this::collect);
+            return this;
+        }
+
+        Node sum() {
+            if (terms.isEmpty()) return new RawValue(0);
+            Iterator<Node> iterator = terms.values().iterator();
+            Node sum = iterator.next();
+            while (iterator.hasNext()) sum = new Binary(sum, "+", iterator.next());
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package jas.core.operations;
+
+import jas.core.Node;
+import jas.core.SimplificationCache;
+import jas.core.StructuralOrder;
+import jas.core.components.List;
+import jas.core.components.RawValue;
+
+import java.util.ArrayList;
+
+import static jas.core.Mode.*;
+import static jas.core.components.RawValue.UNDEF;
+import static jas.utils.ColorFormatter.color;
+
+/**
+ * Abstract parent of Sum and Product, which hold all of the terms or factors of a chain of + and - or * and / in a
+ * single list instead of a binary tree, e.g. a+b-c is Sum[a, b, (-1)*c] rather than (a+b)-c.
+ * Simplified operands are flattened, such that no operand is of the same kind as its parent, and kept in
+ * StructuralOrder; like terms and like factors are collected in a single pass by hashing.
+ * <p>
+ * Binary chains are converted to these nodes by simplify(), expand() and firstDerivative() when
+ * JasContext.isNary() is on; beautify() converts them back.
+ */
+public abstract class Nary extends Operation {
+
+    Nary(ArrayList<Node> operands) {
+        super(operands);
+    }
+
+    /**
+     * @return Sum or Product of the chain of + and - or * and / that bin is the root of, or null if bin is another
+     * operation, an operation on two numbers, which Binary computes, or the chain has a list as an operand, which
+     * is combined elementwise by Binary instead.
+     */
+    static Nary from(Binary bin) {
+        if (!(bin.is("+") || bin.is("-") || bin.is("*") || bin.is("/")) || hasList(bin, bin.getPriority()))
+            return null;
+        if (bin.getLeft() instanceof RawValue && bin.getRight() instanceof RawValue) return null;
+        ArrayList<Node> operands = new ArrayList<>();
+        Nary nary = bin.getPriority() == 3 ? new Sum(operands) : new Product(operands);
+        nary.flatten(bin, operands);
+        return nary;
+    }
+
+    private static boolean hasList(Node node, int priority) {
+        if (node instanceof List) return true;
+        if (!(node instanceof Binary)) return false;
+        Binary bin = (Binary) node;
+        if (!(priority == 3 ? bin.is("+") || bin.is("-") : bin.is("*") || bin.is("/"))) return false;
+        return hasList(bin.getLeft(), priority) || hasList(bin.getRight(), priority);
+    }
+
+    /**
+     * adds the terms of a sum or the factors of a product to operands, e.g. [a, (-1)*b] for a-b as a term
+     */
+    abstract void flatten(Node node, ArrayList<Node> operands);
+
+    /**
+     * @param operands simplified and flattened, without lists
+     * @return like terms or like factors collected, numbers folded into one
+     */
+    abstract ArrayList<Node> collect(ArrayList<Node> operands);
+
+    /**
+     * @return 0 for Sum, 1 for Product
+     */
+    abstract RawValue identity();
+
+    abstract double eval(double a, double b);
+
+    /**
+     * @return same priority as the corresponding binary operator, 3 for Sum and 2 for Product
+     */
+    public abstract int getPriority();
+
+    /**
+     * @return binary tree of the operands, e.g. (a+b)+c for Sum[a, b, c]; the operands are not copied
+     */
+    Node toBinary() {
+        ArrayList<Node> operands = getOperands();
+        if (operands.isEmpty()) return identity();
+        Node bin = operands.get(0);
+        for (int i = 1; i < operands.size(); i++) bin = new Binary(bin, getName(), operands.get(i));
+        return bin;
+    }
+
+    @Override
+    public double eval(double x) {
+        double result = identity().doubleValue();
+        for (Node operand : getOperands()) result = eval(result, operand.eval(x));
+        return result;
+    }
+
+    @Override
+    public double val() {
+        return cachedVal(() -> {
+            double result = identity().doubleValue();
+            for (Node operand : getOperands()) result = eval(result, operand.val());
+            return result;
+        });
+    }
+
+    @Override
+    public Node simplify() {
+        checkBudget();
+        if (isFrozen()) return transformFrozen(Node::simplify);
+        return memoized(SimplificationCache.Transformation.SIMPLIFY, this::simplifyOperation);
+    }
+
+    private Node simplifyOperation() {
+        ArrayList<Node> operands = new ArrayList<>();
+        for (Node operand : getOperands()) flatten(operand, operands);
+        setOperands(operands);
+        super.simplify();
+        operands = new ArrayList<>();
+        for (Node operand : getOperands()) flatten(operand, operands); // e.g. a+(b+c) once b+c is a Sum
+        setOperands(operands);
+        if (operands.stream().anyMatch(operand -> operand instanceof List)) return toBinary().simplify();
+        if (isUndefined()) return UNDEF;
+        operands = collect(operands);
+        if (operands.isEmpty()) return identity();
+        if (operands.size() == 1) return operands.get(0);
+        operands.sort(StructuralOrder.INSTANCE);
+        setOperands(operands);
+        setOrdered(true);
+        return this;
+    }
+
+    /**
+     * @return binary tree of the beautified operands, e.g. a-b for Sum[a, (-1)*b]
+     */
+    @Override
+    public Node beautify() {
+        if (isFrozen()) return transformFrozen(Node::beautify);
+        return toBinary().beautify();
+    }
+
+    @Override
+    public Node expand() {
+        checkBudget();
+        if (isFrozen()) return transformFrozen(Node::expand);
+        Node expanded = memoized(SimplificationCache.Transformation.EXPAND, this::expandOperation);
+        checkBudget(expanded);
+        return expanded;
+    }
+
+    /**
+     * @return expanded self, the operands are already expanded and flattened
+     */
+    abstract Node expandFlattened();
+
+    private Node expandOperation() {
+        super.expand();
+        ArrayList<Node> operands = new ArrayList<>();
+        for (Node operand : getOperands()) flatten(operand, operands);
+        setOperands(operands);
+        return expandFlattened();
+    }
+
+    /**
+     * operands are sorted with StructuralOrder regardless of JasContext.isStructuralOrder(), as they have no
+     * meaningful order of their own.
+     */
+    @Override
+    public void order() {
+        if (isFrozen()) return;
+        super.order();
+        getOperands().sort(StructuralOrder.INSTANCE);
+        setOrdered(true);
+    }
+
+    @Override
+    public boolean equals(Node other) {
+        if (this == other || isInternedWith(other)) return this == other;
+        if (other == null || other.getClass() != getClass()) return false;
+        Nary nary = (Nary) other;
+        if (!nary.isOrdered()) nary.order();
+        if (!isOrdered()) order();
+        return super.equals(nary);
+    }
+
+    @Override
+    protected int structuralHash() {
+        if (!isOrdered()) order();
+        return 37 * getName().hashCode() + super.structuralHash();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        ArrayList<Node> operands = getOperands();
+        for (int i = 0; i < operands.size(); i++) {
+            if (i > 0) builder.append(COMPACT ? "" : " ").append(getName()).append(COMPACT ? "" : " ");
+            Node operand = operands.get(i);
+            builder.append(parenthesize(operand) ? "(" + operand + ")" : operand.toString());
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public String coloredString() {
+        StringBuilder builder = new StringBuilder();
+        ArrayList<Node> operands = getOperands();
+        for (int i = 0; i < operands.size(); i++) {
+            if (i > 0) builder.append(COMPACT ? "" : " ").append(color(getName(), BIN_OP_COLOR)).append(COMPACT ? "" : " ");
+            Node operand = operands.get(i);
+            builder.append(parenthesize(operand) ? coloredParenthesis(operand.coloredString()) : operand.coloredString());
+        }
+        return builder.toString();
+    }
+
+    private boolean parenthesize(Node operand) {
+        if (operand instanceof RawValue) return operand.val() < 0;
+        if (operand instanceof Binary) { // unless it encloses itself in parenthesis
+            Binary bin = (Binary) operand;
+            return bin.getPriority() > getPriority() && (bin.isOmitParenthesis() || bin.isFrozen());
+        }
+        return operand instanceof Nary && ((Nary) operand).getPriority() > getPriority();
+    }
+
+    @Override
+    public abstract Nary thaw();
+
+    @Override
+    public Nary copy() {
+        return isFrozen() ? this : thaw();
+    }
+}
@@ -3,6 +3,7 @@ package jas.core.operations;
 import jas.core.JASException;
 import jas.core.Nameable;
 import jas.core.Node;
+import jas.core.Parallel;
 import jas.core.components.Fraction;
 import jas.core.components.RawValue;
 
@@ -102,6 +103,7 @@ public abstract class Operation extends Node implements Nameable {
     }
 
     public Operation setOperands(ArrayList<Node> operands) {
+        checkModifiable();
         this.operands = operands;
         isOrdered = false;
         return this;
@@ -115,6 +117,7 @@ public abstract class Operation extends Node implements Nameable {
      * @return this
      */
     public Operation setOperand(Node operand, int idx) {
+        checkModifiable();
         operands.set(idx, operand);
         isOrdered = false;
         return this;
@@ -128,7 +131,12 @@ public abstract class Operation extends Node implements Nameable {
         return operands.get(idx);
     }
 
-    public abstract Operation copy();
+    public abstract Operation thaw();
+
+    @Override
+    public Operation copy() {
+        return isFrozen() ? this : thaw();
+    }
 
     /**
      * post operation: the operation itself is modified
@@ -136,9 +144,10 @@ public abstract class Operation extends Node implements Nameable {
      * @return modified self.
      */
     public Node simplify() {
-        operands = operands.stream()
-                .map(Node::simplify)
-                .collect(Collectors.toCollection(ArrayList::new));
+        checkBudget();
+        if (isFrozen()) return transformFrozen(Node::simplify);
+        modified();
+        operands = Parallel.map(operands, Node::simplify);
         return this;
     }
 
@@ -151,9 +160,9 @@ public abstract class Operation extends Node implements Nameable {
      * @return beautified version of the original
      */
     public Node beautify() {
-        operands = operands.stream()
-                .map(Node::beautify)
-                .collect(Collectors.toCollection(ArrayList::new));
+        if (isFrozen()) return transformFrozen(Node::beautify);
+        modified();
+        operands = Parallel.map(operands, Node::beautify);
         return this;
     }
 
@@ -164,11 +173,14 @@ public abstract class Operation extends Node implements Nameable {
      * @return a new Node instance that is the addition only form of self.
      */
     public Operation toAdditionOnly() {
-        operands.forEach(Node::toAdditionOnly);
+        if (isFrozen()) return (Operation) transformFrozen(Node::toAdditionOnly);
+        modified();
+        operands.replaceAll(Node::toAdditionOnly); // frozen operands are replaced
         return this;
     }
 
     public Node explicitNegativeForm() {
+        if (isFrozen()) return transformFrozen(Node::explicitNegativeForm);
         Operation clone = this.copy();
         clone.setOperands(this.operands.stream()
                 .map(Node::explicitNegativeForm)
@@ -183,16 +195,20 @@ public abstract class Operation extends Node implements Nameable {
      * @return exponential form of self
      */
     public Node toExponentialForm() {
-        operands.forEach(Node::toExponentialForm);
+        if (isFrozen()) return transformFrozen(Node::toExponentialForm);
+        modified();
+        operands.replaceAll(Node::toExponentialForm);
         return this;
     }
 
     public int numNodes() {
-        Optional<Integer> nodes = operands.stream()
-                .map(Node::numNodes)
-                .reduce((a, b) -> a + b);
-        if (!nodes.isPresent()) throw new JASException("empty nodes");
-        return 1 + nodes.get();
+        return cachedNumNodes(() -> {
+            Optional<Integer> nodes = operands.stream()
+                    .map(Node::numNodes)
+                    .reduce((a, b) -> a + b);
+            if (!nodes.isPresent()) throw new JASException("empty nodes");
+            return 1 + nodes.get();
+        });
     }
 
     public int levelOf(Node o) {
@@ -207,9 +223,10 @@ public abstract class Operation extends Node implements Nameable {
     }
 
     public Node expand() {
-        operands = operands.stream()
-                .map(Node::expand)
-                .collect(Collectors.toCollection(ArrayList::new));
+        checkBudget();
+        if (isFrozen()) return transformFrozen(Node::expand);
+        modified();
+        operands = Parallel.map(operands, Node::expand);
         return this;
     }
 
@@ -223,6 +240,7 @@ public abstract class Operation extends Node implements Nameable {
 
     public Node replace(Node o, Node r) {
         if (this.equals(o)) return r;
+        if (isFrozen()) return transformFrozen(node -> node.replace(o, r));
         Operation clone = this.copy();
         clone.setOperands(operands.stream()
                 .map(op -> op.replace(o, r))
@@ -232,12 +250,13 @@ public abstract class Operation extends Node implements Nameable {
 
     @SuppressWarnings("OptionalGetWithoutIsPresent")
     public int complexity() {
-        return operands.stream()
+        return cachedComplexity(() -> operands.stream()
                 .map(Node::complexity)
-                .reduce((a, b) -> a + b).get() + 1;
+                .reduce((a, b) -> a + b).get() + 1);
     }
 
     public boolean equals(Node other) {
+        if (this == other || isInternedWith(other)) return this == other;
         if (!(other instanceof Operation)) return false;
         Operation op = ((Operation) other);
         if (op.getOperands().size() != this.getOperands().size()) return false;
@@ -251,6 +270,11 @@ public abstract class Operation extends Node implements Nameable {
     }
 
     @SuppressWarnings("SameParameterValue")
+    @Override
+    protected int structuralHash() {
+        return operands.hashCode();
+    }
+
     void setOrdered(boolean b) {
         isOrdered = b;
     }
@@ -265,6 +289,7 @@ public abstract class Operation extends Node implements Nameable {
      * e.g. c*b*3*a would be reordered to something like 3*a*c*b
      */
     public void order() {
+        if (isFrozen()) return;
         operands.forEach(o -> {
             o.order();
             if (o instanceof Operation)
@@ -0,0 +1,218 @@
+package jas.core.operations;
+
+import jas.core.Node;
+import jas.core.components.RawValue;
+import jas.core.components.Variable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * n-ary multiplication, e.g. Product[3, x, y^2] for 3*x*y^2, see Nary.
+ * Once simplified, the numeric coefficient, if any, is the first factor.
+ */
+public class Product extends Nary {
+
+    public Product(ArrayList<Node> factors) {
+        super(factors);
+    }
+
+    public Product(Node... factors) {
+        this(wrap(factors));
+    }
+
+    /**
+     * @param coefficient a number
+     * @param rest        simplified, without a coefficient of its own
+     * @return coefficient*rest, already in canonical order
+     */
+    static Node withCoefficient(Node coefficient, Node rest) {
+        if (coefficient.val() == 1) return rest;
+        ArrayList<Node> factors = new ArrayList<>();
+        factors.add(coefficient);
+        if (rest instanceof Product) factors.addAll(((Product) rest).getOperands());
+        else factors.add(rest);
+        Product product = new Product(factors);
+        product.setOrdered(true);
+        return product;
+    }
+
+    /**
+     * @return the numeric coefficient of this simplified product, e.g. 3 for 3*x*y, 1 if there is none
+     */
+    Node coefficient() {
+        Node first = getOperand(0);
+        return first instanceof RawValue ? first : new RawValue(1);
+    }
+
+    /**
+     * @return this simplified product without its numeric coefficient, e.g. x*y for 3*x*y
+     */
+    Node withoutCoefficient() {
+        ArrayList<Node> factors = getOperands();
+        if (!(factors.get(0) instanceof RawValue)) return this;
+        if (factors.size() == 2) return factors.get(1);
+        Product product = new Product(new ArrayList<>(factors.subList(1, factors.size())));
+        product.setOrdered(true);
+        return product;
+    }
+
+    /**
+     * e.g. [a, b^(-1), c] for a/(b/c)
+     */
+    @Override
+    void flatten(Node node, ArrayList<Node> factors) {
+        if (node instanceof Product) {
+            for (Node factor : ((Product) node).getOperands()) flatten(factor, factors);
+        } else if (node instanceof Binary && (((Binary) node).is("*") || ((Binary) node).is("/"))) {
+            Binary bin = (Binary) node;
+            flatten(bin.getLeft(), factors);
+            if (bin.is("*")) {
+                flatten(bin.getRight(), factors);
+            } else {
+                ArrayList<Node> divisors = new ArrayList<>();
+                flatten(bin.getRight(), divisors);
+                for (Node divisor : divisors) factors.add(new Binary(divisor, "^", new RawValue(-1)));
+            }
+        } else {
+            factors.add(node);
+        }
+    }
+
+    /**
+     * like factors are keyed by their base, e.g. x for both x^2 and x, and their exponents added up;
+     * numbers are multiplied into a single coefficient, and 0 absorbs the whole product.
+     */
+    @Override
+    ArrayList<Node> collect(ArrayList<Node> factors) {
+        Node coefficient = null;
+        LinkedHashMap<Node, ArrayList<Node>> groups = new LinkedHashMap<>();
+        for (Node factor : factors) {
+            checkBudget();
+            if (factor instanceof RawValue) coefficient = multiply(coefficient, factor);
+            else groups.computeIfAbsent(base(factor), k -> new ArrayList<>()).add(factor);
+        }
+        ArrayList<Node> collected = new ArrayList<>();
+        for (Map.Entry<Node, ArrayList<Node>> entry : groups.entrySet()) {
+            ArrayList<Node> group = entry.getValue();
+            Node power = group.size() == 1 ? group.get(0) : power(entry.getKey(), group);
+            if (power instanceof RawValue) {
+                coefficient = multiply(coefficient, power); // e.g. x^0, 2^(1/2)*2^(1/2)
+            } else if (power instanceof Product) {
+                for (Node factor : ((Product) power).getOperands()) {
+                    if (factor instanceof RawValue) coefficient = multiply(coefficient, factor);
+                    else collected.add(factor);
+                }
+            } else {
+                collected.add(power);
+            }
+        }
+        if (coefficient != null && coefficient.val() == 0) {
+            collected.clear();
+            collected.add(coefficient);
+        } else if (coefficient != null && (coefficient.val() != 1 || collected.isEmpty())) {
+            collected.add(0, coefficient);
+        }
+        return collected;
+    }
+
+    private static Node multiply(Node coefficient, Node factor) {
+        return coefficient == null ? factor : new Binary(coefficient, "*", factor).simplify();
+    }
+
+    /**
+     * @return e.g. x for x^2 and x
+     */
+    private static Node base(Node factor) {
+        return factor instanceof Binary && ((Binary) factor).is("^") ? ((Binary) factor).getLeft() : factor;
+    }
+
+    /**
+     * @return e.g. x^5 for [x^2, x^3]
+     */
+    private static Node power(Node base, ArrayList<Node> factors) {
+        ArrayList<Node> exponents = new ArrayList<>();
+        for (Node factor : factors)
+            exponents.add(factor instanceof Binary && ((Binary) factor).is("^") ? ((Binary) factor).getRight() : new RawValue(1));
+        return new Binary(base, "^", new Sum(exponents).simplify()).simplify();
+    }
+
+    /**
+     * distributes over the sums among the factors, e.g. a*c+a*d+b*c+b*d for (a+b)*(c+d)
+     */
+    @Override
+    Node expandFlattened() {
+        ArrayList<ArrayList<Node>> products = new ArrayList<>();
+        products.add(new ArrayList<>());
+        for (Node factor : getOperands()) {
+            checkBudget();
+            if (factor instanceof Sum) {
+                ArrayList<ArrayList<Node>> distributed = new ArrayList<>();
+                for (ArrayList<Node> product : products) {
+                    for (Node term : ((Sum) factor).getOperands()) {
+                        ArrayList<Node> p = new ArrayList<>(product);
+                        p.add(term);
+                        distributed.add(p);
+                    }
+                }
+                products = distributed;
+            } else {
+                for (ArrayList<Node> product : products) product.add(factor);
+            }
+        }
+        ArrayList<Node> factors = getOperands();
+        if (products.size() == 1) return factors.isEmpty() ? identity() : factors.size() == 1 ? factors.get(0) : this;
+        ArrayList<Node> terms = new ArrayList<>();
+        for (ArrayList<Node> product : products) {
+            product.replaceAll(Node::copy); // factors are shared between the terms otherwise
+            terms.add(new Product(product));
+        }
+        return new Sum(terms);
+    }
+
+    @Override
+    RawValue identity() {
+        return new RawValue(1);
+    }
+
+    @Override
+    double eval(double a, double b) {
+        return a * b;
+    }
+
+    @Override
+    public int getPriority() {
+        return 2;
+    }
+
+    @Override
+    public String getName() {
+        return "*";
+    }
+
+    /**
+     * applies the product rule, e.g. f'*g*h + f*g'*h + f*g*h' for f*g*h; factors without v are constant.
+     */
+    @Override
+    public Node firstDerivative(Variable v) {
+        checkBudget();
+        ArrayList<Node> factors = getOperands();
+        ArrayList<Node> terms = new ArrayList<>();
+        for (int i = 0; i < factors.size(); i++) {
+            if (!factors.get(i).contains(v)) continue;
+            ArrayList<Node> product = new ArrayList<>();
+            for (int k = 0; k < factors.size(); k++)
+                product.add(k == i ? derivativeOf(factors.get(k), v) : factors.get(k).copy());
+            terms.add(new Product(product));
+        }
+        return terms.isEmpty() ? new RawValue(0) : new Sum(terms);
+    }
+
+    @Override
+    public Product thaw() {
+        ArrayList<Node> factors = new ArrayList<>();
+        for (Node factor : getOperands()) factors.add(factor.thaw());
+        return new Product(factors);
+    }
+}
@@ -39,6 +39,25 @@ public class Signature {
         return true;
     }
 
+    int arity() {
+        return args.length;
+    }
+
+    /**
+     * same as equals(resolve(operands)), except that only the operands whose argument type matters are resolved.
+     *
+     * @param resolved argument types of the operands resolved so far, filled in as needed
+     */
+    boolean matches(ArrayList<Node> operands, Argument[] resolved) {
+        if (args.length != operands.size()) return false;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] == Argument.ANY) continue;
+            if (resolved[i] == null) resolved[i] = Argument.resolve(operands.get(i));
+            if (!args[i].equals(resolved[i])) return false;
+        }
+        return true;
+    }
+
     static Signature resolve(ArrayList<Node> args) {
         return new Signature(args.stream()
                 .map(Argument::resolve)
@@ -0,0 +1,120 @@
+package jas.core.operations;
+
+import jas.core.Node;
+import jas.core.components.RawValue;
+import jas.core.components.Variable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * n-ary addition, e.g. Sum[3, x, 2*y] for 3+x+2*y, see Nary.
+ */
+public class Sum extends Nary {
+
+    public Sum(ArrayList<Node> terms) {
+        super(terms);
+    }
+
+    public Sum(Node... terms) {
+        this(wrap(terms));
+    }
+
+    /**
+     * e.g. [a, (-1)*b, c] for a-(b-c)
+     */
+    @Override
+    void flatten(Node node, ArrayList<Node> terms) {
+        if (node instanceof Sum) {
+            for (Node term : ((Sum) node).getOperands()) flatten(term, terms);
+        } else if (node instanceof Binary && (((Binary) node).is("+") || ((Binary) node).is("-"))) {
+            Binary bin = (Binary) node;
+            flatten(bin.getLeft(), terms);
+            if (bin.is("+")) {
+                flatten(bin.getRight(), terms);
+            } else {
+                ArrayList<Node> subtracted = new ArrayList<>();
+                flatten(bin.getRight(), subtracted);
+                for (Node term : subtracted) terms.add(new Product(new RawValue(-1), term));
+            }
+        } else {
+            terms.add(node);
+        }
+    }
+
+    /**
+     * like terms are keyed by the term without its numeric coefficient, e.g. x*y for both 3*x*y and y*x;
+     * numbers are added up into a single constant term.
+     */
+    @Override
+    ArrayList<Node> collect(ArrayList<Node> terms) {
+        Node constant = null;
+        LinkedHashMap<Node, ArrayList<Node>> groups = new LinkedHashMap<>();
+        for (Node term : terms) {
+            checkBudget();
+            if (term instanceof RawValue) {
+                constant = constant == null ? term : new Binary(constant, "+", term).simplify();
+            } else {
+                Node key = term instanceof Product ? ((Product) term).withoutCoefficient() : term;
+                groups.computeIfAbsent(key, k -> new ArrayList<>()).add(term);
+            }
+        }
+        ArrayList<Node> collected = new ArrayList<>();
+        groups.forEach((rest, group) -> {
+            if (group.size() == 1) {
+                collected.add(group.get(0));
+                return;
+            }
+            Node coefficient = null;
+            for (Node term : group) {
+                Node c = term instanceof Product ? ((Product) term).coefficient() : new RawValue(1);
+                coefficient = coefficient == null ? c : new Binary(coefficient, "+", c).simplify();
+            }
+            if (coefficient.val() != 0) collected.add(Product.withCoefficient(coefficient, rest));
+        });
+        if (constant != null && (constant.val() != 0 || collected.isEmpty())) collected.add(constant);
+        return collected;
+    }
+
+    @Override
+    Node expandFlattened() {
+        ArrayList<Node> terms = getOperands();
+        if (terms.isEmpty()) return identity();
+        return terms.size() == 1 ? terms.get(0) : this;
+    }
+
+    @Override
+    RawValue identity() {
+        return new RawValue(0);
+    }
+
+    @Override
+    double eval(double a, double b) {
+        return a + b;
+    }
+
+    @Override
+    public int getPriority() {
+        return 3;
+    }
+
+    @Override
+    public String getName() {
+        return "+";
+    }
+
+    @Override
+    public Node firstDerivative(Variable v) {
+        checkBudget();
+        ArrayList<Node> derivatives = new ArrayList<>();
+        for (Node term : getOperands()) derivatives.add(derivativeOf(term, v));
+        return new Sum(derivatives);
+    }
+
+    @Override
+    public Sum thaw() {
+        ArrayList<Node> terms = new ArrayList<>();
+        for (Node term : getOperands()) terms.add(term.thaw());
+        return new Sum(terms);
+    }
+}
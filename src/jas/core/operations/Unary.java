@@ -8,13 +8,16 @@ import jas.core.components.Constants;
 import jas.core.components.List;
 import jas.core.components.RawValue;
 import jas.core.components.Variable;
+import jas.core.rules.Rules;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import static jas.MathContext.*;
 import static jas.core.Mode.*;
@@ -68,11 +71,7 @@ public class Unary extends Operation implements BinLeafNode {
     }
 
     public static boolean isDefined(String name) {
-        for (Function function : registeredOperations()) {
-            if (function.getName().equals(name))
-                return true;
-        }
-        return false;
+        return Definitions.functions().containsKey(name);
     }
 
     /**
@@ -83,9 +82,21 @@ public class Unary extends Operation implements BinLeafNode {
         return operation.eval(getOperand().eval(x));
     }
 
+    @Override
+    public void evalBatch(double[] xs, double[] out, int from, int to) {
+        getOperand().evalBatch(xs, out, from, to);
+        for (int i = from; i < to; i++)
+            out[i] = operation.eval(out[i]);
+    }
+
     @Override
     public Unary copy() {
-        return new Unary(getOperand().copy(), operation);
+        return isFrozen() ? this : thaw();
+    }
+
+    @Override
+    public Unary thaw() {
+        return new Unary(getOperand().thaw(), operation);
     }
 
     /**
@@ -97,6 +108,12 @@ public class Unary extends Operation implements BinLeafNode {
      */
     @Override
     public Node simplify() {
+        checkBudget();
+        if (isFrozen()) return transformFrozen(Node::simplify);
+        return memoized(SimplificationCache.Transformation.SIMPLIFY, this::simplifyOperation);
+    }
+
+    private Node simplifyOperation() {
         super.simplify();
 
         if (getOperand() instanceof List) {
@@ -109,46 +126,10 @@ public class Unary extends Operation implements BinLeafNode {
         if (isInteger(val))
             return new RawValue(val);
 
-        if (getOperand() instanceof Unary) {
-            Unary unary = (Unary) getOperand();
-            switch (this.operation.getName()) { // TODO: domain!!!
-                case "cos":
-                    switch (unary.operation.getName()) {
-                        case "acos":
-                            return unary.getOperand();
-                    }
-                    break;
-                case "sin":
-                    switch (unary.operation.getName()) {
-                        case "asin":
-                            return unary.getOperand();
-                    }
-                case "tan":
-                    switch (unary.operation.getName()) {
-                        case "atan":
-                            return unary.getOperand(); // what about tan(pi/2)?
-                    }
-            }
-        } else if (getOperand() instanceof Constants.Constant) {
-            Constants.Constant c = (Constants.Constant) getOperand();
-            switch (c.getName()) {
-                case "e":
-                    switch (operation.getName()) {
-                        case "ln":
-                            return ONE;
-                    }
-                    break;
-                case "pi":
-                    switch (operation.getName()) {
-                        case "cos":
-                        case "sec":
-                            return ONE.negate();
-                        case "sin":
-                        case "tan":
-                            return ZERO;
-                    }
-            }
-        } else if (getOperand() instanceof RawValue) {
+        Node rewritten = Rules.rewrite(this); // TODO: domain!!!
+        if (rewritten != null) return rewritten;
+
+        if (getOperand() instanceof RawValue) {
             RawValue r = (RawValue) getOperand();
             if (r.isInteger()) {
                 switch (operation.getName()) {
@@ -167,15 +148,6 @@ public class Unary extends Operation implements BinLeafNode {
                         }
                 }
             }
-
-        } else if (getOperand() instanceof Binary) {
-            Binary binOp = (Binary) getOperand();
-            switch (operation.getName()) {
-                case "ln":
-                    if (binOp.is("^") && binOp.getLeft().equals(Constants.get("e"))) {
-                        return binOp.getRight();
-                    }
-            }
         }
 
 
@@ -184,7 +156,8 @@ public class Unary extends Operation implements BinLeafNode {
 
     @Override
     public Node firstDerivative(Variable v) {
-        Node smallKahuna = getOperand().firstDerivative(v);
+        checkBudget();
+        Node smallKahuna = derivativeOf(getOperand(), v);
         Node bigKahuna = null;
         switch (this.operation.getName()) {
             case "cos": // d/dx cos(x) = -sin(x)
@@ -247,22 +220,20 @@ public class Unary extends Operation implements BinLeafNode {
 
     public boolean isUndefined() {
         if (super.isUndefined()) return true;
-        if (getOperand().val() != Double.NaN) {
-            double n = getOperand().val();
-            switch (operation.getName()) {
-                case "ln":
-                    return n <= 0;
-                case "log":
-                    return n <= 0;
-                case "asin":
-                    return n > 1 || n < -1;
-                case "acos":
-                    return n > 1 || n < -1;
-//                case "tan":
-//                case "cot":
-//                case "sec":
-//                case "csc":
-            }
+        double n = getOperand().val(); // NaN fails every comparison below
+        switch (operation.getName()) {
+            case "ln":
+                return n <= 0;
+            case "log":
+                return n <= 0;
+            case "asin":
+                return n > 1 || n < -1;
+            case "acos":
+                return n > 1 || n < -1;
+//            case "tan":
+//            case "cot":
+//            case "sec":
+//            case "csc":
         }
 
         Node o;
@@ -309,24 +280,38 @@ public class Unary extends Operation implements BinLeafNode {
      */
     @Override
     public boolean equals(Node other) {
+        if (this == other || isInternedWith(other)) return this == other;
         return other instanceof Unary
                 && ((Unary) other).operation.equals(this.operation) //evaluates to false for operations "sin" and "cos"
                 && this.getOperand().equals(((Unary) other).getOperand()); //delegate down
     }
 
     public double val() {
-        return operation.eval(getOperand().val());
+        return cachedVal(() -> operation.eval(getOperand().val()));
+    }
+
+    @Override
+    protected int structuralHash() {
+        return 31 * operation.getName().hashCode() + getOperand().hashCode();
     }
 
     public Function getFunction() {
         return operation;
     }
 
+    /**
+     * @return whether the operation is one of the built-in definitions, i.e. it is not user-defined or overridden.
+     */
+    public boolean isBuiltIn() {
+        return Definitions.isBuiltIn(operation);
+    }
+
     private static class Definitions implements Evaluable, Nameable {
-        private static Map<String, Function> functions;
+        private static final Map<String, Function> builtInFunctions = new HashMap<>();
+        private static JasContext.Key<Map<String, Function>> FUNCTIONS;
+        private static Set<Function> builtIns;
 
         static {
-            functions = new HashMap<>();
             define("cos", Math::cos);
             define("sin", Math::sin);
             define("log", Math::log10);
@@ -350,28 +335,50 @@ public class Unary extends Operation implements BinLeafNode {
                 }
                 return Double.NaN;
             });
+            builtIns = new HashSet<>(builtInFunctions.values());
+            FUNCTIONS = new JasContext.Key<>("unary operations", builtInFunctions);
             if (DEBUG) System.out.println("# reserved unary operations declared");
         }
 
         private Function unaryOperation;
 
         Definitions(String name) {
-            unaryOperation = functions.get(name);
+            unaryOperation = functions().get(name);
+        }
+
+        /**
+         * @return the unary operations of the current context, which must not be modified
+         */
+        private static Map<String, Function> functions() {
+            return JasContext.current().get(FUNCTIONS);
         }
 
         private static Function extract(String name) {
-            Function function = functions.get(name);
+            Function function = functions().get(name);
             if (function != null) return function;
             throw new RuntimeException("undefined unary operation: " + "\"" + name + "\"");
         }
 
         private static void define(String name, Evaluable evaluable) {
-            functions.remove(name);
-            functions.put(name, new Function(name, evaluable));
+            Function function = new Function(name, evaluable);
+            if (FUNCTIONS == null) { // built-in operations
+                builtInFunctions.put(name, function);
+                return;
+            }
+            JasContext.current().update(FUNCTIONS, functions -> {
+                HashMap<String, Function> defined = new HashMap<>(functions);
+                defined.put(name, function);
+                return defined;
+            });
+            Compiler.invalidateCache();
+        }
+
+        private static boolean isBuiltIn(Function function) {
+            return builtIns.contains(function);
         }
 
         static Collection<Function> list() {
-            return functions.values();
+            return functions().values();
         }
 
         @Override
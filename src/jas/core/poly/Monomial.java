@@ -0,0 +1,73 @@
+package jas.core.poly;
+
+import java.util.Arrays;
+
+/**
+ * Power product of the variables of a polynomial, stored as a vector of exponents; instances are immutable.
+ */
+final class Monomial implements Comparable<Monomial> {
+    private final int[] exponents;
+    private final int hash;
+
+    Monomial(int[] exponents) {
+        this.exponents = exponents;
+        this.hash = Arrays.hashCode(exponents);
+    }
+
+    /**
+     * @return the monomial 1 in n variables
+     */
+    static Monomial one(int n) {
+        return new Monomial(new int[n]);
+    }
+
+    /**
+     * @return the monomial consisting of only the i-th of n variables
+     */
+    static Monomial variable(int n, int i) {
+        int[] exponents = new int[n];
+        exponents[i] = 1;
+        return new Monomial(exponents);
+    }
+
+    Monomial mult(Monomial o) {
+        int[] product = new int[exponents.length];
+        for (int i = 0; i < product.length; i++)
+            product[i] = Math.addExact(exponents[i], o.exponents[i]);
+        return new Monomial(product);
+    }
+
+    int exponent(int i) {
+        return exponents[i];
+    }
+
+    int degree() {
+        int degree = 0;
+        for (int e : exponents) degree += e;
+        return degree;
+    }
+
+    /**
+     * graded lexicographic order: higher total degree first, ties are broken by the exponents from left to right.
+     */
+    @Override
+    public int compareTo(Monomial o) {
+        int d = Integer.compare(o.degree(), degree());
+        if (d != 0) return d;
+        for (int i = 0; i < exponents.length; i++) {
+            if (exponents[i] != o.exponents[i])
+                return Integer.compare(o.exponents[i], exponents[i]);
+        }
+        return 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Monomial && hash == ((Monomial) o).hash && Arrays.equals(exponents, ((Monomial) o).exponents);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
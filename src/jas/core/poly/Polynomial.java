@@ -0,0 +1,275 @@
+package jas.core.poly;
+
+import jas.core.JasContext;
+import jas.core.Node;
+import jas.core.components.Constants.Constant;
+import jas.core.components.Fraction;
+import jas.core.components.Literal;
+import jas.core.components.RawValue;
+import jas.core.components.Variable;
+import jas.core.operations.Binary;
+
+import java.util.*;
+
+/**
+ * Sparse multivariate polynomial with exact rational coefficients. Each term is stored as a vector of exponents, so
+ * multiplying and collecting like terms are hash lookups instead of tree simplifications; this makes expanding
+ * products like (a+b+c+...)*(a+e+...) or powers like (x+y+1)^10 almost instant. Instances are immutable.
+ */
+public final class Polynomial {
+    private final Variable[] variables;
+    private final HashMap<Monomial, Rational> terms;
+
+    private Polynomial(Variable[] variables, HashMap<Monomial, Rational> terms) {
+        this.variables = variables;
+        this.terms = terms;
+    }
+
+    private static Polynomial constant(Variable[] variables, Rational c) {
+        HashMap<Monomial, Rational> terms = new HashMap<>();
+        if (!c.isZero()) terms.put(Monomial.one(variables.length), c);
+        return new Polynomial(variables, terms);
+    }
+
+    /**
+     * same as from(node, true)
+     */
+    public static Polynomial from(Node node) {
+        return from(node, true);
+    }
+
+    /**
+     * converts an expression made of numbers, variables, +, -, *, division by numbers and non-negative integer powers.
+     * Named constants like pi are treated as variables; random and user defined constants are not converted, since
+     * they could take a different value every time, e.g. random-random.
+     *
+     * @param node   the expression, which is not modified
+     * @param expand whether products and powers of sums are multiplied out; if false, such expressions are rejected,
+     *               so that the conversion only collects like terms.
+     * @return the polynomial, or null if node is not a polynomial
+     */
+    public static Polynomial from(Node node, boolean expand) {
+        TreeMap<String, Variable> found = new TreeMap<>();
+        if (!collectVariables(node, found)) return null;
+        Variable[] variables = found.values().toArray(new Variable[0]);
+        HashMap<String, Integer> indices = new HashMap<>();
+        for (int i = 0; i < variables.length; i++) indices.put(variables[i].getName(), i);
+        return convert(node, variables, indices, expand);
+    }
+
+    /**
+     * @return false if node contains a variable that could not be treated as an indeterminate
+     */
+    private static boolean collectVariables(Node node, TreeMap<String, Variable> found) {
+        if (node instanceof Binary) {
+            Binary bin = (Binary) node;
+            return collectVariables(bin.getLeft(), found) && collectVariables(bin.getRight(), found);
+        } else if (node instanceof Variable) {
+            if (node instanceof Literal || node.simplify() != node) return false; // the variable has a value
+            if (node instanceof Constant && !((Constant) node).isDeterministic()) return false;
+            found.putIfAbsent(((Variable) node).getName(), (Variable) node);
+        }
+        return true;
+    }
+
+    private static Polynomial convert(Node node, Variable[] variables, HashMap<String, Integer> indices, boolean expand) {
+        if (node instanceof RawValue) {
+            Rational c = coefficient((RawValue) node);
+            return c == null ? null : constant(variables, c);
+        } else if (node instanceof Variable) {
+            HashMap<Monomial, Rational> terms = new HashMap<>();
+            terms.put(Monomial.variable(variables.length, indices.get(((Variable) node).getName())), Rational.ONE);
+            return new Polynomial(variables, terms);
+        } else if (!(node instanceof Binary) || !((Binary) node).getOperator().isBuiltIn()) {
+            return null;
+        }
+        Binary bin = (Binary) node;
+        Polynomial left = convert(bin.getLeft(), variables, indices, expand);
+        if (left == null) return null;
+        if (bin.is("^")) {
+            if (!(bin.getRight() instanceof RawValue) || bin.getRight() instanceof Fraction) return null;
+            double n = bin.getRight().val();
+            if (n < 0 || n > Integer.MAX_VALUE || n % 1 != 0) return null;
+            if (!expand && left.numTerms() > 1) return null;
+            Rational base = left.constantValue();
+            if (n == 0 && (base == null || base.isZero())) return null; // 0^0 is undefined
+            return left.pow((int) n);
+        }
+        Polynomial right = convert(bin.getRight(), variables, indices, expand);
+        if (right == null) return null;
+        switch (bin.getName()) {
+            case "+":
+                return left.add(right);
+            case "-":
+                return left.sub(right);
+            case "*":
+                if (!expand && left.numTerms() > 1 && right.numTerms() > 1) return null;
+                return left.mult(right);
+            case "/":
+                Rational c = right.constantValue();
+                return c == null || c.isZero() ? null : left.mult(constant(variables, c.inverse()));
+        }
+        return null;
+    }
+
+    /**
+     * @return exact value of r, or null if r is undefined or a decimal while fractions are disabled
+     */
+    private static Rational coefficient(RawValue r) {
+        if (r.isUndefined() || Double.isInfinite(r.doubleValue())) return null;
+        if (r instanceof Fraction) {
+            Fraction f = (Fraction) r;
+            return Rational.of(f.getNumerator(), f.getDenominator());
+        }
+        if (r.isInteger()) return Rational.of(r.toBigInteger());
+        if (!JasContext.current().isFraction()) return null;
+        RawValue f = Fraction.convertToFraction(r.doubleValue(), Fraction.TOLERANCE);
+        return f instanceof Fraction ? coefficient(f) : null;
+    }
+
+    /**
+     * @return the value of the polynomial if it is a constant, otherwise null
+     */
+    private Rational constantValue() {
+        if (terms.isEmpty()) return Rational.ZERO;
+        if (terms.size() > 1) return null;
+        Map.Entry<Monomial, Rational> term = terms.entrySet().iterator().next();
+        return term.getKey().degree() == 0 ? term.getValue() : null;
+    }
+
+    /**
+     * rewrites o in terms of the variables of this; o's variables must be among them.
+     */
+    private Polynomial align(Polynomial o) {
+        if (o.variables == variables || Arrays.equals(o.variables, variables)) return o;
+        List<Variable> mine = Arrays.asList(variables);
+        int[] positions = new int[o.variables.length];
+        for (int i = 0; i < positions.length; i++) positions[i] = mine.indexOf(o.variables[i]);
+        HashMap<Monomial, Rational> terms = new HashMap<>();
+        o.terms.forEach((m, c) -> {
+            int[] exponents = new int[variables.length];
+            for (int i = 0; i < positions.length; i++) exponents[positions[i]] = m.exponent(i);
+            terms.put(new Monomial(exponents), c);
+        });
+        return new Polynomial(variables, terms);
+    }
+
+    /**
+     * @return a polynomial over the union of the variables of this and o, in which this is rewritten
+     */
+    private Polynomial widen(Polynomial o) {
+        if (o.variables == variables || Arrays.asList(variables).containsAll(Arrays.asList(o.variables))) return this;
+        TreeMap<String, Variable> union = new TreeMap<>();
+        for (Variable v : variables) union.put(v.getName(), v);
+        for (Variable v : o.variables) union.putIfAbsent(v.getName(), v);
+        return new Polynomial(union.values().toArray(new Variable[0]), new HashMap<>()).align(this);
+    }
+
+    public Polynomial add(Polynomial o) {
+        Polynomial a = widen(o);
+        HashMap<Monomial, Rational> terms = new HashMap<>(a.terms);
+        a.align(o).terms.forEach((m, c) -> accumulate(terms, m, c));
+        return new Polynomial(a.variables, terms);
+    }
+
+    public Polynomial sub(Polynomial o) {
+        return add(o.negate());
+    }
+
+    public Polynomial mult(Polynomial o) {
+        Polynomial a = widen(o), b = a.align(o);
+        HashMap<Monomial, Rational> terms = new HashMap<>();
+        a.terms.forEach((m1, c1) -> b.terms.forEach((m2, c2) -> accumulate(terms, m1.mult(m2), c1.mult(c2))));
+        return new Polynomial(a.variables, terms);
+    }
+
+    /**
+     * @param n non-negative exponent
+     * @return this^n, computed by repeated squaring
+     */
+    public Polynomial pow(int n) {
+        if (n < 0) throw new IllegalArgumentException("negative exponent " + n);
+        Polynomial result = constant(variables, Rational.ONE), base = this;
+        while (n > 0) {
+            if ((n & 1) == 1) result = result.mult(base);
+            n >>= 1;
+            if (n > 0) base = base.mult(base);
+        }
+        return result;
+    }
+
+    public Polynomial negate() {
+        HashMap<Monomial, Rational> terms = new HashMap<>();
+        this.terms.forEach((m, c) -> terms.put(m, c.negate()));
+        return new Polynomial(variables, terms);
+    }
+
+    private static void accumulate(HashMap<Monomial, Rational> terms, Monomial m, Rational c) {
+        Rational sum = terms.merge(m, c, Rational::add);
+        if (sum.isZero()) terms.remove(m);
+    }
+
+    public int numTerms() {
+        return terms.size();
+    }
+
+    /**
+     * @return total degree of the polynomial, -1 for the zero polynomial
+     */
+    public int degree() {
+        return terms.keySet().stream().mapToInt(Monomial::degree).max().orElse(-1);
+    }
+
+    /**
+     * @return the terms in graded lexicographic order, coefficients first, e.g. x^2+2*x*y-3*y+(1/2)
+     */
+    public Node toNode() {
+        ArrayList<Monomial> monomials = new ArrayList<>(terms.keySet());
+        Collections.sort(monomials);
+        Node sum = null;
+        for (Monomial m : monomials) {
+            Rational c = terms.get(m);
+            if (sum == null) sum = term(m, c);
+            else if (c.signum() < 0) sum = new Binary(sum, "-", term(m, c.negate()));
+            else sum = new Binary(sum, "+", term(m, c));
+        }
+        return sum == null ? new RawValue(0) : sum;
+    }
+
+    private Node term(Monomial m, Rational c) {
+        Node product = null;
+        for (int i = 0; i < variables.length; i++) {
+            int e = m.exponent(i);
+            if (e == 0) continue;
+            Node factor = e == 1 ? variables[i].copy() : new Binary(variables[i].copy(), "^", new RawValue(e));
+            product = product == null ? factor : new Binary(product, "*", factor);
+        }
+        if (product == null) return c.toNode();
+        return c.isOne() ? product : new Binary(c.toNode(), "*", product);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Polynomial)) return false;
+        Polynomial p = (Polynomial) o;
+        return terms.size() == p.terms.size() && widen(p).align(p).terms.equals(widen(p).terms);
+    }
+
+    @Override
+    public int hashCode() { // by variable name and exponent, so that it agrees with equals over other variables
+        int hash = 0;
+        for (Map.Entry<Monomial, Rational> term : terms.entrySet()) {
+            Monomial m = term.getKey();
+            int h = 0;
+            for (int i = 0; i < variables.length; i++)
+                if (m.exponent(i) != 0) h += variables[i].getName().hashCode() * (2 * m.exponent(i) + 1);
+            hash += h ^ term.getValue().hashCode();
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return toNode().toString();
+    }
+}
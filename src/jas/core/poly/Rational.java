@@ -0,0 +1,99 @@
+package jas.core.poly;
+
+import jas.core.Node;
+import jas.core.components.Fraction;
+import jas.core.components.RawValue;
+
+import java.math.BigInteger;
+
+/**
+ * Exact rational coefficient of a polynomial term; instances are immutable and always reduced.
+ */
+final class Rational {
+    static final Rational ZERO = new Rational(BigInteger.ZERO, BigInteger.ONE);
+    static final Rational ONE = new Rational(BigInteger.ONE, BigInteger.ONE);
+    private final BigInteger numerator;
+    private final BigInteger denominator;
+
+    private Rational(BigInteger numerator, BigInteger denominator) {
+        this.numerator = numerator;
+        this.denominator = denominator;
+    }
+
+    static Rational of(BigInteger numerator, BigInteger denominator) {
+        if (denominator.signum() == 0) throw new ArithmeticException("zero denominator");
+        if (denominator.signum() < 0) {
+            numerator = numerator.negate();
+            denominator = denominator.negate();
+        }
+        BigInteger gcd = numerator.gcd(denominator);
+        if (!gcd.equals(BigInteger.ONE)) {
+            numerator = numerator.divide(gcd);
+            denominator = denominator.divide(gcd);
+        }
+        return new Rational(numerator, denominator);
+    }
+
+    static Rational of(BigInteger integer) {
+        return new Rational(integer, BigInteger.ONE);
+    }
+
+    Rational add(Rational o) {
+        if (denominator.equals(o.denominator))
+            return of(numerator.add(o.numerator), denominator);
+        return of(numerator.multiply(o.denominator).add(o.numerator.multiply(denominator)),
+                denominator.multiply(o.denominator));
+    }
+
+    Rational mult(Rational o) {
+        return of(numerator.multiply(o.numerator), denominator.multiply(o.denominator));
+    }
+
+    Rational inverse() {
+        return of(denominator, numerator);
+    }
+
+    Rational negate() {
+        return new Rational(numerator.negate(), denominator);
+    }
+
+    Rational abs() {
+        return signum() < 0 ? negate() : this;
+    }
+
+    int signum() {
+        return numerator.signum();
+    }
+
+    boolean isZero() {
+        return numerator.signum() == 0;
+    }
+
+    boolean isOne() {
+        return numerator.equals(BigInteger.ONE) && denominator.equals(BigInteger.ONE);
+    }
+
+    /**
+     * @return RawValue for integers, otherwise Fraction
+     */
+    Node toNode() {
+        if (denominator.equals(BigInteger.ONE)) return new RawValue(numerator.doubleValue());
+        return new Fraction(numerator, denominator);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Rational && numerator.equals(((Rational) o).numerator)
+                && denominator.equals(((Rational) o).denominator);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * numerator.hashCode() + denominator.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return denominator.equals(BigInteger.ONE) ? numerator.toString() : numerator + "/" + denominator;
+    }
+}
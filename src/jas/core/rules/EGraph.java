@@ -0,0 +1,450 @@
+package jas.core.rules;
+
+import jas.core.Compiler;
+import jas.core.Node;
+import jas.core.SimplifyOptions;
+import jas.core.components.Fraction;
+import jas.core.components.RawValue;
+import jas.core.components.Variable;
+import jas.core.operations.Binary;
+import jas.core.operations.Custom;
+import jas.core.operations.Operation;
+import jas.core.operations.Unary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+
+/**
+ * E-graph: classes of equivalent expressions, where every class holds e-nodes, i.e. leaves and operations on other
+ * classes. A subexpression is stored once, however many of the expressions contain it, and the classes are kept in
+ * a union-find.
+ * <p>
+ * simplest() saturates the graph with the rewrite rules of the current context, the algebraic identities below and
+ * constant folding, then extracts the expression of the lowest complexity(). A rewrite only adds to the graph, so no
+ * form that has been found is lost, unlike with the greedy expand().simplify() steps of Node::simplest. Every round
+ * also adds the greedy steps applied to the best expression so far, so the result is never more complex than that.
+ * Saturation stops once nothing changes, after the max iterations of the SimplifyOptions, once the graph has the
+ * max nodes or once the time is up; by default after 8 rounds or at 10000 e-nodes.
+ */
+public final class EGraph {
+    private static final int MAX_ITERATIONS = 8;
+    private static final int MAX_NODES = 10000;
+    private static final int MAX_MATCHES = 1000; // of a rule in a round, so that e.g. associativity cannot flood it
+    private static final ArrayList<Rule> IDENTITIES = new ArrayList<>();
+
+    static {
+        String[][] identities = {
+                {"a+b", "b+a"}, {"a*b", "b*a"},
+                {"(a+b)+c", "a+(b+c)"}, {"a+(b+c)", "(a+b)+c"}, {"(a*b)*c", "a*(b*c)"}, {"a*(b*c)", "(a*b)*c"},
+                {"a*(b+c)", "a*b+a*c"}, {"a*b+a*c", "a*(b+c)"}, {"a*b+a", "a*(b+1)"},
+                {"a-b", "a+(-1)*b"}, {"a+(-1)*b", "a-b"}, {"a/b", "a*b^(-1)"}, {"a*b^(-1)", "a/b"},
+                {"a+0", "a"}, {"a*1", "a"}, {"a*0", "0"}, {"a^1", "a"}, {"a-a", "0"},
+                {"a+a", "2*a"}, {"a*a", "a^2"}, {"a*a^b", "a^(b+1)"}, {"a^b*a^c", "a^(b+c)"}
+        };
+        for (String[] identity : identities)
+            IDENTITIES.add(new Rule(fold(Compiler.compileBuiltIn(identity[0])), fold(Compiler.compileBuiltIn(identity[1]))));
+    }
+
+    private final ArrayList<EClass> classes = new ArrayList<>(); // indexed by id, null once merged into another
+    private final HashMap<ENode, Integer> memo = new HashMap<>(); // every e-node, with canonical children
+    private final ArrayList<Integer> dirty = new ArrayList<>(); // classes whose parents have to be repaired
+    private final HashSet<ENode> folded = new HashSet<>(); // e-nodes that constant folding has been done for
+    private int[] union = new int[16];
+    private int changes; // incremented whenever a class is added or merged
+
+    /**
+     * @param node    the expression, which is not modified
+     * @param options budget of the saturation; the max nodes apply to the e-nodes of the graph
+     * @return the least complex expression found to be equivalent to node
+     */
+    public static Node simplest(Node node, SimplifyOptions options) {
+        int maxIterations = options.getMaxIterations() == Integer.MAX_VALUE ? MAX_ITERATIONS : options.getMaxIterations();
+        int maxNodes = options.getMaxNodes() == Integer.MAX_VALUE ? MAX_NODES : options.getMaxNodes();
+        ArrayList<Rule> rules = new ArrayList<>(IDENTITIES);
+        rules.addAll(Rules.list());
+        EGraph graph = new EGraph();
+        int root = graph.add(node);
+        for (int i = 0; i < maxIterations && graph.numNodes() < maxNodes && !SimplifyOptions.isExhausted(); i++) {
+            int changes = graph.changes;
+            Node best = graph.extract(root);
+            if (best.complexity() <= 1) break; // a number, nothing is simpler
+            graph.merge(root, graph.add(best.simplify(options)));
+            graph.merge(root, graph.add(best.expand(options).simplify(options)));
+            graph.rewrite(rules, maxNodes);
+            graph.foldConstants();
+            graph.rebuild();
+            if (graph.changes == changes) break; // saturated
+        }
+        Node extracted = graph.extract(root), simplified = extracted.simplify(options);
+        return simplified.complexity() <= extracted.complexity() ? simplified : extracted;
+    }
+
+    /**
+     * @return id of the class of node, which is added to the graph if it is not there yet
+     */
+    public int add(Node node) {
+        if (!(node instanceof Binary || node instanceof Unary || node instanceof Custom))
+            return add(new ENode(key(node), new int[0], node));
+        ArrayList<Node> operands = ((Operation) node).getOperands();
+        int[] children = new int[operands.size()];
+        for (int i = 0; i < children.length; i++) children[i] = add(operands.get(i));
+        return add(new ENode(operator(node), children, null));
+    }
+
+    /**
+     * @return canonical id of the class
+     */
+    public int find(int id) {
+        while (union[id] != id) id = union[id] = union[union[id]];
+        return id;
+    }
+
+    /**
+     * @return whether the classes of a and b are the same, i.e. the expressions have been found to be equivalent
+     */
+    public boolean equivalent(int a, int b) {
+        return find(a) == find(b);
+    }
+
+    /**
+     * @return number of e-nodes
+     */
+    public int numNodes() {
+        return memo.size();
+    }
+
+    public int numClasses() {
+        return (int) classes.stream().filter(c -> c != null).count();
+    }
+
+    /**
+     * @return a new tree of the least complex expression of the class
+     */
+    public Node extract(int id) {
+        analyze();
+        return build(classes.get(find(id)).best);
+    }
+
+    private int add(ENode node) {
+        node = canonical(node);
+        Integer existing = memo.get(node);
+        if (existing != null) return find(existing);
+        int id = classes.size();
+        if (id == union.length) union = Arrays.copyOf(union, id * 2);
+        union[id] = id;
+        EClass eClass = new EClass();
+        eClass.nodes.add(node);
+        classes.add(eClass);
+        for (int child : node.children) classes.get(find(child)).parents.add(new Parent(node, id));
+        memo.put(node, id);
+        changes++;
+        return id;
+    }
+
+    /**
+     * @return whether a and b were in different classes
+     */
+    private boolean merge(int a, int b) {
+        a = find(a);
+        b = find(b);
+        if (a == b) return false;
+        EClass kept = classes.get(a), merged = classes.get(b);
+        if (kept.nodes.size() + kept.parents.size() < merged.nodes.size() + merged.parents.size()) {
+            int id = a;
+            a = b;
+            b = id;
+            kept = classes.get(a);
+            merged = classes.get(b);
+        }
+        union[b] = a;
+        kept.nodes.addAll(merged.nodes);
+        kept.parents.addAll(merged.parents);
+        if (merged.cost < kept.cost) {
+            kept.cost = merged.cost;
+            kept.best = merged.best;
+        }
+        classes.set(b, null);
+        dirty.add(a);
+        changes++;
+        return true;
+    }
+
+    /**
+     * restores the invariants after merging: e-nodes that have become equal are in the same class, and the memo
+     * holds the canonical form of every e-node.
+     */
+    private void rebuild() {
+        while (!dirty.isEmpty()) {
+            LinkedHashSet<Integer> todo = new LinkedHashSet<>();
+            for (int id : dirty) todo.add(find(id));
+            dirty.clear();
+            for (int id : todo) repair(find(id));
+        }
+        for (EClass eClass : classes) {
+            if (eClass == null) continue;
+            LinkedHashSet<ENode> nodes = new LinkedHashSet<>();
+            for (ENode node : eClass.nodes) nodes.add(canonical(node));
+            eClass.nodes.clear();
+            eClass.nodes.addAll(nodes);
+        }
+    }
+
+    private void repair(int id) {
+        EClass eClass = classes.get(id);
+        ArrayList<Parent> parents = new ArrayList<>(eClass.parents);
+        eClass.parents.clear();
+        for (Parent parent : parents) {
+            memo.remove(parent.node);
+            memo.put(canonical(parent.node), find(parent.eClass));
+        }
+        LinkedHashMap<ENode, Integer> unique = new LinkedHashMap<>();
+        for (Parent parent : parents) {
+            ENode node = canonical(parent.node);
+            Integer congruent = unique.get(node);
+            if (congruent != null) merge(congruent, parent.eClass);
+            unique.put(node, find(parent.eClass));
+        }
+        EClass kept = classes.get(find(id));
+        unique.forEach((node, parent) -> kept.parents.add(new Parent(node, parent)));
+    }
+
+    private ENode canonical(ENode node) {
+        int[] children = new int[node.children.length];
+        for (int i = 0; i < children.length; i++) children[i] = find(node.children[i]);
+        return Arrays.equals(children, node.children) ? node : new ENode(node.operator, children, node.leaf);
+    }
+
+    /**
+     * matches every rule against every class first, then adds the replacements to the classes they matched.
+     */
+    private void rewrite(ArrayList<Rule> rules, int maxNodes) {
+        analyze(); // constraints are checked on the least complex expression of the bound classes
+        ArrayList<Runnable> rewrites = new ArrayList<>();
+        for (Rule rule : rules) {
+            int matches = 0;
+            for (int id = 0; id < classes.size() && matches < MAX_MATCHES; id++) {
+                if (classes.get(id) == null) continue;
+                int eClass = id;
+                for (HashMap<String, Integer> bindings : match(rule.getPattern(), id, new HashMap<>(), MAX_MATCHES - matches)) {
+                    matches++;
+                    if (rule.hasConstraints()) {
+                        HashMap<String, Node> bound = new HashMap<>();
+                        bindings.forEach((variable, bindingClass) -> bound.put(variable, extract(bindingClass)));
+                        if (!rule.accepts(bound)) continue;
+                    }
+                    rewrites.add(() -> {
+                        if (merge(eClass, instantiate(rule.getReplacement(), bindings))) rule.fired();
+                    });
+                }
+            }
+        }
+        for (Runnable rewrite : rewrites) {
+            if (numNodes() >= maxNodes || SimplifyOptions.isExhausted()) break;
+            rewrite.run();
+        }
+    }
+
+    /**
+     * @return up to limit bindings of the variables of pattern for which it matches an expression of the class
+     */
+    private ArrayList<HashMap<String, Integer>> match(Node pattern, int id, HashMap<String, Integer> bindings, int limit) {
+        id = find(id);
+        ArrayList<HashMap<String, Integer>> matches = new ArrayList<>();
+        if (Rule.isVariable(pattern)) {
+            String variable = ((Variable) pattern).getName();
+            Integer bound = bindings.get(variable);
+            if (bound == null) {
+                HashMap<String, Integer> extended = new HashMap<>(bindings);
+                extended.put(variable, id);
+                matches.add(extended);
+            } else if (find(bound) == id) {
+                matches.add(bindings);
+            }
+            return matches;
+        }
+        boolean operation = pattern instanceof Binary || pattern instanceof Unary || pattern instanceof Custom;
+        String operator = operation ? operator(pattern) : key(pattern);
+        ArrayList<Node> operands = operation ? ((Operation) pattern).getOperands() : new ArrayList<>();
+        for (ENode node : classes.get(id).nodes) {
+            if (matches.size() >= limit) break;
+            if (!node.operator.equals(operator) || node.children.length != operands.size()) continue;
+            ArrayList<HashMap<String, Integer>> partial = new ArrayList<>();
+            partial.add(bindings);
+            for (int i = 0; i < operands.size() && !partial.isEmpty(); i++) {
+                ArrayList<HashMap<String, Integer>> next = new ArrayList<>();
+                for (int j = 0; j < partial.size() && next.size() < limit; j++)
+                    next.addAll(match(operands.get(i), node.children[i], partial.get(j), limit - next.size()));
+                partial = next;
+            }
+            matches.addAll(partial.subList(0, Math.min(partial.size(), limit - matches.size())));
+            if (!operation && !matches.isEmpty()) break; // a leaf is in a class only once
+        }
+        return matches;
+    }
+
+    private int instantiate(Node template, HashMap<String, Integer> bindings) {
+        if (Rule.isVariable(template)) return find(bindings.get(((Variable) template).getName()));
+        if (!(template instanceof Binary || template instanceof Unary || template instanceof Custom))
+            return add(new ENode(key(template), new int[0], template));
+        ArrayList<Node> operands = ((Operation) template).getOperands();
+        int[] children = new int[operands.size()];
+        for (int i = 0; i < children.length; i++) children[i] = instantiate(operands.get(i), bindings);
+        return add(new ENode(operator(template), children, null));
+    }
+
+    /**
+     * merges every binary or unary operation on numbers with its value, e.g. 2*3 with 6.
+     */
+    private void foldConstants() {
+        ArrayList<int[]> folds = new ArrayList<>(); // class and e-node index
+        for (int id = 0; id < classes.size(); id++) {
+            EClass eClass = classes.get(id);
+            if (eClass == null) continue;
+            for (ENode node : eClass.nodes) {
+                if (node.leaf != null || node.operator.charAt(0) == 'c' || folded.contains(node)) continue;
+                Node[] numbers = new Node[node.children.length];
+                for (int i = 0; i < numbers.length && (i == 0 || numbers[i - 1] != null); i++)
+                    numbers[i] = number(node.children[i]);
+                if (numbers[numbers.length - 1] == null) continue;
+                folded.add(node);
+                Node value = build(node, numbers).simplify();
+                if (value instanceof RawValue && !Double.isNaN(value.val()) && !Double.isInfinite(value.val()))
+                    folds.add(new int[]{id, add(value)});
+            }
+        }
+        for (int[] fold : folds) merge(fold[0], fold[1]);
+    }
+
+    /**
+     * @return a copy of the number in the class, null if there is none
+     */
+    private Node number(int id) {
+        for (ENode node : classes.get(find(id)).nodes)
+            if (node.leaf instanceof RawValue) return node.leaf.copy();
+        return null;
+    }
+
+    /**
+     * computes the least complexity of every class, as an operation is 1 more complex than its operands.
+     */
+    private void analyze() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (EClass eClass : classes) {
+                if (eClass == null) continue;
+                for (ENode node : eClass.nodes) {
+                    int cost = cost(node);
+                    if (cost < eClass.cost) {
+                        eClass.cost = cost;
+                        eClass.best = node;
+                        changed = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private int cost(ENode node) {
+        if (node.leaf != null) return node.leaf.complexity();
+        long cost = 1;
+        for (int child : node.children) cost += classes.get(find(child)).cost;
+        return (int) Math.min(cost, Integer.MAX_VALUE);
+    }
+
+    private Node build(ENode node) {
+        Node[] operands = new Node[node.children.length];
+        for (int i = 0; i < operands.length; i++) operands[i] = build(classes.get(find(node.children[i])).best);
+        return build(node, operands);
+    }
+
+    private static Node build(ENode node, Node[] operands) {
+        if (node.leaf != null) return node.leaf.thaw();
+        String name = node.operator.substring(1);
+        switch (node.operator.charAt(0)) {
+            case 'b':
+                return new Binary(operands[0], name, operands[1]);
+            case 'u':
+                return new Unary(operands[0], name);
+            default:
+                return new Custom(name, new ArrayList<>(Arrays.asList(operands)));
+        }
+    }
+
+    private static String operator(Node operation) {
+        String kind = operation instanceof Binary ? "b" : operation instanceof Unary ? "u" : "c";
+        return kind + ((Operation) operation).getName();
+    }
+
+    /**
+     * @return key of a leaf, numbers are compared by value
+     */
+    private static String key(Node leaf) {
+        if (leaf instanceof RawValue && !(leaf instanceof Fraction))
+            return "n" + ((RawValue) leaf).doubleValue();
+        return "l" + leaf.getClass().getName() + ":" + leaf;
+    }
+
+    /**
+     * @return node with every operation on numbers replaced by its value, e.g. (0-1)*b by (-1)*b
+     */
+    private static Node fold(Node node) {
+        if (!(node instanceof Binary)) return node;
+        Binary binary = (Binary) node;
+        Node left = fold(binary.getLeft()), right = fold(binary.getRight());
+        if (left instanceof RawValue && right instanceof RawValue) return new RawValue(new Binary(left, binary.getName(), right).val());
+        return new Binary(left, binary.getName(), right);
+    }
+
+    /**
+     * e-node; the children are ids of classes.
+     */
+    private static final class ENode {
+        private final String operator; // kind and name of the operation, or key of the leaf
+        private final int[] children;
+        private final Node leaf; // null unless the e-node is a leaf
+        private final int hash;
+
+        private ENode(String operator, int[] children, Node leaf) {
+            this.operator = operator;
+            this.children = children;
+            this.leaf = leaf == null ? null : leaf.thaw();
+            this.hash = 31 * operator.hashCode() + Arrays.hashCode(children);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof ENode && operator.equals(((ENode) other).operator)
+                    && Arrays.equals(children, ((ENode) other).children);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class EClass {
+        private final ArrayList<ENode> nodes = new ArrayList<>();
+        private final ArrayList<Parent> parents = new ArrayList<>();
+        private int cost = Integer.MAX_VALUE;
+        private ENode best;
+    }
+
+    /**
+     * an e-node that has the class as one of its children, and the class of the e-node.
+     */
+    private static final class Parent {
+        private final ENode node;
+        private final int eClass;
+
+        private Parent(ENode node, int eClass) {
+            this.node = node;
+            this.eClass = eClass;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package jas.core.rules;
+
+import jas.core.Compiler;
+import jas.core.JASException;
+import jas.core.Node;
+import jas.core.components.List;
+import jas.core.components.Variable;
+import jas.core.operations.Argument;
+import jas.core.operations.Binary;
+import jas.core.operations.Custom;
+import jas.core.operations.Operation;
+import jas.core.operations.Unary;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rewrite rule pattern -> replacement, e.g. cos(acos(x)) -> x.
+ * Every variable of the pattern matches any subtree, unless it is constrained to an argument type with where();
+ * a variable that appears more than once has to match equal subtrees. Constants and numbers in the pattern only
+ * match nodes that are equal to them. Rules are immutable except for their firing counter; the pattern and the
+ * replacement are private trees that are only ever read.
+ */
+public final class Rule {
+    private final Node pattern;
+    private final Node replacement;
+    private final HashMap<String, Argument> constraints;
+    private final AtomicLong firings = new AtomicLong();
+
+    /**
+     * @param pattern     e.g. "ln(a)+ln(b)"
+     * @param replacement e.g. "ln(a*b)"
+     */
+    public Rule(String pattern, String replacement) {
+        this(Compiler.compile(pattern), Compiler.compile(replacement), new HashMap<>());
+    }
+
+    Rule(Node pattern, Node replacement) {
+        this(pattern, replacement, new HashMap<>());
+    }
+
+    private Rule(Node pattern, Node replacement, HashMap<String, Argument> constraints) {
+        if (!(pattern instanceof Operation))
+            throw new JASException("pattern of a rule must be an operation, found \"" + pattern + "\"");
+        ArrayList<Variable> variables = pattern.extractVariables();
+        for (Variable v : replacement.extractVariables()) {
+            if (!Node.contains(new ArrayList<>(variables), v))
+                throw new JASException("variable \"" + v + "\" of \"" + replacement + "\" is not bound by \"" + pattern + "\"");
+        }
+        this.pattern = pattern;
+        this.replacement = replacement;
+        this.constraints = constraints;
+    }
+
+    /**
+     * @param variable a variable of the pattern
+     * @param argument type of the subtrees the variable matches, e.g. NUMBER for ln(a)+ln(b) -> ln(a*b)
+     * @return a copy of this rule with the additional constraint
+     */
+    public Rule where(String variable, Argument argument) {
+        if (!Node.contains(new ArrayList<>(pattern.extractVariables()), new Variable(variable)))
+            throw new JASException("\"" + variable + "\" is not a variable of \"" + pattern + "\"");
+        HashMap<String, Argument> constraints = new HashMap<>(this.constraints);
+        constraints.put(variable, argument);
+        return new Rule(pattern, replacement, constraints);
+    }
+
+    /**
+     * counts a rewrite that was made outside of apply(), e.g. by EGraph.
+     */
+    void fired() {
+        firings.incrementAndGet();
+    }
+
+    static boolean isVariable(Node node) {
+        return node.getClass() == Variable.class;
+    }
+
+    Node getPattern() {
+        return pattern;
+    }
+
+    Node getReplacement() {
+        return replacement;
+    }
+
+    boolean hasConstraints() {
+        return !constraints.isEmpty();
+    }
+
+    /**
+     * @param bindings subtrees matched by the variables of the pattern
+     * @return whether the bindings satisfy the constraints of the rule
+     */
+    boolean accepts(Map<String, Node> bindings) {
+        for (Map.Entry<String, Argument> constraint : constraints.entrySet()) {
+            if (!constraint.getValue().equals(Argument.resolve(bindings.get(constraint.getKey())))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param node    the node to be rewritten, which is not modified
+     * @param pattern the pattern or one of its commutative variants
+     * @return the replacement, or null if node does not match pattern
+     */
+    Node apply(Node node, Node pattern) {
+        HashMap<String, Node> bindings = new HashMap<>();
+        if (!match(pattern, node, bindings) || !accepts(bindings)) return null;
+        firings.incrementAndGet();
+        if (isVariable(replacement)) return bindings.get(((Variable) replacement).getName());
+        return instantiate(replacement, bindings).simplify();
+    }
+
+    private static boolean match(Node pattern, Node node, HashMap<String, Node> bindings) {
+        if (isVariable(pattern)) {
+            Node bound = bindings.putIfAbsent(((Variable) pattern).getName(), node);
+            return bound == null || bound.equals(node);
+        }
+        if (pattern instanceof Operation) {
+            if (pattern.getClass() != node.getClass()) return false;
+            Operation p = (Operation) pattern, o = (Operation) node;
+            if (!p.getName().equals(o.getName()) || p.getOperands().size() != o.getOperands().size()) return false;
+            for (int i = 0; i < p.getOperands().size(); i++) {
+                if (!match(p.getOperand(i), o.getOperand(i), bindings)) return false;
+            }
+            return true;
+        }
+        return pattern.equals(node);
+    }
+
+    /**
+     * the subtrees bound to the variables are used as they are the first time, and copied after that.
+     */
+    private static Node instantiate(Node template, HashMap<String, Node> bindings) {
+        if (isVariable(template)) {
+            String name = ((Variable) template).getName();
+            Node bound = bindings.get(name);
+            bindings.put(name, bound.copy());
+            return bound;
+        } else if (template instanceof Binary) {
+            Binary binary = (Binary) template;
+            return new Binary(instantiate(binary.getLeft(), bindings), binary.getName(), instantiate(binary.getRight(), bindings));
+        } else if (template instanceof Unary) {
+            return new Unary(instantiate(((Unary) template).getOperand(), bindings), ((Unary) template).getName());
+        } else if (template instanceof Custom) {
+            ArrayList<Node> operands = new ArrayList<>();
+            ((Custom) template).getOperands().forEach(operand -> operands.add(instantiate(operand, bindings)));
+            return new Custom(((Custom) template).getName(), operands);
+        } else if (template instanceof List) {
+            ArrayList<Node> elements = new ArrayList<>();
+            ((List) template).unwrap().forEach(element -> elements.add(instantiate(element, bindings)));
+            return new List(elements);
+        }
+        return template.thaw();
+    }
+
+    /**
+     * @return number of times the rule has rewritten a node
+     */
+    public long getFirings() {
+        return firings.get();
+    }
+
+    public void resetFirings() {
+        firings.set(0);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder(pattern + " -> " + replacement);
+        constraints.forEach((variable, argument) -> s.append(", ").append(variable).append(": ").append(argument));
+        return s.toString();
+    }
+}
@@ -0,0 +1,147 @@
+package jas.core.rules;
+
+import jas.core.Node;
+import jas.core.components.Constants;
+import jas.core.components.RawValue;
+import jas.core.operations.Binary;
+import jas.core.operations.Operation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * Discrimination tree of rewrite rules. Each pattern is stored as the path of the symbols met in a preorder
+ * traversal, where the variables of the pattern become wildcards. Looking up a node walks down the tree and the
+ * node at the same time, descending into the node only as far as some pattern does; a wildcard skips a whole
+ * subtree. Only the rules whose patterns could match are tried.
+ * <p>
+ * The operands of + and * are stored in both orders, so x*0 also finds 0*x. Instances are immutable.
+ */
+final class RuleIndex {
+    private static final String WILDCARD = "*";
+
+    private final ArrayList<Rule> rules;
+    private final Path root = new Path();
+
+    RuleIndex(ArrayList<Rule> rules) {
+        this.rules = rules;
+        for (int i = 0; i < rules.size(); i++) {
+            for (Node variant : variants(rules.get(i).getPattern())) {
+                Path path = root;
+                for (String symbol : symbols(variant, new ArrayList<>()))
+                    path = path.next.computeIfAbsent(symbol, s -> new Path());
+                path.entries.add(new Entry(i, variant));
+            }
+        }
+    }
+
+    /**
+     * @return rules in the order they were defined; must not be modified.
+     */
+    ArrayList<Rule> list() {
+        return rules;
+    }
+
+    /**
+     * @param node the node to be rewritten
+     * @return the replacement given by the first rule that applies, or null if there is none
+     */
+    Node rewrite(Node node) {
+        ArrayList<Entry> candidates = new ArrayList<>();
+        retrieve(root, new Pending(node, null), candidates);
+        if (candidates.isEmpty()) return null;
+        if (candidates.size() > 1) Collections.sort(candidates);
+        for (Entry entry : candidates) {
+            Node rewritten = rules.get(entry.rule).apply(node, entry.pattern);
+            if (rewritten != null) return rewritten;
+        }
+        return null;
+    }
+
+    private static void retrieve(Path path, Pending pending, ArrayList<Entry> candidates) {
+        if (pending == null) {
+            candidates.addAll(path.entries);
+            return;
+        }
+        Path skipped = path.next.get(WILDCARD);
+        if (skipped != null) retrieve(skipped, pending.rest, candidates);
+        Path matched = path.next.get(symbol(pending.node));
+        if (matched == null) return;
+        Pending rest = pending.rest;
+        if (pending.node instanceof Operation) {
+            ArrayList<Node> operands = ((Operation) pending.node).getOperands();
+            for (int i = operands.size() - 1; i >= 0; i--) rest = new Pending(operands.get(i), rest);
+        }
+        retrieve(matched, rest, candidates);
+    }
+
+    private static String symbol(Node node) {
+        if (Rule.isVariable(node)) return WILDCARD;
+        if (node instanceof Operation) return ((Operation) node).getName(); // the kind of operation is checked by the rule
+        if (node instanceof Constants.Constant) return "constant";
+        if (node instanceof RawValue) return Double.toString(((RawValue) node).doubleValue());
+        return "leaf"; // compared with equals(Node) once the rule is tried
+    }
+
+    private static ArrayList<String> symbols(Node pattern, ArrayList<String> symbols) {
+        symbols.add(symbol(pattern));
+        if (pattern instanceof Operation && !Rule.isVariable(pattern))
+            ((Operation) pattern).getOperands().forEach(operand -> symbols(operand, symbols));
+        return symbols;
+    }
+
+    /**
+     * @return the pattern with the operands of every + and * in both orders
+     */
+    private static ArrayList<Node> variants(Node pattern) {
+        ArrayList<Node> variants = new ArrayList<>();
+        if (!(pattern instanceof Binary)) {
+            variants.add(pattern);
+            return variants;
+        }
+        Binary binary = (Binary) pattern;
+        boolean commutative = binary.is("+") || binary.is("*");
+        for (Node left : variants(binary.getLeft())) {
+            for (Node right : variants(binary.getRight())) {
+                variants.add(new Binary(left, binary.getName(), right));
+                if (commutative && !left.toString().equals(right.toString()))
+                    variants.add(new Binary(right, binary.getName(), left));
+            }
+        }
+        return variants;
+    }
+
+    private static final class Path {
+        private final HashMap<String, Path> next = new HashMap<>();
+        private final ArrayList<Entry> entries = new ArrayList<>();
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        private final int rule; // index of the rule, rules defined earlier take precedence
+        private final Node pattern;
+
+        private Entry(int rule, Node pattern) {
+            this.rule = rule;
+            this.pattern = pattern;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            return Integer.compare(rule, other.rule);
+        }
+    }
+
+    /**
+     * the subtrees that are still to be looked up, as an immutable linked list.
+     */
+    private static final class Pending {
+        private final Node node;
+        private final Pending rest;
+
+        private Pending(Node node, Pending rest) {
+            this.node = node;
+            this.rest = rest;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package jas.core.rules;
+
+import jas.core.Compiler;
+import jas.core.JasContext;
+import jas.core.Node;
+
+import java.util.ArrayList;
+
+import static jas.core.operations.Argument.NUMBER;
+
+/**
+ * Rewrite rules of the current context, consulted by Unary::simplify and Binary::simplify.
+ * List of built-in rules:
+ * -> cos(acos(x)) = x, sin(asin(x)) = x, tan(atan(x)) = x
+ * -> ln(e) = 1, cos(pi) = sec(pi) = -1, sin(pi) = tan(pi) = 0, ln(e^x) = x
+ * -> ln(a) + ln(b) = ln(a*b), ln(a) - ln(b) = ln(a/b), likewise for log, where a and b are numbers
+ * Rules defined later are tried after the ones defined before.
+ */
+public class Rules {
+    private static final JasContext.Key<RuleIndex> RULES;
+
+    static {
+        ArrayList<Rule> builtIns = new ArrayList<>();
+        builtIns.add(builtIn("cos(acos(x))", "x"));
+        builtIns.add(builtIn("sin(asin(x))", "x"));
+        builtIns.add(builtIn("tan(atan(x))", "x")); // what about tan(pi/2)?
+        builtIns.add(builtIn("ln(e)", "1"));
+        builtIns.add(builtIn("cos(pi)", "-1"));
+        builtIns.add(builtIn("sec(pi)", "-1"));
+        builtIns.add(builtIn("sin(pi)", "0"));
+        builtIns.add(builtIn("tan(pi)", "0"));
+        builtIns.add(builtIn("ln(e^x)", "x"));
+        for (String log : new String[]{"ln", "log"}) {
+            builtIns.add(builtIn(log + "(a)+" + log + "(b)", log + "(a*b)").where("a", NUMBER).where("b", NUMBER));
+            builtIns.add(builtIn(log + "(a)-" + log + "(b)", log + "(a/b)").where("a", NUMBER).where("b", NUMBER));
+        }
+        RULES = new JasContext.Key<>("rewrite rules", new RuleIndex(builtIns));
+    }
+
+    private static Rule builtIn(String pattern, String replacement) {
+        return new Rule(Compiler.compileBuiltIn(pattern), Compiler.compileBuiltIn(replacement));
+    }
+
+    /**
+     * adds a rule to the current context.
+     */
+    public static void define(Rule rule) {
+        JasContext.current().update(RULES, index -> {
+            ArrayList<Rule> rules = new ArrayList<>(index.list());
+            rules.add(rule);
+            return new RuleIndex(rules);
+        });
+    }
+
+    /**
+     * e.g. define("sin(x)^2+cos(x)^2", "1")
+     */
+    public static Rule define(String pattern, String replacement) {
+        Rule rule = new Rule(pattern, replacement);
+        define(rule);
+        return rule;
+    }
+
+    /**
+     * @return the rules of the current context, with their firing counts; must not be modified.
+     */
+    public static ArrayList<Rule> list() {
+        return JasContext.current().get(RULES).list();
+    }
+
+    /**
+     * @param node the node to be rewritten
+     * @return the replacement given by the first applicable rule, or null if no rule applies.
+     */
+    public static Node rewrite(Node node) {
+        return JasContext.current().get(RULES).rewrite(node);
+    }
+}
@@ -1,10 +1,13 @@
 package jas.graph;
 
 import jas.Function;
+import jas.core.Evaluable;
 import jas.core.Node;
+import jas.core.Program;
 import jas.core.components.Variable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * GraphFunction class acts as a bridge links Compiler with UI in JGrapher
@@ -23,6 +26,7 @@ public class GraphFunction extends Function {
     private boolean autoAsymptoteExtension;
     private Variable independentVar = new Variable("x");
     private ArrayList<SuppliedVar> suppliedVars;
+    private Program program;
 
     {
         isVisible = true;
@@ -71,6 +75,7 @@ public class GraphFunction extends Function {
 
     public void setNode(Node o) {
         setEvaluable(o);
+        program = null;
     }
 
     /**
@@ -93,38 +98,59 @@ public class GraphFunction extends Function {
      */
     public Plot createPlot(Range rangeX, Range rangeY, float graphHeight) {
         Plot plot = new Plot(rangeX);
-        Range copied = new Range(rangeX);
+        double[] xs = steps(new Range(rangeX));
+        double[] ys = new double[xs.length];
+        evalBatch(xs, ys, 0, xs.length);
         Point prevPoint = null;
-        while (copied.hasNextStep()) {
-            double temp = copied.getCurStep();
-            Point curPoint = new Point(temp, this.eval(temp));
+        for (int i = 0; i < xs.length; i++) {
+            Point curPoint = new Point(xs[i], ys[i]);
             if (prevPoint != null && (rangeY.isInScope(curPoint.getY()) ^ rangeY.isInScope(prevPoint.getY()))) {
                 double diff_y = Math.abs(curPoint.getY() - prevPoint.getY());
                 double pixels_y = Plot.map(Math.abs(diff_y), 0, rangeY.getSpan(), 0, graphHeight);
                 if (pixels_y > 5 && graphStyle.equals(Style.CONTINUOUS)) {
                     double step = rangeX.getStep() / Math.abs(pixels_y);
-                    Range newRangeX = new Range(prevPoint.getX() + step, curPoint.getX() - step, step);
-                    while (newRangeX.hasNextStep()) {
-                        double val = newRangeX.getCurStep();
-                        double evaluated = eval(val);
-                        Point newPoint = new Point(val, evaluated);
-                        plot.add(newPoint);// TODO May 8th
-                        newRangeX.next();
-                    }
+                    double[] vals = steps(new Range(prevPoint.getX() + step, curPoint.getX() - step, step));
+                    double[] evaluated = new double[vals.length];
+                    evalBatch(vals, evaluated, 0, vals.length);
+                    for (int j = 0; j < vals.length; j++)
+                        plot.add(new Point(vals[j], evaluated[j]));// TODO May 8th
                 }
             }
             prevPoint = curPoint;
             plot.add(curPoint);
-            copied.next();
         }
         plot.sort(); //a computational expensive solution to the bug, yet it worked! TODO improve it
         plot.insertVerticalAsymptote(rangeY, this);
         return plot;
     }
 
+    /**
+     * @param range the range to be stepped through, which is exhausted afterwards
+     * @return all of the steps in the range
+     */
+    private static double[] steps(Range range) {
+        double[] steps = new double[64];
+        int n = 0;
+        while (range.hasNextStep()) {
+            if (n == steps.length) steps = Arrays.copyOf(steps, n * 2);
+            steps[n++] = range.getCurStep();
+            range.next();
+        }
+        return Arrays.copyOf(steps, n);
+    }
+
+    @Override
+    public double eval(double val) {
+        return compiled().eval(val);
+    }
+
+    /**
+     * @return the node lowered to a Program, which is cached until the node is replaced by setNode().
+     */
     @Override
-    public double eval(double val) { // this might compromise speed
-        return getNode().eval(val);
+    protected Evaluable compiled() {
+        if (program == null) program = Program.compile(getNode());
+        return program;
     }
 
     @Override
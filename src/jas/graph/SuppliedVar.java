@@ -1,6 +1,6 @@
 package jas.graph;
 
-import jas.core.Mode;
+import jas.core.JasContext;
 import jas.core.Node;
 import jas.core.components.Variable;
 
@@ -26,16 +26,22 @@ public class SuppliedVar extends Variable {
     }
 
     public String toString() {
-        return Mode.DEBUG ? "&" + getName() + "&" : getName();
+        return JasContext.current().isDebug() ? "&" + getName() + "&" : getName();
     }
 
     @Override
     public SuppliedVar copy() {
-        super.copy();
+        return isFrozen() ? this : thaw();
+    }
+
+    @Override
+    public SuppliedVar thaw() {
+        super.thaw();
         return new SuppliedVar(this.getName()).setVal(this.val);
     }
 
     public SuppliedVar setVal(double val) {
+        checkModifiable();
         this.val = val;
         return this;
     }
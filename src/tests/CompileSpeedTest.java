@@ -0,0 +1,45 @@
+package tests;
+
+import jas.core.Compiler;
+
+/**
+ * Compile throughput comparison between the single pass Parser and the string-rewriting legacy compiler.
+ */
+@SuppressWarnings("deprecation")
+public class CompileSpeedTest {
+    private final static int iterations = 2000;
+    private final static String expressions[] = new String[]{
+            "sin(cos(x^(x+sec(x)^3))+12x)*random",
+            "(x+3)(x-3)(x+3)(x-4)",
+            "ln(log(x^(2*e^2+x)))^(1/5)/(x^3+2*x+9)^(1/3*e*x)",
+            "derivative(x*cos(x)*sin(x)*ln(x),x,5)",
+            "(a+c+b-d+f+e+g+i+h+j)*(a+e+c+f+h+j+b-d+g+i)",
+            "{1,2,x^2,-3/4}",
+    };
+
+    public static void main(String args[]) {
+        String nested = "x";
+        for (int i = 0; i < 40; i++) nested = "sin(" + nested + "+" + i + "x)";
+        String long_ = "x";
+        for (int i = 0; i < 100; i++) long_ += "+" + i + "x^" + (i % 7);
+
+        for (int round = 0; round < 3; round++) { // the first rounds warm up the JIT
+            System.out.println("round " + round);
+            for (String exp : expressions) compare(exp, iterations);
+            compare(nested, iterations / 50);
+            compare(long_, iterations / 50);
+        }
+    }
+
+    private static void compare(String exp, int n) {
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) Compiler.legacyCompile(exp);
+        long legacy = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < n; i++) Compiler.compile(exp);
+        long parser = System.nanoTime() - start;
+        System.out.println(String.format("%8.1f/s legacy, %9.1f/s parser, %5.1fx faster: %s",
+                n / (legacy / 1E9), n / (parser / 1E9), (double) legacy / parser,
+                exp.length() > 48 ? exp.substring(0, 45) + "..." : exp));
+    }
+}
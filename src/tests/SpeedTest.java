@@ -1,17 +1,23 @@
 package tests;
 
 import jas.Function;
+import jas.core.BytecodeCompiler;
 import jas.core.Compiler;
+import jas.core.Evaluable;
+import jas.core.Program;
 
 /**
  * Created by Jiachen on 04/05/2017.
  * Speed comparison between Java compiled function and Interpreted JMC function.
- * Test result: interpreted JMC function is approximately 8/9 the speed of Java compiled function
+ * Test result: interpreted JMC function is approximately 8/9 the speed of Java compiled function,
+ * while JMC function compiled to bytecode is as fast as Java compiled function.
  */
 public class SpeedTest {
     private final static double start = 0, end = 1000000, step = 0.1;
     private final static String expStr = "sin(cos(x^(x+sec(x)^3))+12x)*random";
     private static Function jmcCompiledFunction = new Function(Compiler.compile(expStr));
+    private static Evaluable bytecodeCompiledFunction = BytecodeCompiler.compile(Compiler.compile(expStr));
+    private static Evaluable programFunction = Program.compile(Compiler.compile(expStr));
     private static Function javaCompiledFunction = new Function(val -> Math.sin(Math.cos(Math.pow(val, val + Math.pow(1 / Math.cos(val), 3)) + 12 * val)) * Math.random());
 
     //Java compiled function that is the same as "sin(cos(x^(x+sec(x)^3))+12x)"
@@ -41,12 +47,30 @@ public class SpeedTest {
     });
 
 
+    //JMC function compiled to bytecode eval thread
+    private static Thread trd4 = new Thread(() -> {
+        final long initAbsMillis = System.currentTimeMillis();
+        for (double i = start; i <= end; i += step)
+            bytecodeCompiledFunction.eval(i);
+        System.out.println("Bytecode compiled JMC function finished within " + (System.currentTimeMillis() - initAbsMillis) + " ms");
+    });
+
+    //JMC function lowered to a stack program eval thread
+    private static Thread trd5 = new Thread(() -> {
+        final long initAbsMillis = System.currentTimeMillis();
+        for (double i = start; i <= end; i += step)
+            programFunction.eval(i);
+        System.out.println("Stack program JMC function finished within " + (System.currentTimeMillis() - initAbsMillis) + " ms");
+    });
+
     public static void main(String args[]) {
         System.out.println("x is from " + start + " to " + end + " with a step size of " + step);
         System.out.println("# computations: " + (int) ((end - start) / step));
         trd1.start();
         trd2.start();
         trd3.start();
+        trd4.start();
+        trd5.start();
         System.out.println("Computing...");
     }
 }
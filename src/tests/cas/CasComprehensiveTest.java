@@ -118,6 +118,8 @@ public class CasComprehensiveTest {
         l(node.eval(3));
 
         l(Compiler.compile("a+b*x+a+b/ln(c+e+pi)").numVars());
+        l(Compiler.compile("a+b*x+a+b/ln(c+e+pi)").extractVariables());
+        l(new Variable("rate").mult(new Variable("t")).add(new Variable("x0")).extractVariables());
         l(Compiler.compile("x*3+e").isMultiVar());
         Node node1 = Compiler.compile("(x+a)*-3*(x+a)").simplify();
         l(node1, node1.explicitNegativeForm(), node1);
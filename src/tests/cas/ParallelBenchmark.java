@@ -0,0 +1,72 @@
+package tests.cas;
+
+import jas.core.Compiler;
+import jas.core.Mode;
+import jas.core.Node;
+import jas.core.Parallel;
+import jas.core.components.List;
+import jas.core.components.Variable;
+import jas.utils.Timer;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+import static tests.TestPrint.l;
+
+/**
+ * Parallel Benchmark: simplifies the same trees in sequential and in parallel mode, the results have to be the same.
+ * The trees are derivatives that have not been simplified yet, so they are made of large independent subtrees.
+ */
+public class ParallelBenchmark {
+    private static final Variable X = new Variable("x");
+
+    /**
+     * @param args the parallelism of the pool, by default that of ForkJoinPool.commonPool()
+     */
+    public static void main(String args[]) {
+        if (args.length > 0) Parallel.setPool(new ForkJoinPool(Integer.parseInt(args[0])));
+        l("Processors: " + Runtime.getRuntime().availableProcessors() + ", parallelism: " + Parallel.getPool().getParallelism());
+        ArrayList<Node> derivatives = new ArrayList<>();
+        for (String f : new String[]{"x*cos(x)*sin(x)*ln(x)", "ln(x)*x*cos(x)", "x*sin(x)*e^x", "x^3*tan(x)"})
+            derivatives.add(derivative(f, 4));
+        benchmark("{4th derivatives}", new List(derivatives), derivatives.stream().mapToInt(Node::numNodes).sum());
+        Node node = derivative("x*cos(x)*sin(x)*ln(x)", 5);
+        benchmark("5th derivative of x*cos(x)*sin(x)*ln(x)", node, node.numNodes());
+        node = derivative("x*cos(x)*sin(x)/(ln(x)*x^2+1)", 3);
+        benchmark("3rd derivative of x*cos(x)*sin(x)/(ln(x)*x^2+1)", node, node.numNodes());
+    }
+
+    private static Node derivative(String f, int n) {
+        Node der = Compiler.compile(f);
+        for (int i = 0; i < n; i++) der = der.firstDerivative(X);
+        return der;
+    }
+
+    private static void benchmark(String name, Node node, int numNodes) {
+        simplify(node, false); // warm up
+        simplify(node, true);
+        long sequential = Long.MAX_VALUE, parallel = Long.MAX_VALUE, forks = Parallel.getForks();
+        boolean identical = true;
+        for (int i = 0; i < 5; i++) {
+            Timer timer = new Timer();
+            String s = simplify(node, false);
+            sequential = Math.min(sequential, timer.millis());
+            timer.reset();
+            String p = simplify(node, true);
+            parallel = Math.min(parallel, timer.millis());
+            identical &= s.equals(p);
+        }
+        l(name + " (" + numNodes + " nodes)", "sequential: " + sequential + " ms, parallel: " + parallel
+                + " ms, speedup: " + String.format("%.2f", (double) sequential / Math.max(1, parallel))
+                + ", forks per run: " + (Parallel.getForks() - forks) / 6 + ", identical: " + identical);
+    }
+
+    private static String simplify(Node node, boolean parallel) {
+        Mode.PARALLEL = parallel;
+        try {
+            return node.copy().simplify().toString();
+        } finally {
+            Mode.PARALLEL = false;
+        }
+    }
+}
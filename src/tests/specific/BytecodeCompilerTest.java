@@ -0,0 +1,42 @@
+package tests.specific;
+
+import jas.core.BytecodeCompiler;
+import jas.core.Compiler;
+import jas.core.Evaluable;
+import jas.core.Node;
+import jas.core.operations.Binary;
+import jas.core.operations.Unary;
+
+import static tests.TestPrint.l;
+
+/**
+ * Bytecode Compiler Test: compiled Evaluables should agree with the interpreter bit by bit.
+ */
+public class BytecodeCompilerTest {
+    public static void main(String args[]) {
+        Unary.define("sq", "x^2");
+        Binary.define("%", 2, (a, b) -> a % b);
+        String[] expressions = {
+                "x^2 + 2x + 1",
+                "sin(cos(x^(x+sec(x)^3))+12x)",
+                "ln(x)/log(x) - csc(x) * cot(x)",
+                "abs(x - 3) + int(x) + sign(x) + tanh(x)",
+                "atan(x)*asin(x/10)+acos(x/10)",
+                "e^x*pi - 0.5",
+                "sq(x + 1) % 3",
+                "derivative(x^3, x)",
+                "{1, 2, 3}",
+        };
+        for (String exp : expressions) {
+            Node node = Compiler.compile(exp);
+            Evaluable compiled = BytecodeCompiler.compile(node);
+            boolean identical = true;
+            for (double x = -5; x <= 5; x += 0.25) {
+                double expected = node.eval(x), actual = compiled.eval(x);
+                if (Double.doubleToLongBits(expected) != Double.doubleToLongBits(actual))
+                    identical = false;
+            }
+            l(exp + " -> " + (compiled == node ? "interpreted" : "compiled") + ", identical: " + identical);
+        }
+    }
+}
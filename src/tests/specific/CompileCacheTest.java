@@ -0,0 +1,35 @@
+package tests.specific;
+
+import jas.core.CompileCache;
+import jas.core.Compiler;
+import jas.core.Node;
+import jas.core.operations.Binary;
+import jas.core.operations.Unary;
+
+import static tests.TestPrint.l;
+
+/**
+ * Compile Cache Test
+ */
+public class CompileCacheTest {
+    public static void main(String args[]) {
+        Compiler.compile("sin(pi)"); // loads built-in operations & constants
+        CompileCache cache = Compiler.enableCache(2);
+        Node node = Compiler.compile("x^2 + 2x + 1");
+        l(node); // miss
+        node.simplify();
+        l(Compiler.compile("x^2+2x+1")); // hit, unaffected by simplify()
+        l(Compiler.compile("{1,x,3}"));
+        l(Compiler.compile("sin(x)"));  // evicts x^2+2x+1
+        l(Compiler.compile("x^2+2x+1"));
+        l(cache);
+
+        Unary.define("sq", "x^2"); // invalidates the cache
+        l(cache.size());
+        Compiler.compile("sq(x)");
+        Binary.define("%", 2, (a, b) -> a % b);
+        l(Compiler.compile("a%b"));
+        l(cache + ", hit rate: " + cache.hitRate());
+        Compiler.disableCache();
+    }
+}
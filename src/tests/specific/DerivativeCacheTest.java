@@ -0,0 +1,32 @@
+package tests.specific;
+
+import jas.core.Compiler;
+import jas.core.DerivativeCache;
+import jas.core.Node;
+import jas.core.components.Variable;
+
+import static tests.TestPrint.l;
+
+/**
+ * Derivative Cache Test
+ */
+public class DerivativeCacheTest {
+    public static void main(String args[]) {
+        Variable x = new Variable("x");
+        Node node = Compiler.compile("ln(x)*x*cos(x)");
+        String uncached = node.derivative(x, 4).toString();
+
+        DerivativeCache cache = Node.enableDerivativeCache(64);
+        l(node.derivative(x, 2)); // computes orders 0 to 2
+        l(node.derivative(x, 4), uncached.equals(node.derivative(x, 4).toString())); // picks up at order 2, then hits
+        l(node.derivative(x, 1), Compiler.compile("ln(x)*x*cos(x)").derivative(x, 3));
+        l(Compiler.compile("x*ln(x)*cos(x)").derivative(x, 1)); // a different key than ln(x)*x*cos(x)
+        l(Compiler.compile("derivative(ln(x)*x*cos(x),x,4)").simplify().equals(node.derivative(x, 4)));
+        l(cache);
+
+        Variable.store(Compiler.compile("3"), "k"); // invalidates the cache
+        l(Compiler.compile("k*x^3*sin(x)").derivative(x, 2), cache.size());
+        l(cache);
+        Node.disableDerivativeCache();
+    }
+}
@@ -0,0 +1,43 @@
+package tests.specific;
+
+import jas.core.Compiler;
+import jas.core.JasContext;
+import jas.core.Mode;
+import jas.core.Node;
+import jas.core.SimplifyOptions;
+import jas.core.rules.EGraph;
+import jas.core.rules.Rules;
+
+import static tests.TestPrint.l;
+
+/**
+ * E-Graph Test
+ */
+public class EGraphTest {
+    public static void main(String args[]) {
+        String[] expressions = {"a*b+a*c", "a*b+a*c+d*b+d*c", "x*y+x*z+x", "x*y+x*z-x*(y+z)", "(x+1)*(x+2)-(x^2+3*x)", "x*x^2*x^3"};
+        for (String expression : expressions) {
+            Node greedy = Compiler.compile(expression).simplest();
+            Mode.SATURATION = true;
+            Node saturated = Compiler.compile(expression).simplest();
+            Mode.SATURATION = false;
+            l(expression, greedy + " (" + greedy.complexity() + ")", saturated + " (" + saturated.complexity() + ")");
+        }
+
+        EGraph graph = new EGraph();
+        int a = graph.add(Compiler.compile("(x+1)*y")), b = graph.add(Compiler.compile("y*(x+1)"));
+        l(graph.numNodes(), graph.numClasses(), graph.equivalent(a, b), graph.extract(a));
+
+        Mode.SATURATION = true;
+        Node node = Compiler.compile("a*b+a*c+d*b+d*c");
+        l(node.simplest(SimplifyOptions.UNBOUNDED.withMaxIterations(1)), node.simplest(SimplifyOptions.UNBOUNDED.withMaxNodes(50)), node);
+
+        JasContext session = new JasContext();
+        session.run(() -> {
+            Rules.define("sin(x)^2+cos(x)^2", "1");
+            l(Compiler.compile("3*sin(t)^2+3*cos(t)^2").simplest());
+            Rules.list().stream().filter(rule -> rule.getFirings() > 0).forEach(rule -> l(rule + ": " + rule.getFirings()));
+        });
+        Mode.SATURATION = false;
+    }
+}
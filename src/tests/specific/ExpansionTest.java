@@ -0,0 +1,38 @@
+package tests.specific;
+
+import jas.core.Compiler;
+import jas.core.Node;
+import jas.core.operations.Expansion;
+
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static tests.TestPrint.l;
+
+/**
+ * Expansion Stream Test
+ */
+public class ExpansionTest {
+    public static void main(String args[]) throws Exception {
+        Node node = Compiler.compile("(a+b)*(c+sin(x))");
+        l(node.expandStream().map(Node::toString).collect(Collectors.joining(", ")), node);
+        l(Compiler.compile("(x+1)^3*(y-2)").expandStream().collect(Expansion.likeTerms()));
+        l(Compiler.compile("(x/y+sin(x))^2*(x+2)").expandStream().collect(Expansion.likeTerms()));
+        l(Compiler.compile("(x+y)*(x-y)-x^2").expandStream().collect(Expansion.likeTerms()));
+
+        Node power = Compiler.compile("(x+y+z)^8");
+        Spliterator<Node> terms = power.expandStream().spliterator();
+        Spliterator<Node> prefix = terms.trySplit();
+        l(prefix.estimateSize() + terms.estimateSize(), prefix.estimateSize(), terms.hasCharacteristics(Spliterator.SUBSIZED));
+        String sequential = power.expandStream().collect(Expansion.likeTerms()).toString();
+        String parallel = new ForkJoinPool(4).submit(() -> power.expandStream().parallel().collect(Expansion.likeTerms())).get().toString();
+        l(sequential.equals(parallel), sequential.length());
+
+        try {
+            Compiler.compile("(a+b)^64").expandStream();
+        } catch (Exception e) {
+            l(e.getMessage());
+        }
+    }
+}
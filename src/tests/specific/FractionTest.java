@@ -4,6 +4,7 @@ import jas.MathContext;
 import jas.core.Compiler;
 import jas.core.Node;
 import jas.core.components.Fraction;
+import jas.core.components.RawValue;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
@@ -57,6 +58,18 @@ public class FractionTest {
 
 //        l(Fraction.extractRoot(-2,3));
         l(((Fraction) Compiler.compile("3/4").simplify()).exp(-3));
+
+        // parts that overflow a long are carried on in BigInteger
+        l(MathContext.gcd(48L, 180L), MathContext.gcd(0L, 7L), MathContext.gcd(1L << 40, 3L << 20));
+        Fraction big = new Fraction(Long.MAX_VALUE, 3);
+        l(big.add(new Fraction(Long.MAX_VALUE, 5)));
+        l(new Fraction(Long.MAX_VALUE - 1, 3).mult(new Fraction(4, Long.MAX_VALUE - 2)));
+        l(new Fraction(1L << 62, 3).mult(new Fraction(3, 1L << 62)));
+        l(new Fraction(2, 3).exp(70));
+        l(new Fraction(BigInteger.TEN.pow(30), BigInteger.TEN.pow(30).add(BigInteger.ONE)).inverse().sub(new RawValue(1)));
+        l(new Fraction(Long.MIN_VALUE, 3), new Fraction(3, Long.MIN_VALUE).negate());
+        l(Compiler.compile("(-9007199254740993/4294967296)^(-3)").simplify());
+        l(new Fraction(3, -6), new Fraction(-4, -6), new Fraction(5, Long.MIN_VALUE)); // the sign goes to the numerator
     }
 
 }
@@ -0,0 +1,56 @@
+package tests.specific;
+
+import jas.core.Compiler;
+import jas.core.JASException;
+import jas.core.Node;
+import jas.core.components.RawValue;
+import jas.core.components.Variable;
+import jas.core.operations.Binary;
+
+import static tests.TestPrint.l;
+
+/**
+ * Frozen Node Test: immutable trees with structural sharing
+ */
+public class FrozenNodeTest {
+    public static void main(String args[]) {
+        Node sum = Compiler.compile("x+2"), node = Compiler.compile("ln(x+2)*(2*3+x)").freeze();
+        l(node, node.isFrozen(), node.copy() == node);
+        try {
+            ((Binary) node).setLeft(sum);
+        } catch (JASException e) {
+            l(e.getMessage());
+        }
+
+        Node simplified = node.simplify();
+        l(node, simplified, simplified.isFrozen());
+        l(((Binary) node).getRight() == ((Binary) simplified).getRight()); // ln(2+x) is shared
+
+        Node shared = Compiler.compile("a-b").freeze(); // parenthesis depend on the parent
+        l(shared.mult(2), shared.add(1), Compiler.compile("c-d").mult(shared));
+
+        Node derivative = node.derivative(new Variable("x"), 1);
+        l(derivative, node, derivative.equals(Compiler.compile(node.toString()).derivative(new Variable("x"), 1)));
+        Node thawed = node.thaw();
+        ((Binary) thawed).setLeft(sum);
+        l(thawed, thawed.isFrozen(), node);
+
+        // metadata are cached, and recomputed once a modifiable node changes
+        l(node.numNodes(), node.complexity(), node.extractVariables(), thawed.numNodes(), thawed.numVars());
+        ((Binary) thawed).setRight(Compiler.compile("y*z"));
+        l(thawed, thawed.numNodes(), thawed.complexity(), thawed.extractVariables());
+        Node constant = Compiler.compile("sin(2)^2+cos(2)^2");
+        l(constant.val(), constant.freeze().val(), constant.isNaN());
+
+        // a change deep in a tree reaches its ancestors, also through a subtree shared by two trees
+        Node inner = Compiler.compile("x+1");
+        Node outer = new Binary(inner, "*", Compiler.compile("y")), other = new Binary(inner, "^", new RawValue(2));
+        l(outer.numNodes(), outer.extractVariables(), other.numNodes(), other.extractVariables());
+        ((Binary) inner).setRight(Compiler.compile("z^2"));
+        l(outer, outer.numNodes(), outer.extractVariables(), other, other.numNodes(), other.extractVariables());
+        Node numbers = Compiler.compile("(2+3)*4");
+        double before = numbers.val();
+        ((Binary) ((Binary) numbers).getLeft()).setRight(new RawValue(5));
+        l(before, numbers, numbers.val());
+    }
+}
@@ -0,0 +1,44 @@
+package tests.specific;
+
+import jas.core.Compiler;
+import jas.core.Interner;
+import jas.core.Node;
+import jas.core.components.Constants;
+import jas.core.components.Variable;
+
+import java.util.HashSet;
+
+import static tests.TestPrint.l;
+
+/**
+ * Interner Test: structural hashing and hash consing
+ */
+public class InternerTest {
+    public static void main(String args[]) {
+        Node a = Compiler.compile("x*y + sin(x)"), b = Compiler.compile("sin(x) + y*x");
+        l(a.equals(b), a.hashCode() == b.hashCode());
+        HashSet<Node> set = new HashSet<>();
+        set.add(a);
+        l(set.contains(b), set.contains(Compiler.compile("x*y + cos(x)")));
+
+        Interner interner = new Interner();
+        Node i1 = interner.intern(a), i2 = interner.intern(b);
+        l(i1 == i2, i1.isInterned(), a.isInterned());
+        l(interner);
+
+        Interner other = new Interner(); // canonical within their own interner only
+        Node o1 = other.intern(a);
+        l(o1.equals(i1), o1.hashCode() == i1.hashCode(), other.intern(i1) == o1, interner.intern(o1) == i1);
+
+        Node derivative = Compiler.compile("sin(x^2)^cos(x^2)").derivative(new Variable("x"), 3);
+        Node interned = interner.intern(derivative);
+        l(interned.equals(derivative), interner);
+        Node copy = interned.thaw(); // modifiable
+        l(copy.isInterned(), copy.simplify().equals(interned.copy().simplify()));
+
+        Constants.define("tau2", () -> Math.PI); // constants of equal values are still told apart by name
+        Node pi = Compiler.compile("pi"), tau2 = Compiler.compile("tau2"), random = Compiler.compile("random");
+        l(pi.equals(tau2), pi.equals(Compiler.compile("pi")), pi.hashCode() == Compiler.compile("pi").hashCode());
+        l(random.equals(random.copy()), random.hashCode() == random.copy().hashCode());
+    }
+}
@@ -0,0 +1,85 @@
+package tests.specific;
+
+import jas.core.Assets;
+import jas.core.Compiler;
+import jas.core.JasContext;
+import jas.core.Node;
+import jas.core.components.Constants;
+import jas.core.components.Literal;
+import jas.core.components.Variable;
+import jas.core.operations.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.*;
+
+import static tests.TestPrint.l;
+
+/**
+ * JasContext Test: definitions of separate sessions do not interfere
+ */
+public class JasContextTest {
+    public static void main(String args[]) throws Exception {
+        JasContext alice = new JasContext(), bob = new JasContext();
+        alice.run(() -> {
+            Variable.store(Compiler.compile("3"), "k");
+            Unary.define("twice", x -> 2 * x);
+            Constants.define("g", () -> 9.8);
+        });
+        bob.run(() -> {
+            Variable.store(Compiler.compile("5"), "k");
+            Binary.define("%", 2, (a, b) -> a % b);
+        });
+        l(alice.call(() -> Compiler.compile("twice(k) + g").val()), bob.call(() -> Compiler.compile("k*2 % 4").val()));
+        l(Variable.get("k").isPresent(), Unary.isDefined("twice"), Constants.contains("g"));
+        l(bob.call(() -> Unary.isDefined("twice")), alice.call(() -> Binary.operators()));
+
+        JasContext fork = alice.fork();
+        fork.run(() -> Variable.store(Compiler.compile("4"), "k"));
+        l(alice.call(() -> Compiler.compile("k").simplify()), fork.call(() -> Compiler.compile("twice(k)").val()));
+
+        alice.setFraction(false);
+        l(alice.call(() -> Compiler.compile("0.5 + 0.25").simplify()), Compiler.compile("0.5 + 0.25").simplify());
+
+        JasContext dave = new JasContext(); // modes that affect results are per context as well
+        dave.setMultinomial(true);
+        dave.setPolynomial(true);
+        l(dave.call(() -> Compiler.compile("(a+b)^3").expand()), Compiler.compile("(a+b)^3").expand());
+        l(dave.call(() -> Compiler.compile("x+x+2*y-y").simplify()), dave.fork().isMultinomial(), new JasContext().isPolynomial());
+
+        JasContext erin = new JasContext(); // redefining a constant affects what was compiled before
+        Node twiceKappa = erin.call(() -> {
+            Constants.define("kappa", () -> 1);
+            Unary.define("g", "x+kappa");
+            return Compiler.compile("2*kappa");
+        });
+        erin.run(() -> Constants.define("kappa", () -> 10));
+        l(erin.call(twiceKappa::val), erin.call(() -> Compiler.compile("g(2)").val()), twiceKappa.val());
+
+        JasContext carol = new JasContext();
+        carol.run(() -> {
+            Custom.define("area", new Signature(Argument.NUMBER, Argument.NUMBER), operands -> operands.get(0).mult(operands.get(1)));
+            Custom.define("area", Signature.ANY, operands -> new Literal("any"));
+            Custom.define("tw", new Signature(Argument.ANY), operands -> operands.get(0).mult(3));
+        });
+        l(carol.call(() -> Compiler.compile("area(2,3)").simplify()), carol.call(() -> Compiler.compile("area(x,3)").simplify()));
+        l(carol.call(() -> Compiler.compile("tw(cosh(x)) + cos(x)").simplify()), carol.call(() -> Assets.reservedNames().contains("area")));
+        ArrayList<String> carolNames = carol.call(Assets::reservedNames), aliceNames = alice.call(Assets::reservedNames);
+        l(carol.call(Assets::reservedNames) == carolNames, alice.call(Assets::reservedNames) == aliceNames,
+                aliceNames.contains("twice"), aliceNames.contains("area")); // each context keeps its own names
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        ArrayList<Future<Double>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            final int n = i;
+            futures.add(executor.submit(() -> new JasContext().call(() -> {
+                Variable.store(Compiler.compile(Integer.toString(n)), "k");
+                Unary.define("f", x -> x * n);
+                return Compiler.compile("f(k) + k").val();
+            })));
+        }
+        ArrayList<Double> results = new ArrayList<>();
+        for (Future<Double> future : futures) results.add(future.get());
+        executor.shutdown();
+        l(results, Unary.isDefined("f"));
+    }
+}
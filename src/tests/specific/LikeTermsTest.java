@@ -0,0 +1,22 @@
+package tests.specific;
+
+import jas.core.Compiler;
+import jas.core.Mode;
+
+import static tests.TestPrint.l;
+
+/**
+ * Like Terms Collection Test
+ */
+public class LikeTermsTest {
+    public static void main(String args[]) {
+        Mode.COLLECT_LIKE_TERMS = true;
+        l(Compiler.compile("3*x+y+2*x-y").simplify(), Compiler.compile("x*y*2+y*x+x*x*3-3*x^2").simplify());
+        l(Compiler.compile("x^2*y*x^3*4*x^(-5)").simplify(), Compiler.compile("a*0*x*x+1*b*1").simplify());
+        l(Compiler.compile("sin(x)*2+3*sin(x)+x^1*y^0").simplify(), Compiler.compile("(x+1)^2").expand().simplify());
+        StringBuilder sum = new StringBuilder("0");
+        for (int i = 1; i <= 40; i++) sum.append("+").append(i).append("*x^").append(i % 4);
+        l(Compiler.compile(sum.toString()).simplify());
+        Mode.COLLECT_LIKE_TERMS = false;
+    }
+}
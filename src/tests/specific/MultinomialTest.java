@@ -0,0 +1,32 @@
+package tests.specific;
+
+import jas.MathContext;
+import jas.core.Compiler;
+import jas.core.Mode;
+import jas.core.Node;
+
+import static tests.TestPrint.l;
+
+/**
+ * Multinomial Expansion Test
+ */
+public class MultinomialTest {
+    public static void main(String args[]) {
+        l(MathContext.multinomial(2, 1, 1), MathContext.multinomial(10, 10, 10), MathContext.multinomial(0, 5));
+
+        String[] powers = {"(a+b)^3", "(x-1)^4", "(2*x-3*y)^5", "(sin(x)+cos(x))^3", "(a*b+c)^2", "(x+y+x)^2"};
+        for (String power : powers) {
+            Node expanded = Compiler.compile(power).expand();
+            Mode.MULTINOMIAL = true;
+            Node multinomial = Compiler.compile(power).expand();
+            Mode.MULTINOMIAL = false;
+            l(power, expanded.simplify(), multinomial, multinomial.numNodes() + " vs " + expanded.numNodes() + " nodes");
+        }
+
+        Mode.MULTINOMIAL = true;
+        Node node = Compiler.compile("(x+y+z)^20").expand();
+        l(node.numNodes(), node.eval(1)); // 3^20 with x = y = z = 1
+        l(Compiler.compile("(x+1)^2*(x-1)^2").expand().simplify());
+        Mode.MULTINOMIAL = false;
+    }
+}
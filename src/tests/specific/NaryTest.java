@@ -0,0 +1,50 @@
+package tests.specific;
+
+import jas.core.BytecodeCompiler;
+import jas.core.Compiler;
+import jas.core.JasContext;
+import jas.core.Node;
+import jas.core.Program;
+import jas.core.components.Variable;
+import jas.core.operations.Product;
+import jas.core.operations.Sum;
+
+import static tests.TestPrint.l;
+
+/**
+ * N-ary Sum and Product Test
+ */
+public class NaryTest {
+    public static void main(String args[]) {
+        JasContext nary = new JasContext();
+        nary.setNary(true);
+        String[] expressions = {"x+x+2*y-y", "a+b-c+d-a", "x*x*3*x^2/x", "2*x*3*y*x", "x*y-y*x", "a-(b-c)",
+                "x^a*x^b-x^(a+b)", "1/2+1/3+x", "12^(1/2)*3^(1/2)", "(a*b)^2*a", "x/0", "x-{1,2}+1"};
+        for (String exp : expressions) {
+            Node node = nary.call(() -> Compiler.compile(exp).simplify());
+            l(exp, node, node.getClass().getSimpleName(), node.copy().beautify(), Compiler.compile(exp).simplify());
+        }
+
+        l(nary.call(() -> Compiler.compile("(x+1)*(x-1)*(y+2)").expand().simplify()));
+        l(nary.call(() -> Compiler.compile("(a+b)^3").expand().simplify()));
+        Node derivative = nary.call(() -> Compiler.compile("x*cos(x)*sin(x)*ln(x)").derivative(new Variable("x"), 2));
+        Node legacy = Compiler.compile("x*cos(x)*sin(x)*ln(x)").derivative(new Variable("x"), 2);
+        l(derivative, Math.abs(derivative.eval(1.3) - legacy.eval(1.3)) < 1E-9);
+
+        Sum sum = new Sum(Compiler.compile("y"), new Product(Compiler.compile("2"), Compiler.compile("x+1")));
+        l(sum, Compiler.compile("z").exp(sum), new Product(sum, sum.copy()), Compiler.compile("3").sub(sum));
+        l(sum.equals(new Sum(new Product(Compiler.compile("2"), Compiler.compile("x+1")), Compiler.compile("y"))),
+                sum.hashCode() == sum.thaw().hashCode(), sum.equals(Compiler.compile("y+2*(x+1)")));
+        l(sum.eval(2), Program.compile(sum).eval(2), BytecodeCompiler.compile(sum).eval(2));
+
+        Node frozen = nary.call(() -> Compiler.compile("(x+2)*(x+1)").simplify()).freeze();
+        l(frozen, nary.call(() -> frozen.expand().simplify()), frozen.isFrozen());
+
+        nary.run(() -> Node.enableSimplificationCache(64)); // results of either mode are cached apart
+        nary.setNary(false);
+        Node binary = nary.call(() -> Compiler.compile("x+x+y").simplify());
+        nary.setNary(true);
+        l(binary.getClass().getSimpleName(), nary.call(() -> Compiler.compile("x+x+y").simplify()).getClass().getSimpleName(),
+                nary.fork().isNary(), new JasContext().isNary());
+    }
+}
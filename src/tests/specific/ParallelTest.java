@@ -0,0 +1,45 @@
+package tests.specific;
+
+import jas.core.Compiler;
+import jas.core.JasContext;
+import jas.core.Mode;
+import jas.core.Node;
+import jas.core.Parallel;
+import jas.core.components.Variable;
+import jas.core.operations.Argument;
+import jas.core.operations.Custom;
+import jas.core.operations.Signature;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static tests.TestPrint.l;
+
+/**
+ * Parallel Simplification Test
+ */
+public class ParallelTest {
+    public static void main(String args[]) {
+        Parallel.setPool(new ForkJoinPool(4));
+        Parallel.setThreshold(5);
+        String[] expressions = {"{(x+1)^2*(x-1), ln(x*x)/x+x/ln(x*x), cos(acos(x+x))*3}",
+                "(x*cos(x)*sin(x))/(ln(x)*x^2+1)-(x^2*tan(x))^(x+1)", "f(x*x+x*x, cos(x)^2+sin(x)^2)"};
+        JasContext session = new JasContext();
+        session.run(() -> Custom.define("f", new Signature(Argument.ANY, Argument.ANY), operands -> operands.get(0).div(operands.get(1))));
+        for (String exp : expressions) {
+            Node node = session.call(() -> Compiler.compile(exp));
+            String sequential = session.call(() -> node.copy().simplify().toString());
+            Mode.PARALLEL = true;
+            String parallel = session.call(() -> node.copy().simplify().toString());
+            Mode.PARALLEL = false;
+            l(parallel, sequential.equals(parallel));
+        }
+
+        Node der = Compiler.compile("x*cos(x)*sin(x)*ln(x)");
+        for (int i = 0; i < 3; i++) der = der.firstDerivative(new Variable("x"));
+        String sequential = der.copy().simplify().toString();
+        long forks = Parallel.getForks();
+        Mode.PARALLEL = true;
+        l(der.copy().simplify().toString().equals(sequential), Parallel.getForks() > forks);
+        Mode.PARALLEL = false;
+    }
+}
@@ -0,0 +1,38 @@
+package tests.specific;
+
+import jas.core.Compiler;
+import jas.core.Mode;
+import jas.core.Node;
+import jas.core.poly.Polynomial;
+
+import static tests.TestPrint.l;
+
+/**
+ * Polynomial Test: conversion between Nodes and sparse polynomials, expansion through Mode.POLYNOMIAL
+ */
+public class PolynomialTest {
+    public static void main(String args[]) {
+        Polynomial p = Polynomial.from(Compiler.compile("(x+y+1)^2"));
+        l(p, p.numTerms(), p.degree());
+        l(Polynomial.from(Compiler.compile("(x-1)*(x+1) - x^2")));
+        l(Polynomial.from(Compiler.compile("x/2 + x/3 + 1/6")));
+        l(Polynomial.from(Compiler.compile("(x+y)^2"), false), Polynomial.from(Compiler.compile("x+2*x-y"), false));
+        l(Polynomial.from(Compiler.compile("sin(x)+1")), Polynomial.from(Compiler.compile("x^(-1)")),
+                Polynomial.from(Compiler.compile("x/y")), Polynomial.from(Compiler.compile("x^0")));
+        l(Polynomial.from(Compiler.compile("(x+y)^3")).equals(Polynomial.from(Compiler.compile("(y+x)*(x+y)^2"))));
+        l(Polynomial.from(Compiler.compile("(x+y+1)^10")).numTerms());
+        Polynomial q1 = Polynomial.from(Compiler.compile("(x+y)-y")), q2 = Polynomial.from(Compiler.compile("x"));
+        l(q1.equals(q2), q1.hashCode() == q2.hashCode(),
+                Polynomial.from(Compiler.compile("x*y^2")).hashCode() == Polynomial.from(Compiler.compile("x^2*y")).hashCode());
+        l(Polynomial.from(Compiler.compile("pi*x-pi")), Polynomial.from(Compiler.compile("random-random")));
+
+        Mode.POLYNOMIAL = true;
+        Node product = Compiler.compile("(a+c+b+d+f+e+g+i+h+j)*(a+e+c+f+h+j+b+d+g+i)");
+        long start = System.nanoTime();
+        Node expanded = product.expand().simplify();
+        l(expanded, (System.nanoTime() - start) / 1000000 < 1000);
+        l(Compiler.compile("x+x+2*y-y").simplify(), Compiler.compile("(x+1)^2-x^2").simplify());
+        l(Compiler.compile("(x+1)^2-x^2").expand());
+        Mode.POLYNOMIAL = false;
+    }
+}
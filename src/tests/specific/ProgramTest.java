@@ -0,0 +1,91 @@
+package tests.specific;
+
+import jas.Function;
+import jas.core.Compiler;
+import jas.core.EvalPlan;
+import jas.core.Node;
+import jas.core.Program;
+import jas.core.components.List;
+import jas.core.components.Variable;
+import jas.core.operations.Binary;
+import jas.core.operations.Unary;
+import jas.graph.GraphFunction;
+
+import java.util.Arrays;
+
+import static tests.TestPrint.l;
+
+/**
+ * Program Test: programs and batch evaluation should agree with the interpreter bit by bit.
+ */
+public class ProgramTest {
+    public static void main(String args[]) {
+        Unary.define("sq", "x^2");
+        Binary.define("%", 2, (a, b) -> a % b);
+        String[] expressions = {
+                "x^2 + 2x + 1",
+                "sin(cos(x^(x+sec(x)^3))+12x)",
+                "ln(x)/log(x) - csc(x) * cot(x)",
+                "abs(x - 3) + int(x) + sign(x) + tanh(x) + factorial(abs(x))",
+                "atan(x)*asin(x/10)+acos(x/10) + cosh(x) - sinh(x)",
+                "e^x*pi - 0.5",
+                "sq(x + 1) % 3",
+                "derivative(x^3, x)",
+        };
+        for (String exp : expressions) {
+            Node node = Compiler.compile(exp);
+            Program program = Program.compile(node);
+            double[] xs = new double[41], nodeBatch = new double[41], programBatch = new double[41];
+            for (int i = 0; i < xs.length; i++) xs[i] = -5 + i * 0.25;
+            node.evalBatch(xs, nodeBatch, 0, xs.length);
+            program.evalBatch(xs, programBatch, 0, xs.length);
+            boolean identical = true, batchIdentical = true;
+            for (int i = 0; i < xs.length; i++) {
+                long expected = Double.doubleToLongBits(node.eval(xs[i]));
+                if (expected != Double.doubleToLongBits(program.eval(xs[i]))) identical = false;
+                if (expected != Double.doubleToLongBits(nodeBatch[i])
+                        || expected != Double.doubleToLongBits(programBatch[i])) batchIdentical = false;
+            }
+            l(exp + " -> identical: " + identical + ", batch identical: " + batchIdentical);
+        }
+
+        double[] xs = {1, 2, 3};
+        double[][] columns = new double[3][3];
+        ((List) Compiler.compile("{x, x^2, 2x+1}")).evalBatch(xs, columns, 0, 3);
+        l(Arrays.toString(columns[0]), Arrays.toString(columns[1]), Arrays.toString(columns[2]));
+        inPlace(xs);
+
+        EvalPlan plan = Compiler.compile("a*x^2 + b*x + c").bind(new Variable("a"), new Variable("b"),
+                new Variable("c"), new Variable("x"));
+        l(plan, plan.eval(1, 2, 3, 4));
+        double sum = 0;
+        double[] bindings = new double[4];
+        for (int a = 0; a < 10; a++) { // parameter sweep
+            bindings[0] = a;
+            for (int b = 0; b < 10; b++) {
+                bindings[1] = b;
+                bindings[3] = 2;
+                sum += plan.eval(bindings);
+            }
+        }
+        l(sum);
+        l(Compiler.compile("derivative(a*x^2, x) + y").bind(new Variable("a"), new Variable("x")).eval(3, 2)); // y is unbound
+        l(Compiler.compile("derivative(a*x^2, x) + y").bind(new Variable("a"), new Variable("x"), new Variable("y")).eval(3, 2, 1));
+
+        Function function = new Function(Compiler.compile("x^3 - 2x"));
+        l(function.numericalSolve(1, -10, 10, 0.0001));
+        GraphFunction graphFunction = new GraphFunction(Compiler.compile("a*x + b"));
+        graphFunction.getSuppliedVars().forEach(v -> v.setVal(v.getName().equals("a") ? 2 : 1));
+        l(graphFunction.eval(3)); // supplied variables are looked up every time
+        graphFunction.setNode(Compiler.compile("x^2"));
+        l(graphFunction.eval(3));
+    }
+
+    /**
+     * xs could also be used for output
+     */
+    private static void inPlace(double[] xs) {
+        Compiler.compile("(x+1)*(x-1)").evalBatch(xs, xs, 0, xs.length);
+        l(Arrays.toString(xs));
+    }
+}
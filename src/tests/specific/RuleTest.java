@@ -0,0 +1,31 @@
+package tests.specific;
+
+import jas.core.Compiler;
+import jas.core.JasContext;
+import jas.core.operations.Argument;
+import jas.core.rules.Rule;
+import jas.core.rules.Rules;
+
+import static tests.TestPrint.l;
+
+/**
+ * Rewrite Rule Test
+ */
+public class RuleTest {
+    public static void main(String args[]) {
+        l(Compiler.compile("tan(atan(x+1))").simplify(), Compiler.compile("sin(atan(x))").simplify());
+        l(Compiler.compile("ln(e^(2*x))").simplify(), Compiler.compile("x+ln(2)+ln(3)").simplify());
+        l(Compiler.compile("ln(x)+ln(y)").simplify(), Compiler.compile("log(100)-log(5)").simplify());
+
+        JasContext session = new JasContext();
+        session.run(() -> {
+            Rules.define("sin(x)^2+cos(x)^2", "1");
+            Rules.define(new Rule("x/x", "1").where("x", Argument.VARIABLE));
+            l(Compiler.compile("rule('x*0', '0')").simplify());
+            l(Compiler.compile("cos(a+b)^2+sin(a+b)^2").simplify(), Compiler.compile("3*(sin(z)^2+cos(z)^2)").simplify());
+            l(Compiler.compile("a/a + (a+1)/(a+1)").simplify(), Compiler.compile("tan(y)*0").simplify());
+            Rules.list().stream().filter(rule -> rule.getFirings() > 0).forEach(rule -> l(rule + ": " + rule.getFirings()));
+        });
+        l(Compiler.compile("cos(x)^2+sin(x)^2").simplify(), Rules.list().size());
+    }
+}
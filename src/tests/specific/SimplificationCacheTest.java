@@ -0,0 +1,36 @@
+package tests.specific;
+
+import jas.core.Compiler;
+import jas.core.Node;
+import jas.core.SimplificationCache;
+import jas.core.components.Variable;
+import jas.core.operations.Unary;
+
+import static tests.TestPrint.l;
+
+/**
+ * Simplification Cache Test
+ */
+public class SimplificationCacheTest {
+    public static void main(String args[]) {
+        Compiler.compile("sin(pi)"); // loads built-in operations & constants
+        SimplificationCache cache = Node.enableSimplificationCache(16);
+        Node node = Compiler.compile("x*a+3+x*b");
+        l(node.simplify()); // miss
+        l(node.simplify(), Compiler.compile("x*a+3+x*b").simplify()); // node was simplified in place; the copy hits
+        l(Compiler.compile("a*x+3").simplify()); // a different key than x*a+3
+        l(Compiler.compile("(x+1)^2").expand(), Compiler.compile("(x+1)^2").simplify());
+        l(cache);
+
+        Node der = Compiler.compile("x*cos(x)*sin(x)");
+        l(der.derivative(new Variable("x"), 3));
+        l(der.derivative(new Variable("x"), 3), cache.getHits());
+
+        Variable.store(Compiler.compile("2"), "k"); // invalidates the cache
+        l(Compiler.compile("k*x+k*x").simplify(), cache.size());
+        Unary.define("sq", "x^2");
+        l(Compiler.compile("sq(x)*sq(x)").simplify());
+        l(cache + ", hit rate: " + cache.hitRate());
+        Node.disableSimplificationCache();
+    }
+}
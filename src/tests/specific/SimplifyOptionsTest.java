@@ -0,0 +1,43 @@
+package tests.specific;
+
+import jas.core.Compiler;
+import jas.core.JASException;
+import jas.core.Node;
+import jas.core.SimplifyOptions;
+import jas.core.components.Variable;
+
+import static tests.TestPrint.l;
+
+/**
+ * Simplify Options Test
+ */
+public class SimplifyOptionsTest {
+    public static void main(String args[]) {
+        Node node = Compiler.compile("(x+1)*(x-1)-x*x+(x+2)^3");
+        l(node.simplest(SimplifyOptions.UNBOUNDED), node.simplest(SimplifyOptions.UNBOUNDED.withMaxIterations(1)), node);
+        l(node.expand(SimplifyOptions.UNBOUNDED.withMaxNodes(20)), node.expand(SimplifyOptions.UNBOUNDED.withMaxNodes(100)));
+
+        SimplifyOptions.CancellationToken token = new SimplifyOptions.CancellationToken();
+        SimplifyOptions cancellable = SimplifyOptions.UNBOUNDED.withCancellation(token);
+        l(Compiler.compile("x+x+3*x").simplify(cancellable));
+        token.cancel();
+        l(Compiler.compile("x+x+3*x").simplify(cancellable), node.simplest(cancellable));
+
+        Node f = Compiler.compile("x*cos(x)*sin(x)");
+        try {
+            f.derivative(new Variable("x"), 2, SimplifyOptions.UNBOUNDED.withTimeout(0));
+        } catch (JASException e) {
+            l(e.getMessage());
+        }
+        l(f.derivative(new Variable("x"), 2, SimplifyOptions.UNBOUNDED.withDeadline(System.currentTimeMillis() + 60000)));
+        l(f.derivative(new Variable("x"), 2, SimplifyOptions.UNBOUNDED).equals(f.derivative(new Variable("x"), 2)));
+
+        long start = System.currentTimeMillis();
+        try {
+            f.derivative(new Variable("x"), 20, SimplifyOptions.UNBOUNDED.withTimeout(200));
+        } catch (JASException ignored) {
+        }
+        l(System.currentTimeMillis() - start < 5000);
+        l(SimplifyOptions.UNBOUNDED.withMaxIterations(3).withMaxNodes(50));
+    }
+}
@@ -0,0 +1,33 @@
+package tests.specific;
+
+import jas.core.Compiler;
+import jas.core.Mode;
+import jas.core.Node;
+import jas.core.StructuralOrder;
+
+import static tests.TestPrint.l;
+
+/**
+ * Structural Order Test: canonical ordering of operands without rendering strings
+ */
+public class StructuralOrderTest {
+    public static void main(String args[]) {
+        StructuralOrder order = StructuralOrder.INSTANCE;
+        l(order.compare(Compiler.compile("3"), Compiler.compile("x")) < 0,
+                order.compare(Compiler.compile("sin(x)"), Compiler.compile("x*y")) < 0,
+                order.compare(Compiler.compile("x+y"), Compiler.compile("y+x")) != 0,
+                order.compare(Compiler.compile("x*y"), Compiler.compile("x*y")) == 0);
+
+        Node a = Compiler.compile("c*b*3*a + sin(x)*2"), b = Compiler.compile("2*sin(x) + a*3*c*b");
+        a.order();
+        l(a, a.equals(b));
+
+        Mode.STRUCTURAL_ORDER = true;
+        a = Compiler.compile("c*b*3*a + sin(x)*2");
+        b = Compiler.compile("2*sin(x) + a*3*c*b");
+        a.order();
+        l(a, a.equals(b), a.hashCode() == b.hashCode());
+        l(Compiler.compile("x*cos(x)*sin(x)*ln(x)").simplify());
+        Mode.STRUCTURAL_ORDER = false;
+    }
+}